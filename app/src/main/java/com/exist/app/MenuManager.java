@@ -1,24 +1,56 @@
 package com.exist.app;
 
 import com.exist.service.TableService;
-import com.exist.service.impl.TableServiceImpl;
+import com.exist.service.WorkspaceService;
+import com.exist.service.impl.WorkspaceServiceImpl;
 import com.exist.service.FileService;
 import com.exist.service.impl.FileServiceImpl;
 import com.exist.utilities.ScanUtils;
 
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MenuManager {
 
-    private TableService tableService = new TableServiceImpl();
+    private static final int FIRST_PAGE_ROWS = 50;
+    // Resets of at least this many cells are written straight to the file instead of built in memory
+    private static final long STREAMED_RESET_CELLS = 1_000_000;
+    // Optional heap budget for table rows, e.g. -Dtable.heapBudget=512m
+    private static final String HEAP_BUDGET_PROPERTY = "table.heapBudget";
+    // Optional cap on the heap of all open tables together, e.g. -Dworkspace.memoryCap=2g
+    private static final String MEMORY_CAP_PROPERTY = "workspace.memoryCap";
+
+    private WorkspaceService workspace = new WorkspaceServiceImpl();
+    // The workspace's current table and its file
+    private TableService tableService;
     private FileService fileService = new FileServiceImpl();
     private String fileName;
 
     public void startApplication(String fileName) {
+        String heapBudget = System.getProperty(HEAP_BUDGET_PROPERTY);
+        if (heapBudget != null) {
+            try {
+                workspace.setHeapBudget(parseSize(heapBudget));
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring invalid " + HEAP_BUDGET_PROPERTY + ": " + heapBudget);
+            }
+        }
+        String memoryCap = System.getProperty(MEMORY_CAP_PROPERTY);
+        if (memoryCap != null) {
+            try {
+                workspace.setMemoryCap(parseSize(memoryCap));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Ignoring invalid " + MEMORY_CAP_PROPERTY + ": " + memoryCap);
+            }
+        }
+
         try {
-            tableService.loadTableFromFile(fileName);
-            tableService.printTable();
+            tableService = workspace.open(fileName, FIRST_PAGE_ROWS);
+            tableService.printTable(FIRST_PAGE_ROWS);
             this.fileName = fileName; // Capture for later saves
         } catch (Exception e) {
             System.out.println("Error loading file: " + e.getMessage());
@@ -32,27 +64,64 @@ public class MenuManager {
         while (!exit) {
             System.out.println("\n=== MENU ===");
             System.out.println("[ search ] - Search");
+            System.out.println("[ search_all ] - Search All Open Tables");
+            System.out.println("[ search_many ] - Search Many Terms At Once");
+            System.out.println("[ estimate ] - Estimate Occurrences From A Sample Of Rows");
+            System.out.println("[ query ] - Query Cells");
             System.out.println("[ edit ] - Edit");
             System.out.println("[ print ] - Print");
             System.out.println("[ add_row ] - Add Row");
             System.out.println("[ sort ] - Sort");
             System.out.println("[ reset ] - Reset");
+            System.out.println("[ watch ] - Watch File For External Changes (on/off)");
+            System.out.println("[ export ] - Export To CSV or JSON Lines");
+            System.out.println("[ import ] - Import From CSV or TSV");
+            System.out.println("[ open ] - Open Or Switch To Another Table File");
+            System.out.println("[ tables ] - List Open Tables");
             System.out.println("[ x ] - Exit");
             String choice = ScanUtils.getUserInput("Choose an action: ");
 
             switch (choice.toLowerCase()) {
                 case "search" -> handleSearch();
+                case "search_all" -> handleSearchAll();
+                case "search_many" -> handleSearchMany();
+                case "estimate" -> handleEstimate();
+                case "query" -> handleQuery();
                 case "edit" -> handleEdit();
                 case "print" -> handlePrint();
                 case "add_row" -> handleAddRow();
                 case "sort" -> handleSort();
                 case "reset" -> handleReset();
-                case "x" -> exit = true;
+                case "watch" -> handleWatch();
+                case "export" -> handleExport();
+                case "import" -> handleImport();
+                case "open" -> handleOpen();
+                case "tables" -> handleTables();
+                case "x" -> {
+                    closeTables();
+                    exit = true;
+                }
                 default -> System.out.println("Invalid action. Please try again.");
             }
         }
     }
     
+    /**
+     * Closes every table in memory, which saves changes still waiting for a table to finish loading.
+     */
+    private void closeTables() {
+        for (String name : workspace.getFileNames()) {
+            if (!workspace.isResident(name)) {
+                continue;
+            }
+            try {
+                workspace.close(name);
+            } catch (IOException e) {
+                System.out.println("Error saving " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
     private void handleSearch() {
         String searchTerm = ScanUtils.getUserInput("Enter search term: ");
 
@@ -65,6 +134,111 @@ public class MenuManager {
         System.out.print(result);
     }
 
+    private void handleSearchAll() {
+        String searchTerm = ScanUtils.getUserInput("Enter search term: ");
+
+        if (searchTerm.trim().isEmpty()) {
+            System.out.println("Search term cannot be empty. Please enter a valid search term.");
+            return;
+        }
+
+        System.out.print(workspace.searchAll(searchTerm));
+    }
+
+    private void handleSearchMany() {
+        String input = ScanUtils.getUserInput("Enter search terms one per line, or @file to read them from a file: ");
+        List<String> terms = new ArrayList<>();
+
+        if (input.startsWith("@")) {
+            try {
+                for (String line : Files.readAllLines(Path.of(input.substring(1).trim()))) {
+                    if (!line.isEmpty()) {
+                        terms.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading terms: " + e.getMessage());
+                return;
+            }
+        } else {
+            // Terms are read until an empty line
+            while (!input.isEmpty()) {
+                terms.add(input);
+                input = ScanUtils.getUserInput("Next term (empty to search): ");
+            }
+        }
+
+        if (terms.isEmpty()) {
+            System.out.println("Enter at least one search term.");
+            return;
+        }
+
+        System.out.print(tableService.searchValues(terms));
+    }
+
+    private void handleEstimate() {
+        String searchTerm = ScanUtils.getUserInput("Enter search term: ");
+
+        if (searchTerm.trim().isEmpty()) {
+            System.out.println("Search term cannot be empty. Please enter a valid search term.");
+            return;
+        }
+
+        try {
+            int sampleRows = Integer.parseInt(ScanUtils.getUserInput("Rows to sample: "));
+            if (sampleRows <= 0) {
+                System.out.println("Sample size must be positive.");
+                return;
+            }
+
+            String mode = ScanUtils.getUserInput("Sampling [uniform/stratified]: ");
+            if (!mode.equalsIgnoreCase("uniform") && !mode.equalsIgnoreCase("stratified")) {
+                System.out.println("Invalid sampling mode.");
+                return;
+            }
+
+            String result = tableService.estimateSearch(searchTerm, sampleRows, mode.equalsIgnoreCase("stratified"));
+            System.out.print(result);
+
+            // Refine until the counts are exact or the user is satisfied
+            while (result.startsWith("~")) {
+                String more = ScanUtils.getUserInput("Sample more rows? [count/all/no]: ");
+                if (more.equalsIgnoreCase("all")) {
+                    result = tableService.refineEstimate(Integer.MAX_VALUE);
+                } else if (more.matches("\\d+") && Integer.parseInt(more) > 0) {
+                    result = tableService.refineEstimate(Integer.parseInt(more));
+                } else {
+                    return;
+                }
+                System.out.print(result);
+            }
+
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number format. Please enter a valid number.");
+        }
+    }
+
+    private void handleQuery() {
+        System.out.println("e.g. key startswith ab and (value contains \"x y\" or row 10..20) and not col = 0");
+        String query = ScanUtils.getUserInput("Enter query (prefix with 'explain' to see the plan): ");
+
+        if (query.trim().isEmpty()) {
+            System.out.println("Query cannot be empty.");
+            return;
+        }
+
+        try {
+            String trimmed = query.trim();
+            if (trimmed.toLowerCase().startsWith("explain ")) {
+                System.out.print(tableService.explainQuery(trimmed.substring("explain ".length())));
+            } else {
+                System.out.print(tableService.query(trimmed));
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid query: " + e.getMessage());
+        }
+    }
+
     private void handleEdit() {
         try {
             String position = ScanUtils.getUserInput("Enter cell position [row,column]: ");
@@ -79,12 +253,12 @@ public class MenuManager {
             int rowIndex = Integer.parseInt(parts[0].trim());
             int columnIndex = Integer.parseInt(parts[1].trim());
 
-            if (rowIndex < 0 || rowIndex >= tableService.getTable().size()) {
+            if (rowIndex < 0 || rowIndex >= tableService.awaitRows(rowIndex + 1)) {
                 System.out.println("Invalid row index");
                 return;
             }
 
-            if (columnIndex < 0 || columnIndex >= tableService.getTable().get(rowIndex).size()) {
+            if (columnIndex < 0 || columnIndex >= tableService.getColumnCount(rowIndex)) {
                 System.out.println("Invalid column index");
                 return;
             }
@@ -111,8 +285,8 @@ public class MenuManager {
             }
 
             tableService.editCell(rowIndex, columnIndex, newKey, newValue, editMode);
-            // Save after edit
-            fileService.saveFile(tableService.getTable(), fileName);
+            // Save after edit, once the table has finished loading
+            tableService.saveTable(fileName);
 
         } catch (NumberFormatException e) {
             System.out.println("Invalid number format. Please enter valid row and column numbers.");
@@ -136,7 +310,7 @@ public class MenuManager {
             }
 
             tableService.addRow(numberOfCells);
-            fileService.saveFile(tableService.getTable(), fileName);
+            tableService.saveTable(fileName);
 
         } catch (NumberFormatException e) {
             System.out.println("Invalid number format. Please enter a valid number.");
@@ -150,7 +324,7 @@ public class MenuManager {
             String input = ScanUtils.getUserInput("Enter row to sort: ");
             int rowIndex = Integer.parseInt(input);
 
-            if (rowIndex < 0 || rowIndex >= tableService.getTable().size()) {
+            if (rowIndex < 0 || rowIndex >= tableService.awaitRows(rowIndex + 1)) {
                 System.out.println("Invalid row index.");
                 return;
             }
@@ -163,7 +337,7 @@ public class MenuManager {
             }
 
             tableService.sortRow(rowIndex, order);
-            fileService.saveFile(tableService.getTable(), fileName);
+            tableService.saveTable(fileName);
 
         } catch (NumberFormatException e) {
             System.out.println("Invalid number format. Please enter a valid row number.");
@@ -191,8 +365,15 @@ public class MenuManager {
                 return;
             }
 
+            // The bundled default resource is read from the classpath, so it cannot be reopened from disk
+            if ((long) rows * columns >= STREAMED_RESET_CELLS && !FileService.DEFAULT_RESOURCE.equals(fileName)) {
+                tableService.generateTable(fileName, rows, columns, FIRST_PAGE_ROWS);
+                tableService.printTable(FIRST_PAGE_ROWS);
+                return;
+            }
+
             tableService.resetTable(rows, columns);
-            fileService.saveFile(tableService.getTable(), fileName);
+            tableService.saveTable(fileName);
 
         } catch (NumberFormatException e) {
             System.out.println("Invalid number format. Please enter valid numbers for rows and columns.");
@@ -200,5 +381,112 @@ public class MenuManager {
             System.out.println("Error saving: " + e.getMessage());
         }
     }
-    
-}
\ No newline at end of file
+
+    private void handleWatch() {
+        if (tableService.isWatching()) {
+            tableService.stopWatching();
+            System.out.println("Stopped watching " + fileName + ".");
+            return;
+        }
+
+        try {
+            tableService.startWatching(fileName);
+            System.out.println("Watching " + fileName + " for external changes.");
+        } catch (IOException e) {
+            System.out.println("Error watching file: " + e.getMessage());
+        }
+    }
+
+    private void handleExport() {
+        String format = ScanUtils.getUserInput("Export format [csv/jsonl]: ");
+
+        if (!format.equalsIgnoreCase("csv") && !format.equalsIgnoreCase("jsonl")) {
+            System.out.println("Invalid format.");
+            return;
+        }
+
+        String exportFileName = ScanUtils.getUserInput("Enter export file name: ");
+
+        if (exportFileName.trim().isEmpty()) {
+            System.out.println("File name cannot be empty.");
+            return;
+        }
+
+        try {
+            if (format.equalsIgnoreCase("csv")) {
+                fileService.exportCsv(tableService.getTable(), exportFileName);
+            } else {
+                fileService.exportJsonLines(tableService.getTable(), exportFileName);
+            }
+            System.out.println("Exported table to " + exportFileName + ".");
+        } catch (IOException e) {
+            System.out.println("Error exporting: " + e.getMessage());
+        }
+    }
+
+    private void handleImport() {
+        String importFileName = ScanUtils.getUserInput("Enter CSV or TSV file name: ");
+
+        if (!fileService.fileExists(importFileName)) {
+            System.out.println("File '" + importFileName + "' not found or not readable.");
+            return;
+        }
+
+        char delimiter = importFileName.toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        try {
+            tableService.importTable(importFileName, delimiter);
+            tableService.printTable(FIRST_PAGE_ROWS);
+            tableService.saveTable(fileName);
+        } catch (IOException e) {
+            System.out.println("Error importing: " + e.getMessage());
+        }
+    }
+
+    private void handleOpen() {
+        String openFileName = ScanUtils.getUserInput("Enter table file name: ");
+
+        if (openFileName.trim().isEmpty()) {
+            System.out.println("File name cannot be empty.");
+            return;
+        }
+        if (!workspace.isResident(openFileName) && !fileService.fileExists(openFileName)) {
+            System.out.println("File '" + openFileName + "' not found or not readable.");
+            return;
+        }
+
+        try {
+            tableService = workspace.open(openFileName, FIRST_PAGE_ROWS);
+            fileName = openFileName;
+            tableService.printTable(FIRST_PAGE_ROWS);
+        } catch (IOException e) {
+            System.out.println("Error loading file: " + e.getMessage());
+        }
+    }
+
+    private void handleTables() {
+        for (String name : workspace.getFileNames()) {
+            System.out.println((name.equals(fileName) ? "* " : "  ") + name
+                    + (workspace.isResident(name) ? "" : " (on disk)"));
+        }
+    }
+
+    /**
+     * Parses a size in bytes with an optional k, m or g suffix (powers of 1024).
+     */
+    private static long parseSize(String size) {
+        String value = size.trim().toLowerCase();
+        if (value.endsWith("b")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        long unit = 1;
+        switch (value.isEmpty() ? ' ' : value.charAt(value.length() - 1)) {
+            case 'k' -> unit = 1L << 10;
+            case 'm' -> unit = 1L << 20;
+            case 'g' -> unit = 1L << 30;
+            default -> unit = 1;
+        }
+        String digits = unit == 1 ? value : value.substring(0, value.length() - 1);
+        return Long.parseLong(digits.trim()) * unit;
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.exist.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Generates {@code (k,v)} table files of a given shape by streaming rows to disk, so files far larger
+ * than the heap can be produced. Keys and values use the same printable characters as the
+ * application's random cells. The same seed always produces the same file.
+ *
+ * <pre>
+ * java -cp benchmark.jar com.exist.benchmark.DatasetGenerator FILE ROWS COLUMNS [KEY_LENGTH VALUE_LENGTH [SEED]]
+ * java -cp benchmark.jar com.exist.benchmark.DatasetGenerator FILE --size 100MB [COLUMNS [KEY_LENGTH VALUE_LENGTH [SEED]]]
+ * </pre>
+ */
+public final class DatasetGenerator {
+
+    public static final int DEFAULT_COLUMNS = 10;
+    public static final int DEFAULT_FIELD_LENGTH = 3;
+    public static final long DEFAULT_SEED = 42;
+
+    private static final int ASCII_MIN = 33;
+    private static final int ASCII_RANGE = 94;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int columns;
+    private final int keyLength;
+    private final int valueLength;
+    private final long seed;
+
+    public DatasetGenerator(int columns, int keyLength, int valueLength, long seed) {
+        if (columns <= 0 || keyLength < 0 || valueLength < 0) {
+            throw new IllegalArgumentException("Columns must be positive and lengths non-negative.");
+        }
+        this.columns = columns;
+        this.keyLength = keyLength;
+        this.valueLength = valueLength;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the size in bytes of one row including its line break.
+     */
+    public long bytesPerRow() {
+        return (long) columns * (keyLength + valueLength + 3) + columns;
+    }
+
+    /**
+     * Returns the number of rows that makes a file of about {@code targetBytes}.
+     */
+    public int rowsForSize(long targetBytes) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, targetBytes / bytesPerRow()));
+    }
+
+    /**
+     * Writes {@code rows} rows to {@code file} and returns the number of bytes written.
+     */
+    public long generate(Path file, int rows) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[] row = new byte[(int) bytesPerRow()];
+        long written = 0;
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+            for (int i = 0; i < rows; i++) {
+                int length = fillRow(row, random);
+                // No line break after the last row, as the application writes its files
+                int end = i == rows - 1 ? length - 1 : length;
+                out.write(row, 0, end);
+                written += end;
+            }
+        }
+        return written;
+    }
+
+    private int fillRow(byte[] row, SplittableRandom random) {
+        int position = 0;
+        for (int column = 0; column < columns; column++) {
+            row[position++] = '(';
+            position = fillField(row, position, keyLength, random);
+            row[position++] = ',';
+            position = fillField(row, position, valueLength, random);
+            row[position++] = ')';
+            row[position++] = column == columns - 1 ? (byte) '\n' : (byte) ' ';
+        }
+        return position;
+    }
+
+    private static int fillField(byte[] row, int position, int length, SplittableRandom random) {
+        for (int i = 0; i < length; i++) {
+            byte c;
+            do {
+                c = (byte) (random.nextInt(ASCII_RANGE) + ASCII_MIN);
+            } while (c == ',' || c == ')' || c == '(');
+            row[position++] = c;
+        }
+        return position;
+    }
+
+    /**
+     * Parses sizes such as {@code 512KB}, {@code 100MB} or {@code 1GB} (powers of 1024), or plain bytes.
+     */
+    public static long parseSize(String size) {
+        String upper = size.trim().toUpperCase();
+        long unit = 1;
+        if (upper.endsWith("KB")) {
+            unit = 1L << 10;
+        } else if (upper.endsWith("MB")) {
+            unit = 1L << 20;
+        } else if (upper.endsWith("GB")) {
+            unit = 1L << 30;
+        }
+        String digits = unit == 1 ? upper : upper.substring(0, upper.length() - 2);
+        return Long.parseLong(digits.trim()) * unit;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: DatasetGenerator FILE ROWS COLUMNS [KEY_LENGTH VALUE_LENGTH [SEED]]");
+            System.err.println("       DatasetGenerator FILE --size SIZE [COLUMNS [KEY_LENGTH VALUE_LENGTH [SEED]]]");
+            System.exit(1);
+        }
+
+        try {
+            Path file = Path.of(args[0]);
+            boolean bySize = args[1].equals("--size");
+            int columns = bySize ? intArg(args, 3, DEFAULT_COLUMNS) : Integer.parseInt(args[2]);
+            int next = bySize ? 4 : 3;
+            int keyLength = intArg(args, next, DEFAULT_FIELD_LENGTH);
+            int valueLength = intArg(args, next + 1, DEFAULT_FIELD_LENGTH);
+            long seed = args.length > next + 2 ? Long.parseLong(args[next + 2]) : DEFAULT_SEED;
+
+            DatasetGenerator generator = new DatasetGenerator(columns, keyLength, valueLength, seed);
+            int rows = bySize ? generator.rowsForSize(parseSize(args[2])) : Integer.parseInt(args[1]);
+
+            long start = System.nanoTime();
+            long bytes = generator.generate(file, rows);
+            System.out.printf("Wrote %d rows x %d columns (%d bytes) to %s in %d ms%n",
+                    rows, columns, bytes, file, (System.nanoTime() - start) / 1_000_000);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("Error generating dataset: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+}
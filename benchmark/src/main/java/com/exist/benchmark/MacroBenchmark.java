@@ -0,0 +1,166 @@
+package com.exist.benchmark;
+
+import com.exist.service.FileService;
+import com.exist.service.TableService;
+import com.exist.service.impl.FileServiceImpl;
+import com.exist.service.impl.TableServiceImpl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the application's main operations against generated files of increasing size and prints how
+ * wall time, allocation and memory scale with the file size. Each operation runs once, as a user
+ * would run it, including the table printing the operations do; printed output is discarded.
+ *
+ * <pre>
+ * java -Xmx8g -jar benchmark.jar [--dir DIR] [--columns N] [SIZE ...]     (default sizes: 1MB 100MB 1GB)
+ * </pre>
+ */
+public final class MacroBenchmark {
+
+    private static final String[] DEFAULT_SIZES = {"1MB", "100MB", "1GB"};
+    private static final String[] PHASES = {"load", "search", "search100", "edit+save", "sort+save"};
+    private static final double MB = 1024.0 * 1024.0;
+
+    private final Path directory;
+    private final int columns;
+    private final ResourceMonitor monitor = new ResourceMonitor();
+
+    // Samples of every phase, per file size in bytes
+    private final Map<Long, Map<String, ResourceMonitor.Sample>> results = new LinkedHashMap<>();
+
+    public MacroBenchmark(Path directory, int columns) {
+        this.directory = directory;
+        this.columns = columns;
+    }
+
+    /**
+     * Generates a file of about {@code targetBytes} and measures every phase against it.
+     */
+    Map<String, ResourceMonitor.Sample> run(long targetBytes) throws IOException {
+        DatasetGenerator generator = new DatasetGenerator(columns, DatasetGenerator.DEFAULT_FIELD_LENGTH,
+                DatasetGenerator.DEFAULT_FIELD_LENGTH, DatasetGenerator.DEFAULT_SEED);
+        int rows = generator.rowsForSize(targetBytes);
+        Path file = directory.resolve("table-" + targetBytes + ".txt");
+        long bytes = generator.generate(file, rows);
+        String fileName = file.toString();
+
+        Map<String, ResourceMonitor.Sample> samples = new LinkedHashMap<>();
+        TableService tableService = new TableServiceImpl();
+        FileService fileService = new FileServiceImpl();
+        int middle = rows / 2;
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            monitor.start();
+            tableService.loadTableFromFile(fileName);
+            samples.put("load", monitor.stop());
+
+            String term = tableService.getTable().get(middle).get(0).substring(1, 4);
+            monitor.start();
+            tableService.searchValue(term);
+            samples.put("search", monitor.stop());
+
+            // An audit-style batch of terms from rows across the table, searched in one pass
+            List<String> terms = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                terms.add(tableService.getTable().get((int) ((long) rows * i / 100)).get(0).substring(1, 4));
+            }
+            monitor.start();
+            tableService.searchValues(terms);
+            samples.put("search100", monitor.stop());
+
+            monitor.start();
+            tableService.editCell(middle, 0, "zzz", "", "key");
+            fileService.saveFile(tableService.getTable(), fileName);
+            samples.put("edit+save", monitor.stop());
+
+            monitor.start();
+            tableService.sortRow(middle, "asc");
+            fileService.saveFile(tableService.getTable(), fileName);
+            samples.put("sort+save", monitor.stop());
+        } finally {
+            System.setOut(console);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(fileName + ".idx"));
+        }
+
+        results.put(bytes, samples);
+        return samples;
+    }
+
+    /**
+     * Prints every measured phase per file size, followed by the scaling exponent of each phase
+     * between consecutive sizes: about 1 means time grows linearly with the file, more means worse.
+     */
+    public void printReport(PrintStream out) {
+        for (String phase : PHASES) {
+            out.printf("%n%-10s %12s %12s %12s %14s %14s%n", phase, "file MB", "wall ms", "alloc MB",
+                    "peak heap MB", "peak RSS MB");
+            for (Map.Entry<Long, Map<String, ResourceMonitor.Sample>> entry : results.entrySet()) {
+                ResourceMonitor.Sample sample = entry.getValue().get(phase);
+                out.printf("%-10s %12.1f %12.1f %12.1f %14.1f %14s%n", "", entry.getKey() / MB,
+                        sample.wallNanos / 1e6, sample.allocatedBytes / MB, sample.peakHeapBytes / MB,
+                        sample.peakRssBytes < 0 ? "n/a" : String.format("%.1f", sample.peakRssBytes / MB));
+            }
+        }
+
+        List<Long> sizes = new ArrayList<>(results.keySet());
+        if (sizes.size() < 2) {
+            return;
+        }
+        out.printf("%nScaling exponent of wall time (1.0 = linear in file size)%n");
+        for (String phase : PHASES) {
+            StringBuilder line = new StringBuilder(String.format("%-10s", phase));
+            for (int i = 1; i < sizes.size(); i++) {
+                double time = results.get(sizes.get(i)).get(phase).wallNanos;
+                double previous = results.get(sizes.get(i - 1)).get(phase).wallNanos;
+                double exponent = Math.log(time / previous) / Math.log((double) sizes.get(i) / sizes.get(i - 1));
+                line.append(String.format("  %.1f->%.1f MB: %.2f", sizes.get(i - 1) / MB, sizes.get(i) / MB, exponent));
+            }
+            out.println(line);
+        }
+    }
+
+    public static void main(String[] args) {
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "advancedjava-benchmark");
+        int columns = DatasetGenerator.DEFAULT_COLUMNS;
+        List<String> sizes = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dir" -> directory = Path.of(args[++i]);
+                case "--columns" -> columns = Integer.parseInt(args[++i]);
+                default -> sizes.add(args[i]);
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes = List.of(DEFAULT_SIZES);
+        }
+
+        MacroBenchmark benchmark = new MacroBenchmark(directory, columns);
+        for (String size : sizes) {
+            System.out.println("Running " + size + " ...");
+            try {
+                benchmark.run(DatasetGenerator.parseSize(size));
+            } catch (OutOfMemoryError e) {
+                System.out.println("Out of memory at " + size + "; run with a larger -Xmx to measure bigger files.");
+                break;
+            } catch (IOException e) {
+                System.out.println("Error running " + size + ": " + e.getMessage());
+                break;
+            }
+        }
+        benchmark.printReport(System.out);
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.exist.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Measures one benchmark phase: wall time, bytes allocated by all threads, peak heap use and peak
+ * resident set size. Allocation is summed over the threads alive at the end of the phase, so
+ * threads that finish during the phase are not counted. Peak RSS comes from {@code /proc} and is
+ * only available on Linux; elsewhere it is reported as -1.
+ */
+final class ResourceMonitor {
+
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+    private static final Path PROC_CLEAR_REFS = Path.of("/proc/self/clear_refs");
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+
+    private long startNanos;
+    private long startAllocated;
+
+    /**
+     * Result of one measured phase.
+     */
+    static final class Sample {
+
+        final long wallNanos;
+        final long allocatedBytes;
+        final long peakHeapBytes;
+        final long peakRssBytes;
+
+        Sample(long wallNanos, long allocatedBytes, long peakHeapBytes, long peakRssBytes) {
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.peakHeapBytes = peakHeapBytes;
+            this.peakRssBytes = peakRssBytes;
+        }
+    }
+
+    void start() {
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        resetPeakRss();
+        startAllocated = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    Sample stop() {
+        long wall = System.nanoTime() - startNanos;
+        long allocated = allocatedBytes() - startAllocated;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        return new Sample(wall, allocated, peakHeap, peakRss());
+    }
+
+    private long allocatedBytes() {
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Resets the kernel's high-water mark of resident memory (Linux 4.0 and later).
+     */
+    private static void resetPeakRss() {
+        try {
+            Files.writeString(PROC_CLEAR_REFS, "5");
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // Peak RSS then covers the whole process lifetime
+        }
+    }
+
+    private static long peakRss() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.exist.benchmark;
+
+import com.exist.service.impl.SearchKernel;
+import com.exist.service.impl.TableServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares counting search matches cell by cell ({@code legacy}) with the scalar and the Vector API
+ * search kernels, both through {@code searchValue} and on the raw byte scan. The search filter is
+ * off so every row is scanned.
+ *
+ * <pre>
+ * mvn -pl benchmark -am package -DskipTests
+ * java -cp benchmark/target/benchmark.jar org.openjdk.jmh.Main SearchKernel
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class SearchKernelBenchmark {
+
+    @Param({"legacy", "scalar", "vector"})
+    public String kernel;
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"a", "ab", "abcd"})
+    public String term;
+
+    private TableServiceImpl tableService;
+    private SearchKernel searchKernel;
+    private byte[] text;
+    private byte first;
+
+    @Setup
+    public void setUp() {
+        searchKernel = switch (kernel) {
+            case "scalar" -> SearchKernel.scalar();
+            case "vector" -> SearchKernel.vector();
+            default -> null;
+        };
+        tableService = new TableServiceImpl();
+        tableService.setSearchFilterEnabled(false);
+        tableService.setSearchKernel(searchKernel);
+        tableService.resetTable(rows, DatasetGenerator.DEFAULT_COLUMNS);
+
+        SplittableRandom random = new SplittableRandom(DatasetGenerator.DEFAULT_SEED);
+        text = new byte[1 << 16];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) (random.nextInt(94) + 33);
+        }
+        first = (byte) term.charAt(0);
+    }
+
+    @Benchmark
+    public String searchValue() {
+        return tableService.searchValue(term);
+    }
+
+    /**
+     * Counts the occurrences of the term's first character in a 64 KB buffer.
+     */
+    @Benchmark
+    public int indexOf() {
+        SearchKernel scan = searchKernel == null ? SearchKernel.scalar() : searchKernel;
+        int count = 0;
+        for (int i = scan.indexOf(text, 0, text.length, first); i >= 0;
+                i = scan.indexOf(text, i + 1, text.length, first)) {
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.exist.benchmark;
+
+import com.exist.model.Table;
+import com.exist.service.impl.FileServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetGeneratorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testGenerateWritesParsableTable() throws Exception {
+        DatasetGenerator generator = new DatasetGenerator(4, 5, 2, 7);
+        Path file = directory.resolve("table.txt");
+
+        long bytes = generator.generate(file, 100);
+
+        assertEquals(Files.size(file), bytes);
+        assertEquals(100 * generator.bytesPerRow() - 1, bytes);
+        Table table = new FileServiceImpl().parseFileToTable(Files.readString(file));
+        assertEquals(100, table.size());
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(4, table.get(i).size());
+            assertTrue(table.get(i).get(3).matches("\\([^,()]{5},[^,()]{2}\\)"));
+        }
+    }
+
+    @Test
+    void testSameSeedGivesSameFile() throws Exception {
+        Path first = directory.resolve("first.txt");
+        Path second = directory.resolve("second.txt");
+        Path other = directory.resolve("other.txt");
+
+        new DatasetGenerator(3, 3, 3, 1).generate(first, 50);
+        new DatasetGenerator(3, 3, 3, 1).generate(second, 50);
+        new DatasetGenerator(3, 3, 3, 2).generate(other, 50);
+
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+        assertFalse(Files.readString(first).equals(Files.readString(other)));
+    }
+
+    @Test
+    void testSizes() {
+        assertEquals(512 * 1024, DatasetGenerator.parseSize("512KB"));
+        assertEquals(100L << 20, DatasetGenerator.parseSize("100mb"));
+        assertEquals(1L << 30, DatasetGenerator.parseSize("1GB"));
+        assertEquals(1000, DatasetGenerator.parseSize("1000"));
+
+        DatasetGenerator generator = new DatasetGenerator(10, 3, 3, 42);
+        assertEquals(100, generator.bytesPerRow());
+        assertEquals(10_485, generator.rowsForSize(1L << 20));
+    }
+
+}
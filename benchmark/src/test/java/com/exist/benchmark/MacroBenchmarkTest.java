@@ -0,0 +1,38 @@
+package com.exist.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MacroBenchmarkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRunMeasuresEveryPhase() throws Exception {
+        MacroBenchmark benchmark = new MacroBenchmark(directory, 5);
+
+        Map<String, ResourceMonitor.Sample> samples = benchmark.run(16 * 1024);
+        benchmark.run(64 * 1024);
+
+        assertEquals(5, samples.size());
+        for (ResourceMonitor.Sample sample : samples.values()) {
+            assertTrue(sample.wallNanos > 0);
+            assertTrue(sample.peakHeapBytes > 0);
+        }
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        benchmark.printReport(new PrintStream(report));
+        assertTrue(report.toString().contains("edit+save"));
+        assertTrue(report.toString().contains("search100"));
+        assertTrue(report.toString().contains("Scaling exponent"));
+    }
+
+}
@@ -0,0 +1,290 @@
+package com.exist.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Row that stores each {@code (kkk,vvv)} cell with a three character printable-ASCII key and value
+ * in a single {@code long}: every character becomes a base-94 digit, so key and value take 20 bits
+ * each. Packed cells compare numerically in the same order as their strings. Cells that do not fit
+ * are kept as strings in a side array and marked by a negative slot index.
+ */
+public final class PackedRow extends AbstractList<String> implements RandomAccess {
+
+    static final int CELL_LENGTH = 9;
+    static final int FIELD_LENGTH = 3;
+    static final int COMMA_INDEX = 4;
+
+    private static final int FIRST_CHAR = 33;
+    private static final int RADIX = 94;
+    private static final int FIELD_BITS = 20;
+    private static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+
+    private long[] cells;
+    private String[] overflow;
+    private int overflowCount;
+
+    public PackedRow(List<String> row) {
+        cells = new long[row.size()];
+        for (int i = 0; i < cells.length; i++) {
+            store(i, row.get(i));
+        }
+    }
+
+    /**
+     * Wraps cells that are already packed. Every value must be non-negative.
+     */
+    public PackedRow(long[] packedCells) {
+        cells = packedCells;
+    }
+
+    public static boolean canPack(List<String> row) {
+        for (int i = 0; i < row.size(); i++) {
+            if (!fits(row.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean fits(String cell) {
+        return fits(cell, 0, cell.length());
+    }
+
+    /**
+     * Same check as {@link #fits(String)} for the cell in {@code [start, end)} of a longer string.
+     */
+    public static boolean fits(String text, int start, int end) {
+        if (end - start != CELL_LENGTH || text.charAt(start) != '(' || text.charAt(start + COMMA_INDEX) != ','
+                || text.charAt(end - 1) != ')') {
+            return false;
+        }
+        for (int i = 1; i < CELL_LENGTH - 1; i++) {
+            char c = text.charAt(start + i);
+            if (i != COMMA_INDEX && (c < FIRST_CHAR || c >= FIRST_CHAR + RADIX || (i < COMMA_INDEX && c == ','))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same check as {@link #fits(String)} for a cell stored as ASCII bytes in {@code [start, end)}.
+     */
+    public static boolean fits(byte[] bytes, int start, int end) {
+        if (end - start != CELL_LENGTH || bytes[start] != '(' || bytes[start + COMMA_INDEX] != ','
+                || bytes[end - 1] != ')') {
+            return false;
+        }
+        for (int i = 1; i < CELL_LENGTH - 1; i++) {
+            byte b = bytes[start + i];
+            if (i != COMMA_INDEX && (b < FIRST_CHAR || b >= FIRST_CHAR + RADIX || (i < COMMA_INDEX && b == ','))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long pack(byte[] bytes, int start) {
+        long key = 0;
+        long value = 0;
+        for (int i = 0; i < FIELD_LENGTH; i++) {
+            key = key * RADIX + (bytes[start + 1 + i] - FIRST_CHAR);
+            value = value * RADIX + (bytes[start + COMMA_INDEX + 1 + i] - FIRST_CHAR);
+        }
+        return key << FIELD_BITS | value;
+    }
+
+    /**
+     * Writes the cell as ASCII bytes at {@code position} and returns the position after it.
+     */
+    static int writeCell(byte[] target, int position, long packed) {
+        target[position] = '(';
+        writeField(target, position + 1, keyCode(packed));
+        target[position + COMMA_INDEX] = ',';
+        writeField(target, position + COMMA_INDEX + 1, valueCode(packed));
+        target[position + CELL_LENGTH - 1] = ')';
+        return position + CELL_LENGTH;
+    }
+
+    private static void writeField(byte[] target, int position, int code) {
+        for (int i = FIELD_LENGTH - 1; i >= 0; i--) {
+            target[position + i] = (byte) (code % RADIX + FIRST_CHAR);
+            code /= RADIX;
+        }
+    }
+
+    static long pack(String cell) {
+        return pack(cell, 0);
+    }
+
+    /**
+     * Packs the cell starting at {@code start} of a longer string; it must pass {@link #fits(String, int, int)}.
+     */
+    public static long pack(String text, int start) {
+        return (long) packField(text, start + 1) << FIELD_BITS | packField(text, start + COMMA_INDEX + 1);
+    }
+
+    private static int packField(String cell, int start) {
+        int code = 0;
+        for (int i = start; i < start + FIELD_LENGTH; i++) {
+            code = code * RADIX + (cell.charAt(i) - FIRST_CHAR);
+        }
+        return code;
+    }
+
+    static int keyCode(long packed) {
+        return (int) (packed >>> FIELD_BITS);
+    }
+
+    static int valueCode(long packed) {
+        return (int) (packed & FIELD_MASK);
+    }
+
+    /**
+     * Returns the character at {@code position} (0 to 2) of a packed key or value.
+     */
+    static char fieldChar(int code, int position) {
+        for (int i = FIELD_LENGTH - 1; i > position; i--) {
+            code /= RADIX;
+        }
+        return (char) (code % RADIX + FIRST_CHAR);
+    }
+
+    static void appendCell(StringBuilder builder, long packed) {
+        builder.append('(');
+        appendField(builder, keyCode(packed));
+        builder.append(',');
+        appendField(builder, valueCode(packed));
+        builder.append(')');
+    }
+
+    private static void appendField(StringBuilder builder, int code) {
+        builder.append(fieldChar(code, 0)).append(fieldChar(code, 1)).append(fieldChar(code, 2));
+    }
+
+    public static String unpack(long packed) {
+        StringBuilder builder = new StringBuilder(CELL_LENGTH);
+        appendCell(builder, packed);
+        return builder.toString();
+    }
+
+    public boolean isPacked(int index) {
+        return cells[index] >= 0;
+    }
+
+    public long getPacked(int index) {
+        return cells[index];
+    }
+
+    @Override
+    public String get(int index) {
+        long cell = cells[index];
+        return cell >= 0 ? unpack(cell) : overflow[(int) -cell - 1];
+    }
+
+    @Override
+    public String set(int index, String cell) {
+        String previous = get(index);
+        store(index, cell);
+        return previous;
+    }
+
+    private void store(int index, String cell) {
+        if (fits(cell)) {
+            long replaced = cells[index];
+            cells[index] = pack(cell);
+            if (replaced < 0) {
+                releaseOverflow((int) -replaced - 1);
+            }
+            return;
+        }
+
+        long current = cells[index];
+        if (current < 0) {
+            overflow[(int) -current - 1] = cell;
+            return;
+        }
+        if (overflow == null) {
+            overflow = new String[4];
+        } else if (overflowCount == overflow.length) {
+            overflow = Arrays.copyOf(overflow, overflowCount * 2);
+        }
+        overflow[overflowCount] = cell;
+        cells[index] = -(++overflowCount);
+    }
+
+    /**
+     * Frees an overflow slot no cell points to anymore by moving the last overflow cell into it, so
+     * the side array only holds the cells that do not fit.
+     */
+    private void releaseOverflow(int slot) {
+        int last = --overflowCount;
+        if (slot != last) {
+            overflow[slot] = overflow[last];
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] == -(last + 1)) {
+                    cells[i] = -(slot + 1);
+                    break;
+                }
+            }
+        }
+        overflow[last] = null;
+        if (overflowCount == 0) {
+            overflow = null;
+        }
+    }
+
+    int overflowCount() {
+        return overflowCount;
+    }
+
+    private boolean allPacked() {
+        for (long cell : cells) {
+            if (cell < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * Sorts the packed values directly when every cell is packed and the order is natural or reversed.
+     */
+    @Override
+    public void sort(Comparator<? super String> comparator) {
+        boolean natural = comparator == null || comparator == Comparator.naturalOrder();
+        boolean reversed = comparator == Collections.reverseOrder();
+
+        if ((natural || reversed) && allPacked()) {
+            Arrays.sort(cells);
+            if (reversed) {
+                for (int i = 0, j = cells.length - 1; i < j; i++, j--) {
+                    long swap = cells[i];
+                    cells[i] = cells[j];
+                    cells[j] = swap;
+                }
+            }
+            return;
+        }
+
+        String[] sorted = toArray(new String[0]);
+        Arrays.sort(sorted, comparator);
+        Arrays.fill(cells, 0);
+        overflow = null;
+        overflowCount = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            store(i, sorted[i]);
+        }
+    }
+
+}
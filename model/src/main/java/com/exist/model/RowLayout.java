@@ -0,0 +1,74 @@
+package com.exist.model;
+
+import java.util.Arrays;
+
+/**
+ * Byte position and slot length of every row in the file a table was last written to or read from.
+ * A slot is the space a row may occupy on its line, so a row that still fits can be rewritten in place.
+ */
+public class RowLayout {
+
+    private final String path;
+    private long[] offsets;
+    private int[] slotLengths;
+    private int rowCount;
+    private long fileSize = -1;
+    private long lastModified = -1;
+
+    public RowLayout(String path, int expectedRows) {
+        this.path = path;
+        this.offsets = new long[Math.max(expectedRows, 16)];
+        this.slotLengths = new int[offsets.length];
+    }
+
+    public void addRow(long offset, int slotLength) {
+        if (rowCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, rowCount * 2);
+            slotLengths = Arrays.copyOf(slotLengths, rowCount * 2);
+        }
+        offsets[rowCount] = offset;
+        slotLengths[rowCount] = slotLength;
+        rowCount++;
+    }
+
+    public void truncate(int newRowCount) {
+        rowCount = Math.min(rowCount, newRowCount);
+    }
+
+    public long getOffset(int rowIndex) {
+        return offsets[rowIndex];
+    }
+
+    public int getSlotLength(int rowIndex) {
+        return slotLengths[rowIndex];
+    }
+
+    /**
+     * Returns the position just past the slot of the given row, or 0 for a negative index.
+     */
+    public long getSlotEnd(int rowIndex) {
+        return rowIndex < 0 ? 0 : offsets[rowIndex] + slotLengths[rowIndex];
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Records the size and modification time of the file right after it was written, so a later
+     * change by anyone else invalidates this layout.
+     */
+    public void stamp(long fileSize, long lastModified) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+    }
+
+    public boolean matches(String path, long fileSize, long lastModified) {
+        return this.path.equals(path) && this.fileSize == fileSize && this.lastModified == lastModified;
+    }
+
+}
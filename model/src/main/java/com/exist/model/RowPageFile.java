@@ -0,0 +1,130 @@
+package com.exist.model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Temporary file that holds rows evicted from a heap-budgeted {@link Table}. Rows are appended as
+ * records and read back by offset; a record is never overwritten, so space held by rows that
+ * changed after being evicted is only reclaimed when the file is closed. The file is deleted on close.
+ *
+ * <p>Record layout: record length (int), kind (byte), cell count (int), then either the packed
+ * {@code long} of every cell or, for each cell, its UTF-8 length (int) and bytes.
+ */
+final class RowPageFile implements Closeable {
+
+    private static final byte PACKED = 1;
+    private static final byte STRINGS = 2;
+
+    private final FileChannel channel;
+    private long end;
+
+    private RowPageFile(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static RowPageFile create() throws IOException {
+        Path path = Files.createTempFile("table-", ".pages");
+        path.toFile().deleteOnExit();
+        return new RowPageFile(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    /**
+     * Appends the row and returns the offset to read it back from.
+     */
+    synchronized long write(List<String> row) throws IOException {
+        ByteBuffer record = encode(row);
+        long offset = end;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        end = position;
+        return offset;
+    }
+
+    synchronized List<String> read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        readFully(header, offset);
+        ByteBuffer record = ByteBuffer.allocate(header.flip().getInt());
+        readFully(record, offset + Integer.BYTES);
+        record.flip();
+
+        byte kind = record.get();
+        int cells = record.getInt();
+        if (kind == PACKED) {
+            long[] packed = new long[cells];
+            record.asLongBuffer().get(packed);
+            return new PackedRow(packed);
+        }
+
+        List<String> row = new ArrayList<>(cells);
+        for (int i = 0; i < cells; i++) {
+            byte[] bytes = new byte[record.getInt()];
+            record.get(bytes);
+            row.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return row;
+    }
+
+    private static ByteBuffer encode(List<String> row) {
+        int cells = row.size();
+        if (row instanceof PackedRow && allPacked((PackedRow) row)) {
+            PackedRow packedRow = (PackedRow) row;
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + 1 + Integer.BYTES + cells * Long.BYTES);
+            record.putInt(record.capacity() - Integer.BYTES).put(PACKED).putInt(cells);
+            for (int i = 0; i < cells; i++) {
+                record.putLong(packedRow.getPacked(i));
+            }
+            return record.flip();
+        }
+
+        byte[][] encoded = new byte[cells][];
+        int length = 1 + Integer.BYTES;
+        for (int i = 0; i < cells; i++) {
+            encoded[i] = row.get(i).getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + encoded[i].length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length).put(STRINGS).putInt(cells);
+        for (byte[] cell : encoded) {
+            record.putInt(cell.length).put(cell);
+        }
+        return record.flip();
+    }
+
+    private static boolean allPacked(PackedRow row) {
+        for (int i = 0; i < row.size(); i++) {
+            if (!row.isPacked(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Truncated page file record at " + position);
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+}
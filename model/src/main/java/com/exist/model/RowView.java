@@ -0,0 +1,219 @@
+package com.exist.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable read-only view over one row of a {@link Table}. Binding copies the cell references into
+ * a plain array and records where each cell's key ends, so scans and renders can walk the cells
+ * without going through the row list or cutting keys and values out as new strings.
+ * Cells of a {@link PackedRow} stay packed; they are searched and rendered from their packed value.
+ * Obtain one with {@link Table#view(int, RowView)} and pass it back in for the next row.
+ */
+public final class RowView {
+
+    // Null for a packed cell
+    private String[] cells = new String[16];
+    private long[] packed = new long[16];
+    // Index of the comma separating key and value in each cell
+    private int[] commas = new int[16];
+    private int size;
+
+    RowView bind(List<String> row) {
+        size = row.size();
+        if (size > cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(size, cells.length * 2));
+            packed = Arrays.copyOf(packed, cells.length);
+            commas = Arrays.copyOf(commas, cells.length);
+        }
+
+        if (row instanceof PackedRow) {
+            PackedRow packedRow = (PackedRow) row;
+            for (int i = 0; i < size; i++) {
+                if (packedRow.isPacked(i)) {
+                    cells[i] = null;
+                    packed[i] = packedRow.getPacked(i);
+                    commas[i] = PackedRow.COMMA_INDEX;
+                } else {
+                    bindCell(i, packedRow.get(i));
+                }
+            }
+            return this;
+        }
+
+        for (int i = 0; i < size; i++) {
+            bindCell(i, row.get(i));
+        }
+        return this;
+    }
+
+    private void bindCell(int column, String cell) {
+        cells[column] = cell;
+        int comma = cell.indexOf(',');
+        commas[column] = comma == -1 ? cell.length() - 1 : comma;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String cell(int column) {
+        String cell = cells[column];
+        return cell != null ? cell : PackedRow.unpack(packed[column]);
+    }
+
+    public String key(int column) {
+        return cell(column).substring(1, commas[column]);
+    }
+
+    public String value(int column) {
+        String cell = cell(column);
+        int end = cell.length() - 1;
+        return cell.substring(Math.min(commas[column] + 1, end), end);
+    }
+
+    public int keyLength(int column) {
+        return cells[column] == null ? PackedRow.FIELD_LENGTH : commas[column] - 1;
+    }
+
+    public char keyChar(int column, int index) {
+        String cell = cells[column];
+        return cell == null ? PackedRow.fieldChar(PackedRow.keyCode(packed[column]), index) : cell.charAt(1 + index);
+    }
+
+    public int valueLength(int column) {
+        return cells[column] == null ? PackedRow.FIELD_LENGTH : valueEnd(column) - valueStart(column);
+    }
+
+    public char valueChar(int column, int index) {
+        String cell = cells[column];
+        return cell == null ? PackedRow.fieldChar(PackedRow.valueCode(packed[column]), index)
+                : cell.charAt(valueStart(column) + index);
+    }
+
+    public int countInKey(int column, String term) {
+        String cell = cells[column];
+        if (cell == null) {
+            return countInField(PackedRow.keyCode(packed[column]), term);
+        }
+        return countOccurrences(cell, 1, commas[column], term);
+    }
+
+    public int countInValue(int column, String term) {
+        String cell = cells[column];
+        if (cell == null) {
+            return countInField(PackedRow.valueCode(packed[column]), term);
+        }
+        return countOccurrences(cell, valueStart(column), valueEnd(column), term);
+    }
+
+    /**
+     * Appends the row in file format: the cells separated by single spaces.
+     */
+    public void appendTo(StringBuilder builder) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            if (cells[i] != null) {
+                builder.append(cells[i]);
+            } else {
+                PackedRow.appendCell(builder, packed[i]);
+            }
+        }
+    }
+
+    /**
+     * Encodes the row in file format as ASCII bytes, or returns null when a cell holds a character
+     * outside ASCII and the row has to go through a charset encoder instead.
+     */
+    public byte[] toAsciiBytes() {
+        byte[] bytes = new byte[encodedLength()];
+        return writeAscii(bytes, null) < 0 ? null : bytes;
+    }
+
+    /**
+     * Returns the length of the row in file format, in characters.
+     */
+    public int encodedLength() {
+        int length = Math.max(size - 1, 0);
+        for (int i = 0; i < size; i++) {
+            length += cells[i] == null ? PackedRow.CELL_LENGTH : cells[i].length();
+        }
+        return length;
+    }
+
+    /**
+     * Writes the row in file format as ASCII bytes to the start of {@code target}, which must hold
+     * {@link #encodedLength()} bytes, and records where each cell starts in {@code cellStarts} when it
+     * is not null. Returns the number of bytes written, or -1 when a cell holds a character outside ASCII.
+     */
+    public int writeAscii(byte[] target, int[] cellStarts) {
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                target[position++] = ' ';
+            }
+            if (cellStarts != null) {
+                cellStarts[i] = position;
+            }
+            String cell = cells[i];
+            if (cell == null) {
+                position = PackedRow.writeCell(target, position, packed[i]);
+                continue;
+            }
+            for (int j = 0; j < cell.length(); j++) {
+                char c = cell.charAt(j);
+                if (c >= 0x80) {
+                    return -1;
+                }
+                target[position++] = (byte) c;
+            }
+        }
+        return position;
+    }
+
+    private int valueStart(int column) {
+        return Math.min(commas[column] + 1, valueEnd(column));
+    }
+
+    private int valueEnd(int column) {
+        return cells[column].length() - 1;
+    }
+
+    /**
+     * Counts occurrences of {@code term} in a packed three character key or value.
+     */
+    private static int countInField(int code, String term) {
+        int length = term.length();
+        if (length > PackedRow.FIELD_LENGTH) {
+            return 0;
+        }
+        int count = 0;
+        for (int start = 0; start + length <= PackedRow.FIELD_LENGTH; start++) {
+            int i = 0;
+            while (i < length && PackedRow.fieldChar(code, start + i) == term.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts possibly overlapping occurrences of {@code term} that lie entirely within {@code [from, to)}.
+     */
+    private static int countOccurrences(String text, int from, int to, String term) {
+        int count = 0;
+        int last = to - term.length();
+        int index = from;
+        while (index <= last && (index = text.indexOf(term, index)) != -1 && index <= last) {
+            count++;
+            index++;
+        }
+        return count;
+    }
+
+}
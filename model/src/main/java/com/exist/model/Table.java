@@ -1,26 +1,450 @@
 package com.exist.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 public class Table {
 
+    /**
+     * How rows are stored. {@code PACKED} keeps rows whose cells all fit a {@link PackedRow} in that
+     * form and every other row as given.
+     */
+    public enum CellStorage { STRINGS, PACKED }
+
+    // Rough heap cost of a row list and of a string cell, used against the heap budget
+    private static final int ROW_OVERHEAD = 56;
+    private static final int STRING_CELL_OVERHEAD = 60;
+
+    private final CellStorage storage;
+
+    // Null for a row that is evicted to the page file
     private List<List<String>> rows = new ArrayList<>();
 
+    // Rows changed since the table was last read from or written to its file
+    private BitSet dirtyRows = new BitSet();
+
+    // Encoded form of each row as last written to disk, or null when not cached
+    private List<byte[]> encodedRows = new ArrayList<>();
+
+    private RowLayout layout;
+
+    // Incremented by every change to the rows, so structures derived from them can tell they are stale
+    private long modCount;
+
+    // Heap budget in bytes, 0 for none. Rows over the budget are evicted with the CLOCK policy
+    private long heapBudget;
+    private long residentBytes;
+    private int[] rowBytes = new int[0];
+    // Offset of the row's copy in the page file, or -1 when it has none or the copy is stale
+    private long[] pageOffsets = new long[0];
+    private long[] referenced = new long[0];
+    private int clockHand;
+    private RowPageFile pageFile;
+
+    // Returns a shared instance for each string cell, or null to keep cells as given
+    private UnaryOperator<String> interner;
+
+    public Table() {
+        this(CellStorage.STRINGS);
+    }
+
+    public Table(CellStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Creates a table that keeps at most about {@code heapBudget} bytes of rows on the heap.
+     */
+    public Table(CellStorage storage, long heapBudget) {
+        this(storage);
+        setHeapBudget(heapBudget);
+    }
+
+    public CellStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Limits the estimated heap held by rows to {@code heapBudget} bytes, or removes the limit when it is 0.
+     * Rows over the budget are written to a temporary page file, least recently used first (CLOCK
+     * approximation), and read back transparently when accessed.
+     */
+    public void setHeapBudget(long heapBudget) {
+        if (heapBudget < 0) {
+            throw new IllegalArgumentException("Heap budget cannot be negative.");
+        }
+        if (this.heapBudget == 0 && heapBudget > 0) {
+            startTracking();
+        }
+        this.heapBudget = heapBudget;
+        evict(-1);
+    }
+
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * Returns the estimated heap held by the rows currently in memory, or 0 when there is no budget.
+     */
+    public long getResidentBytes() {
+        return heapBudget > 0 ? residentBytes : 0;
+    }
+
+    /**
+     * Returns the estimated heap held by the rows in memory, estimated as for the heap budget. Without a
+     * budget every row is counted on each call.
+     */
+    public long estimateHeapBytes() {
+        if (heapBudget > 0) {
+            return residentBytes;
+        }
+        long bytes = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            bytes += estimateBytes(rows.get(i), encodedRows.get(i));
+        }
+        return bytes;
+    }
+
+    public boolean isResident(int rowIndex) {
+        return rows.get(rowIndex) != null;
+    }
+
     public void add(List<String> row) {
-        rows.add(row);
+        modCount++;
+        dirtyRows.set(rows.size());
+        rows.add(store(row));
+        encodedRows.add(null);
+        if (heapBudget > 0) {
+            int index = rows.size() - 1;
+            ensureTracked(index + 1);
+            pageOffsets[index] = -1;
+            rowBytes[index] = 0;
+            account(index);
+            evict(index);
+        }
     }
 
+    private List<String> store(List<String> row) {
+        if (storage == CellStorage.PACKED && !(row instanceof PackedRow) && PackedRow.canPack(row)) {
+            return new PackedRow(row);
+        }
+        if (interner != null) {
+            intern(row);
+        }
+        return row;
+    }
+
+    /**
+     * Passes every string cell of the rows in memory, and of every row stored from now on, through
+     * {@code interner} and keeps the instance it returns, so equal cells of several tables can share
+     * one string. The cells stay equal, so this is not a change. Null stops interning new rows.
+     */
+    public void setInterner(UnaryOperator<String> interner) {
+        if (interner == this.interner) {
+            return;
+        }
+        this.interner = interner;
+        if (interner != null) {
+            for (List<String> row : rows) {
+                if (row != null) {
+                    intern(row);
+                }
+            }
+        }
+    }
+
+    private void intern(List<String> row) {
+        PackedRow packedRow = row instanceof PackedRow ? (PackedRow) row : null;
+        for (int i = 0; i < row.size(); i++) {
+            if (packedRow == null || !packedRow.isPacked(i)) {
+                row.set(i, interner.apply(row.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Returns the live row. Callers that change the returned list directly must call
+     * {@link #markDirty(int)} afterwards so the row is re-encoded on the next save. With a heap budget
+     * the row may be evicted by the next call on the table, so the list must not be kept or changed
+     * after that.
+     */
     public List<String> get(int index) {
-        return rows.get(index);
+        return resident(index);
+    }
+
+    /**
+     * Binds {@code reuse} (or a new view when it is null) to the given row and returns it.
+     */
+    public RowView view(int rowIndex, RowView reuse) {
+        RowView view = reuse == null ? new RowView() : reuse;
+        return view.bind(resident(rowIndex));
+    }
+
+    public void set(int rowIndex, int columnIndex, String cell) {
+        resident(rowIndex).set(columnIndex, cell);
+        markDirty(rowIndex);
+    }
+
+    public void setRow(int rowIndex, List<String> row) {
+        rows.set(rowIndex, store(row));
+        markDirty(rowIndex);
+    }
+
+    /**
+     * Drops every row from {@code newSize} onwards. The saved layout no longer describes the table afterwards.
+     */
+    public void truncate(int newSize) {
+        if (newSize >= rows.size()) {
+            return;
+        }
+        modCount++;
+        if (heapBudget > 0) {
+            for (int i = newSize; i < rows.size(); i++) {
+                residentBytes -= rowBytes[i];
+                rowBytes[i] = 0;
+            }
+        }
+        rows.subList(newSize, rows.size()).clear();
+        encodedRows.subList(newSize, encodedRows.size()).clear();
+        dirtyRows.clear(newSize, dirtyRows.length());
+        layout = null;
+        if (clockHand >= newSize) {
+            clockHand = 0;
+        }
     }
 
     public int size() {
         return rows.size();
     }
-    
+
+    /**
+     * Removes every row and deletes the page file. The heap budget stays in place.
+     */
     public void clear() {
+        modCount++;
         rows.clear();
+        encodedRows.clear();
+        dirtyRows.clear();
+        layout = null;
+        residentBytes = 0;
+        clockHand = 0;
+        closePageFile();
+    }
+
+    public void markDirty(int rowIndex) {
+        modCount++;
+        dirtyRows.set(rowIndex);
+        encodedRows.set(rowIndex, null);
+        if (heapBudget > 0 && rows.get(rowIndex) != null) {
+            pageOffsets[rowIndex] = -1;
+            account(rowIndex);
+            evict(rowIndex);
+        }
+    }
+
+    /**
+     * Marks every row as matching the file, as after reading the table from it.
+     */
+    public void markClean() {
+        dirtyRows.clear();
+    }
+
+    /**
+     * Marks rows {@code [fromRow, toRow)} as matching the file, as after reading them from it.
+     */
+    public void markClean(int fromRow, int toRow) {
+        dirtyRows.clear(fromRow, toRow);
+    }
+
+    /**
+     * Returns a counter that grows with every {@code add}, {@code set}, {@code setRow}, {@code markDirty},
+     * {@code truncate} and {@code clear}; each of those counts as exactly one change.
+     */
+    public long getModCount() {
+        return modCount;
+    }
+
+    public boolean isDirty(int rowIndex) {
+        return dirtyRows.get(rowIndex);
+    }
+
+    public boolean hasDirtyRows() {
+        return !dirtyRows.isEmpty();
+    }
+
+    public byte[] getEncodedRow(int rowIndex) {
+        return encodedRows.get(rowIndex);
+    }
+
+    /**
+     * Caches the encoding of a row as it was just written, which also marks the row clean. Under a heap
+     * budget the encoding of a row already spilled to the page file is not kept, since it would not be
+     * counted against the budget.
+     */
+    public void setEncodedRow(int rowIndex, byte[] encoded) {
+        dirtyRows.clear(rowIndex);
+        if (heapBudget == 0) {
+            encodedRows.set(rowIndex, encoded);
+        } else if (rows.get(rowIndex) != null) {
+            encodedRows.set(rowIndex, encoded);
+            account(rowIndex);
+            evict(rowIndex);
+        }
+    }
+
+    public RowLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(RowLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Returns the row, reading it back from the page file when it was evicted.
+     */
+    private List<String> resident(int index) {
+        List<String> row = rows.get(index);
+        if (row == null) {
+            return pageIn(index);
+        }
+        if (heapBudget > 0) {
+            reference(index);
+        }
+        return row;
+    }
+
+    private synchronized List<String> pageIn(int index) {
+        List<String> row = rows.get(index);
+        if (row != null) {
+            return row;
+        }
+        try {
+            row = store(pageFile.read(pageOffsets[index]));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading row " + index + " from the page file", e);
+        }
+        rows.set(index, row);
+        if (heapBudget > 0) {
+            account(index);
+            evict(index);
+        }
+        return row;
+    }
+
+    /**
+     * Evicts rows until the resident rows fit the budget. The clock hand clears the reference bit of
+     * each recently used row it passes and evicts the first row whose bit is already clear.
+     * Row {@code keep} is never evicted.
+     */
+    private synchronized void evict(int keep) {
+        if (heapBudget == 0) {
+            return;
+        }
+        int steps = 0;
+        int limit = rows.size() * 2 + 1;
+        while (residentBytes > heapBudget && steps++ < limit) {
+            if (clockHand >= rows.size()) {
+                clockHand = 0;
+            }
+            int index = clockHand++;
+            if (index == keep || rows.get(index) == null) {
+                continue;
+            }
+            if (isReferenced(index)) {
+                referenced[index >>> 6] &= ~(1L << index);
+                continue;
+            }
+            spill(index);
+        }
+    }
+
+    private void spill(int index) {
+        try {
+            if (pageOffsets[index] < 0) {
+                if (pageFile == null) {
+                    pageFile = RowPageFile.create();
+                }
+                pageOffsets[index] = pageFile.write(rows.get(index));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing row " + index + " to the page file", e);
+        }
+        rows.set(index, null);
+        encodedRows.set(index, null);
+        residentBytes -= rowBytes[index];
+        rowBytes[index] = 0;
+    }
+
+    private void startTracking() {
+        residentBytes = 0;
+        ensureTracked(rows.size());
+        Arrays.fill(rowBytes, 0);
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i) != null) {
+                // Changes made without a budget did not invalidate the page file copy
+                pageOffsets[i] = -1;
+                account(i);
+            }
+        }
+    }
+
+    private void ensureTracked(int count) {
+        if (count > rowBytes.length) {
+            int capacity = Math.max(count, rowBytes.length * 2);
+            rowBytes = Arrays.copyOf(rowBytes, capacity);
+            pageOffsets = Arrays.copyOf(pageOffsets, capacity);
+            referenced = Arrays.copyOf(referenced, (capacity + 63) >>> 6);
+        }
+    }
+
+    private void account(int index) {
+        int bytes = estimateBytes(rows.get(index), encodedRows.get(index));
+        residentBytes += bytes - rowBytes[index];
+        rowBytes[index] = bytes;
+        reference(index);
+    }
+
+    private void reference(int index) {
+        // Unsynchronized; a lost update only makes the eviction order slightly less accurate
+        referenced[index >>> 6] |= 1L << index;
+    }
+
+    private boolean isReferenced(int index) {
+        return (referenced[index >>> 6] & 1L << index) != 0;
+    }
+
+    private static int estimateBytes(List<String> row, byte[] encoded) {
+        int bytes = ROW_OVERHEAD + (encoded == null ? 0 : encoded.length + 16);
+        if (row instanceof PackedRow) {
+            PackedRow packedRow = (PackedRow) row;
+            for (int i = 0; i < packedRow.size(); i++) {
+                bytes += Long.BYTES + (packedRow.isPacked(i) ? 0 : STRING_CELL_OVERHEAD + packedRow.get(i).length());
+            }
+            return bytes;
+        }
+        for (String cell : row) {
+            bytes += Integer.BYTES + STRING_CELL_OVERHEAD + cell.length();
+        }
+        return bytes;
+    }
+
+    private void closePageFile() {
+        if (pageFile == null) {
+            return;
+        }
+        try {
+            pageFile.close();
+        } catch (IOException e) {
+            // The file is still deleted on exit
+        }
+        pageFile = null;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+package com.exist.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedRowTest {
+
+    @Test
+    void testFits() {
+        assertTrue(PackedRow.fits("(abc,xyz)"));
+        assertTrue(PackedRow.fits("()qa,p,A)"));
+        assertTrue(PackedRow.fits("(!!!,~~~)"));
+        assertFalse(PackedRow.fits("(ab,xyz)"));
+        assertFalse(PackedRow.fits("(a,c,xyz)"));
+        assertFalse(PackedRow.fits("(a c,xyz)"));
+        assertFalse(PackedRow.fits("[abc,xyz]"));
+    }
+
+    @Test
+    void testRoundTrip() {
+        List<String> cells = Arrays.asList("(~yE,C8')", "(!/h,6q2)", "(\\1~,|JW)", "()qa,pWA)");
+        PackedRow row = new PackedRow(cells);
+
+        assertEquals(cells, row);
+        for (int i = 0; i < cells.size(); i++) {
+            assertTrue(row.isPacked(i));
+        }
+    }
+
+    @Test
+    void testSetFallsBackForCellsThatDoNotFit() {
+        PackedRow row = new PackedRow(Arrays.asList("(abc,xyz)", "(foo,bar)"));
+
+        assertEquals("(abc,xyz)", row.set(0, "(editedKey,xyz)"));
+        row.set(0, "(editedKey,other)");
+        row.set(1, "(zzz,zzz)");
+
+        assertFalse(row.isPacked(0));
+        assertTrue(row.isPacked(1));
+        assertEquals(Arrays.asList("(editedKey,other)", "(zzz,zzz)"), row);
+    }
+
+    @Test
+    void testPackingAgainFreesOverflowSlot() {
+        PackedRow row = new PackedRow(Arrays.asList("(abc,xyz)", "(foo,bar)", "(def,uvw)"));
+        row.set(2, "(kept,long)");
+        for (int i = 0; i < 100; i++) {
+            row.set(0, "(long key " + i + ",value)");
+            row.set(0, "(abc,xyz)");
+            row.set(1, "(other " + i + ",value)");
+            row.set(1, "(foo,bar)");
+        }
+
+        assertEquals(1, row.overflowCount());
+        assertEquals(Arrays.asList("(abc,xyz)", "(foo,bar)", "(kept,long)"), row);
+
+        row.set(0, "(first,long)");
+        row.set(1, "(second,long)");
+        row.set(2, "(ghi,rst)");
+        assertEquals(2, row.overflowCount());
+        assertEquals(Arrays.asList("(first,long)", "(second,long)", "(ghi,rst)"), row);
+    }
+
+    @Test
+    void testPackedSortMatchesStringSort() {
+        Random random = new Random(42);
+        List<String> cells = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            cells.add("(" + randomField(random) + "," + randomField(random) + ")");
+        }
+
+        List<String> expected = new ArrayList<>(cells);
+        Collections.sort(expected);
+        PackedRow ascending = new PackedRow(cells);
+        Collections.sort(ascending);
+        assertEquals(expected, ascending);
+
+        Collections.sort(expected, Collections.reverseOrder());
+        PackedRow descending = new PackedRow(cells);
+        Collections.sort(descending, Collections.reverseOrder());
+        assertEquals(expected, descending);
+    }
+
+    @Test
+    void testSortWithOverflowCells() {
+        PackedRow row = new PackedRow(Arrays.asList("(ccc,ccc)", "(aaa,aaa)", "(bbb,bbb)"));
+        row.set(0, "(b,longer)");
+
+        Collections.sort(row);
+
+        assertEquals(Arrays.asList("(aaa,aaa)", "(b,longer)", "(bbb,bbb)"), row);
+    }
+
+    @Test
+    void testPackedTableStoresFittingRowsPacked() {
+        Table t = new Table(Table.CellStorage.PACKED);
+        t.add(Arrays.asList("(abc,xyz)", "(def,uvw)"));
+        t.add(Arrays.asList("(abc,xyz)", "(longer,cell)"));
+
+        assertTrue(t.get(0) instanceof PackedRow);
+        assertFalse(t.get(1) instanceof PackedRow);
+        assertEquals(Arrays.asList("(abc,xyz)", "(def,uvw)"), t.get(0));
+    }
+
+    @Test
+    void testViewSearchesPackedCells() {
+        Table t = new Table(Table.CellStorage.PACKED);
+        t.add(Arrays.asList("(aab,aaa)", "(xyz,a,b)"));
+
+        RowView view = t.view(0, null);
+
+        assertEquals(1, view.countInKey(0, "aa"));
+        assertEquals(2, view.countInValue(0, "aa"));
+        assertEquals(0, view.countInKey(0, "aab,"));
+        assertEquals(1, view.countInValue(1, "a,b"));
+        assertEquals("aab", view.key(0));
+        assertEquals("(aab,aaa)", view.cell(0));
+        StringBuilder line = new StringBuilder();
+        view.appendTo(line);
+        assertEquals("(aab,aaa) (xyz,a,b)", line.toString());
+    }
+
+    private static String randomField(Random random) {
+        StringBuilder field = new StringBuilder();
+        while (field.length() < 3) {
+            char c = (char) (33 + random.nextInt(94));
+            if (c != ',') {
+                field.append(c);
+            }
+        }
+        return field.toString();
+    }
+
+    @Test
+    void testPackFromBytes() {
+        byte[] line = "x (a~b,!z)) (ab,c)".getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(PackedRow.fits(line, 2, 11));
+        assertFalse(PackedRow.fits(line, 12, 18));
+        PackedRow row = new PackedRow(new long[] {PackedRow.pack(line, 2)});
+        assertEquals("(a~b,!z))", row.get(0));
+
+        byte[] written = new byte[PackedRow.CELL_LENGTH];
+        PackedRow.writeCell(written, 0, row.getPacked(0));
+        assertEquals("(a~b,!z))", new String(written, StandardCharsets.US_ASCII));
+    }
+
+
+}
@@ -0,0 +1,45 @@
+package com.exist.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowLayoutTest {
+
+    @Test
+    void testAddRowGrowsBeyondExpectedRows() {
+        RowLayout layout = new RowLayout("table.txt", 1);
+        for (int i = 0; i < 100; i++) {
+            layout.addRow(i * 10L, 9);
+        }
+        assertEquals(100, layout.getRowCount());
+        assertEquals(990L, layout.getOffset(99));
+        assertEquals(999L, layout.getSlotEnd(99));
+        assertEquals(0L, layout.getSlotEnd(-1));
+    }
+
+    @Test
+    void testTruncate() {
+        RowLayout layout = new RowLayout("table.txt", 4);
+        layout.addRow(0, 5);
+        layout.addRow(6, 5);
+        layout.truncate(1);
+        assertEquals(1, layout.getRowCount());
+        layout.addRow(6, 13);
+        assertEquals(13, layout.getSlotLength(1));
+    }
+
+    @Test
+    void testMatchesOnlyTheStampedFile() {
+        RowLayout layout = new RowLayout("table.txt", 4);
+        assertFalse(layout.matches("table.txt", 11, 1000L));
+
+        layout.stamp(11, 1000L);
+
+        assertTrue(layout.matches("table.txt", 11, 1000L));
+        assertFalse(layout.matches("table.txt", 12, 1000L));
+        assertFalse(layout.matches("table.txt", 11, 2000L));
+        assertFalse(layout.matches("other.txt", 11, 1000L));
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.exist.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowViewTest {
+
+    @Test
+    void testKeysAndValues() {
+        Table t = new Table();
+        t.add(Arrays.asList("(abc,xyz)", "(0,C,0f?)"));
+
+        RowView view = t.view(0, null);
+
+        assertEquals(2, view.size());
+        assertEquals("(abc,xyz)", view.cell(0));
+        assertEquals("abc", view.key(0));
+        assertEquals("xyz", view.value(0));
+        assertEquals("0", view.key(1));
+        assertEquals("C,0f?", view.value(1));
+    }
+
+    @Test
+    void testCountsStayWithinKeyOrValue() {
+        Table t = new Table();
+        t.add(Arrays.asList("(aaa,aa)", "(ab,ba)"));
+
+        RowView view = t.view(0, null);
+
+        assertEquals(2, view.countInKey(0, "aa"));
+        assertEquals(1, view.countInValue(0, "aa"));
+        assertEquals(0, view.countInKey(1, "b,"));
+        assertEquals(0, view.countInValue(1, "a)"));
+        assertEquals(1, view.countInValue(1, "ba"));
+    }
+
+    @Test
+    void testReuseAcrossRows() {
+        Table t = new Table();
+        t.add(Arrays.asList("(a,b)", "(c,d)", "(e,f)"));
+        t.add(Arrays.asList("(x,y)"));
+
+        RowView view = t.view(0, null);
+        RowView reused = t.view(1, view);
+
+        assertSame(view, reused);
+        assertEquals(1, reused.size());
+        StringBuilder line = new StringBuilder();
+        reused.appendTo(line);
+        assertEquals("(x,y)", line.toString());
+    }
+
+    @Test
+    void testBindGrowsForWideRows() {
+        Table t = new Table();
+        String[] cells = new String[40];
+        Arrays.fill(cells, "(k,v)");
+        t.add(Arrays.asList(cells));
+
+        RowView view = t.view(0, null);
+
+        assertEquals(40, view.size());
+        assertEquals("v", view.value(39));
+    }
+
+    @Test
+    void testToAsciiBytes() {
+        Table t = new Table(Table.CellStorage.PACKED);
+        t.add(Arrays.asList("(aab,aaa)", "(x,y)"));
+        t.add(Arrays.asList("(\u00e9,b)"));
+
+        assertArrayEquals("(aab,aaa) (x,y)".getBytes(StandardCharsets.US_ASCII), t.view(0, null).toAsciiBytes());
+        assertNull(t.view(1, null).toAsciiBytes());
+    }
+
+    @Test
+    void testWriteAsciiCellStarts() {
+        Table t = new Table(Table.CellStorage.PACKED);
+        t.add(Arrays.asList("(aab,aaa)", "(long key,v)", "(x,y)"));
+        RowView view = t.view(0, null);
+
+        byte[] target = new byte[view.encodedLength()];
+        int[] starts = new int[3];
+        assertEquals(target.length, view.writeAscii(target, starts));
+        assertArrayEquals("(aab,aaa) (long key,v) (x,y)".getBytes(StandardCharsets.US_ASCII), target);
+        assertArrayEquals(new int[]{0, 10, 23}, starts);
+    }
+
+
+    @Test
+    void testFieldCharacters() {
+        Table t = new Table(Table.CellStorage.PACKED);
+        t.add(Arrays.asList("(aab,xyz)", "(key,a,b)"));
+        RowView view = t.view(0, null);
+
+        assertEquals(3, view.keyLength(0));
+        assertEquals('b', view.keyChar(0, 2));
+        assertEquals('y', view.valueChar(0, 1));
+        assertEquals(3, view.valueLength(1));
+        assertEquals(',', view.valueChar(1, 1));
+        assertEquals('e', view.keyChar(1, 1));
+    }
+
+}
@@ -3,6 +3,10 @@ package com.exist.model;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -39,4 +43,193 @@ class TableTest {
         assertEquals(0, t.size());
     }
 
+    @Test
+    void testNewRowIsDirty() {
+        Table t = new Table();
+        t.add(Arrays.asList("(a,b)"));
+        assertTrue(t.isDirty(0));
+        assertNull(t.getEncodedRow(0));
+    }
+
+    @Test
+    void testSetMarksRowDirty() {
+        Table t = new Table();
+        t.add(Arrays.asList("(a,b)", "(c,d)"));
+        t.setEncodedRow(0, "(a,b) (c,d)".getBytes());
+        assertFalse(t.isDirty(0));
+
+        t.set(0, 1, "(x,y)");
+
+        assertTrue(t.isDirty(0));
+        assertEquals("(x,y)", t.get(0).get(1));
+    }
+
+    @Test
+    void testMarkDirtyDropsEncodedRow() {
+        Table t = new Table();
+        t.add(Arrays.asList("(a,b)"));
+        t.setEncodedRow(0, "(a,b)".getBytes());
+        t.markDirty(0);
+        assertNull(t.getEncodedRow(0));
+    }
+
+    @Test
+    void testSetRowReplacesRowAndMarksDirty() {
+        Table t = new Table();
+        t.add(Arrays.asList("(a,b)"));
+        t.setEncodedRow(0, "(a,b)".getBytes());
+
+        t.setRow(0, Arrays.asList("(c,d)", "(e,f)"));
+
+        assertEquals(Arrays.asList("(c,d)", "(e,f)"), t.get(0));
+        assertTrue(t.isDirty(0));
+    }
+
+    @Test
+    void testTruncate() {
+        Table t = new Table();
+        t.add(Arrays.asList("(a,b)"));
+        t.add(Arrays.asList("(c,d)"));
+        t.add(Arrays.asList("(e,f)"));
+        t.setLayout(new RowLayout("table.txt", 3));
+
+        t.truncate(1);
+
+        assertEquals(1, t.size());
+        assertEquals(Arrays.asList("(a,b)"), t.get(0));
+        assertNull(t.getLayout());
+    }
+
+    @Test
+    void testMarkClean() {
+        Table t = new Table();
+        t.add(Arrays.asList("(a,b)"));
+        t.add(Arrays.asList("(c,d)"));
+
+        t.markClean();
+
+        assertFalse(t.isDirty(0));
+        assertFalse(t.isDirty(1));
+        assertNull(t.getEncodedRow(0));
+    }
+
+
+    @Test
+    void testModCount() {
+        Table t = new Table();
+        t.add(Arrays.asList("(a,b)"));
+        long modCount = t.getModCount();
+
+        t.set(0, 0, "(c,d)");
+        assertEquals(modCount + 1, t.getModCount());
+        t.setRow(0, Arrays.asList("(e,f)"));
+        t.markDirty(0);
+        t.clear();
+        assertEquals(modCount + 4, t.getModCount());
+    }
+
+    @Test
+    void testHeapBudgetSpillsColdRows() {
+        Table t = new Table(Table.CellStorage.PACKED, 4096);
+        for (int i = 0; i < 1000; i++) {
+            t.add(Arrays.asList("(k" + i + ",v)", "(abc,def)"));
+        }
+
+        assertTrue(t.getResidentBytes() <= 4096 + 512);
+        assertFalse(t.isResident(0));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Arrays.asList("(k" + i + ",v)", "(abc,def)"), t.get(i));
+        }
+        assertTrue(t.getResidentBytes() <= 4096 + 512);
+        t.clear();
+    }
+
+    @Test
+    void testHeapBudgetKeepsChangesToSpilledRows() {
+        Table t = new Table(Table.CellStorage.PACKED, 2048);
+        for (int i = 0; i < 200; i++) {
+            t.add(Arrays.asList("(aaa,bbb)", "(long key " + i + ",value)"));
+        }
+
+        t.set(3, 0, "(zzz,yyy)");
+        t.get(4).sort(Comparator.reverseOrder());
+        t.markDirty(4);
+        t.setRow(5, Arrays.asList("(new,row)"));
+        for (int i = 100; i < 200; i++) {
+            t.get(i);
+        }
+
+        assertFalse(t.isResident(3));
+        assertEquals(Arrays.asList("(zzz,yyy)", "(long key 3,value)"), t.get(3));
+        assertEquals(Arrays.asList("(long key 4,value)", "(aaa,bbb)"), t.get(4));
+        assertEquals(Arrays.asList("(new,row)"), t.get(5));
+        assertTrue(t.isDirty(3));
+        t.clear();
+    }
+
+    @Test
+    void testHeapBudgetDoesNotCacheEncodingOfSpilledRows() {
+        Table t = new Table(Table.CellStorage.PACKED, 2048);
+        for (int i = 0; i < 200; i++) {
+            t.add(Arrays.asList("(aaa,bbb)", "(long key " + i + ",value)"));
+        }
+
+        assertFalse(t.isResident(0));
+        t.setEncodedRow(0, "(aaa,bbb) (long key 0,value)".getBytes());
+        t.setEncodedRow(199, "(aaa,bbb) (long key 199,value)".getBytes());
+
+        assertFalse(t.isDirty(0));
+        assertNull(t.getEncodedRow(0));
+        assertNotNull(t.getEncodedRow(199));
+        assertTrue(t.getResidentBytes() <= 2048 + 512);
+        t.clear();
+    }
+
+    @Test
+    void testRemovingHeapBudgetPagesRowsBackOnAccess() {
+        Table t = new Table(Table.CellStorage.STRINGS, 1024);
+        for (int i = 0; i < 100; i++) {
+            t.add(Arrays.asList("(row," + i + ")"));
+        }
+
+        t.setHeapBudget(0);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("(row," + i + ")", t.get(i).get(0));
+            assertTrue(t.isResident(i));
+        }
+    }
+
+    @Test
+    void testInternerSharesStringCells() {
+        Table first = new Table(Table.CellStorage.PACKED);
+        Table second = new Table(Table.CellStorage.PACKED);
+        first.add(Arrays.asList(new String("(long key,value)"), "(abc,def)"));
+        Map<String, String> pool = new HashMap<>();
+        UnaryOperator<String> interner = cell -> pool.computeIfAbsent(cell, c -> c);
+
+        first.setInterner(interner);
+        second.setInterner(interner);
+        second.add(Arrays.asList("(abc,def)", new String("(long key,value)")));
+
+        assertSame(first.get(0).get(0), second.get(0).get(1));
+        assertEquals(Arrays.asList("(abc,def)", "(long key,value)"), second.get(0));
+        // Packed rows hold no strings and are left alone
+        second.add(Arrays.asList("(ghi,jkl)"));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    void testEstimateHeapBytes() {
+        Table t = new Table(Table.CellStorage.PACKED);
+        assertEquals(0, t.estimateHeapBytes());
+        t.add(Arrays.asList("(abc,def)", "(ghi,jkl)"));
+        long packed = t.estimateHeapBytes();
+        t.add(Arrays.asList("(a longer key,value)", "(ghi,jkl)"));
+        assertTrue(packed > 0);
+        assertTrue(t.estimateHeapBytes() - packed > packed);
+
+        t.setHeapBudget(1L << 20);
+        assertEquals(t.getResidentBytes(), t.estimateHeapBytes());
+    }
 }
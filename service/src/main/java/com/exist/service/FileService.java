@@ -1,6 +1,7 @@
 package com.exist.service;
 
 import java.util.List;
+import java.io.BufferedReader;
 import java.io.IOException;
 
 import com.exist.model.Table;
@@ -15,10 +16,32 @@ public interface FileService {
 
     String loadFileContent(String fileName) throws IOException;
 
+    byte[] loadFileBytes(String fileName) throws IOException;
+
+    Table loadTable(String fileName) throws IOException;
+
+    void setHeapBudget(long heapBudget);
+
+    BufferedReader openFileReader(String fileName) throws IOException;
+
     Table parseFileToTable(String content);
 
+    Table parseFileToTable(byte[] content);
+
+    List<String> parseLineToRow(String line);
+
     String tableToString(Table table);
 
     void saveFile(Table table, String fileName) throws IOException;
 
+    void generateFile(String fileName, int rows, int columns, int fieldLength) throws IOException;
+
+    void exportCsv(Table table, String fileName) throws IOException;
+
+    void exportJsonLines(Table table, String fileName) throws IOException;
+
+    Table importDelimited(String fileName, char delimiter) throws IOException;
+
+    int convertDelimited(String sourceFileName, String targetFileName, char delimiter) throws IOException;
+
 }
\ No newline at end of file
@@ -1,15 +1,48 @@
 package com.exist.service;
 
 import com.exist.model.Table;
+import com.exist.service.event.TableEventListener;
+import com.exist.service.event.TableEventRing;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface TableService {
 
 	void loadTableFromFile(String fileName) throws IOException;
 
+	void loadTableProgressively(String fileName, int initialRows) throws IOException;
+
+	void importTable(String fileName, char delimiter) throws IOException;
+
+	int awaitRows(int count);
+
+	void setHeapBudget(long heapBudget);
+
+	int getColumnCount(int rowIndex);
+
+	void startWatching(String fileName) throws IOException;
+
+	void stopWatching();
+
+	boolean isWatching();
+
+	void setSearchFilterEnabled(boolean enabled);
+
 	String searchValue(String searchTerm);
 
+	String searchValues(List<String> searchTerms);
+
+	String estimateSearch(String searchTerm, int sampleRows, boolean stratified);
+
+	String refineEstimate(int moreRows);
+
+	long[] findByKey(String key);
+
+	String query(String query);
+
+	String explainQuery(String query);
+
     void editCell(int rowIndex, int columnIndex, String newKey, String newValue, String editMode);
 
     void addRow(int numberOfCells);
@@ -18,7 +51,15 @@ public interface TableService {
 
     void resetTable(int rows, int columns);
 
+    void generateTable(String fileName, int rows, int columns, int initialRows) throws IOException;
+
+	void saveTable(String fileName) throws IOException;
+
+	TableEventRing.Subscription subscribe(TableEventListener listener);
+
 	void printTable();
 
+	void printTable(int maxRows);
+
 	Table getTable();
 }
\ No newline at end of file
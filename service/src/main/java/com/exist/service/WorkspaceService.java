@@ -0,0 +1,25 @@
+package com.exist.service;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface WorkspaceService {
+
+	TableService open(String fileName, int initialRows) throws IOException;
+
+	TableService current();
+
+	String currentFileName();
+
+	List<String> getFileNames();
+
+	boolean isResident(String fileName);
+
+	void close(String fileName) throws IOException;
+
+	String searchAll(String searchTerm);
+
+	void setMemoryCap(long memoryCap);
+
+	void setHeapBudget(long heapBudget);
+}
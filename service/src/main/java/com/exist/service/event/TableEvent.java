@@ -0,0 +1,115 @@
+package com.exist.service.event;
+
+import java.util.List;
+
+/**
+ * A change the table service made to its table, numbered in the order the changes were made. Events
+ * are immutable and carry the cells they changed, so a subscriber can apply them to a copy of the
+ * table without reading the service's table.
+ */
+public abstract class TableEvent {
+
+    // Set once by the ring before the event is published
+    private long sequence;
+
+    TableEvent() {}
+
+    /**
+     * Returns the event's number; the first event published by a service is 0.
+     */
+    public final long sequence() {
+        return sequence;
+    }
+
+    final void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * One cell's key and value were replaced.
+     */
+    public static final class CellEdited extends TableEvent {
+
+        public final int row;
+        public final int column;
+        public final String oldKey;
+        public final String oldValue;
+        public final String newKey;
+        public final String newValue;
+
+        public CellEdited(int row, int column, String oldKey, String oldValue, String newKey, String newValue) {
+            this.row = row;
+            this.column = column;
+            this.oldKey = oldKey;
+            this.oldValue = oldValue;
+            this.newKey = newKey;
+            this.newValue = newValue;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence() + " cell [" + row + "," + column + "] (" + oldKey + "," + oldValue + ") -> ("
+                    + newKey + "," + newValue + ")";
+        }
+    }
+
+    /**
+     * A row was added at the end of the table.
+     */
+    public static final class RowAppended extends TableEvent {
+
+        public final int row;
+        public final List<String> cells;
+
+        public RowAppended(int row, List<String> cells) {
+            this.row = row;
+            this.cells = List.copyOf(cells);
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence() + " append row " + row + " " + cells;
+        }
+    }
+
+    /**
+     * A row's cells were sorted in place; {@code cells} is the row after sorting.
+     */
+    public static final class RowSorted extends TableEvent {
+
+        public final int row;
+        public final String order;
+        public final List<String> cells;
+
+        public RowSorted(int row, String order, List<String> cells) {
+            this.row = row;
+            this.order = order;
+            this.cells = List.copyOf(cells);
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence() + " sort row " + row + " " + order + " " + cells;
+        }
+    }
+
+    /**
+     * The table was replaced as a whole, by a reset, a load or an import, or by changes picked up from
+     * a watched file; it now has {@code rowCount} rows. Rows appended while a progressive load goes on
+     * follow as {@link RowAppended} events. Subscribers that keep a copy must read the table again.
+     */
+    public static final class TableReset extends TableEvent {
+
+        public final int rowCount;
+
+        public TableReset(int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence() + " reset to " + rowCount + " row(s)";
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.exist.service.event;
+
+/**
+ * Receives a subscription's events, in order, on the subscription's own thread.
+ */
+public interface TableEventListener {
+
+    void onEvent(TableEvent event);
+
+    /**
+     * Called when the listener fell so far behind that {@code count} events were overwritten before it
+     * read them. The next event follows the gap; a listener keeping a copy of the table must read it again.
+     */
+    default void onEventsLost(long count) {
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.exist.service.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-size ring of the most recent {@link TableEvent}s, written by one thread and read by any number
+ * of subscriptions, each on a thread of its own. Publishing never blocks and takes no lock: the event
+ * goes into its slot and the cursor moves past it, and subscribers follow the cursor at their own pace.
+ * A subscriber that falls more than the ring's capacity behind does not hold the writer back; it
+ * misses the overwritten events and is told how many through {@link TableEventListener#onEventsLost}.
+ */
+public final class TableEventRing {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+
+    private final AtomicReferenceArray<TableEvent> slots;
+    private final int mask;
+    // Sequence of the last published event
+    private volatile long cursor = -1;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public TableEventRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TableEventRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two.");
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Numbers the event and makes it visible to every subscription. Must only be called by one thread
+     * at a time.
+     */
+    public void publish(TableEvent event) {
+        long sequence = cursor + 1;
+        event.setSequence(sequence);
+        slots.lazySet((int) sequence & mask, event);
+        cursor = sequence;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.parked) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    /**
+     * Starts delivering the events published from now on to {@code listener}, on a daemon thread,
+     * until the returned subscription is closed.
+     */
+    public Subscription subscribe(TableEventListener listener) {
+        Subscription subscription = new Subscription(listener, cursor + 1);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public final class Subscription implements AutoCloseable {
+
+        private final TableEventListener listener;
+        private final Thread thread;
+        // Sequence of the next event to deliver; only used by the subscription's thread
+        private long next;
+        private volatile long lostEvents;
+        private volatile boolean parked;
+        private volatile boolean closed;
+
+        private Subscription(TableEventListener listener, long next) {
+            this.listener = listener;
+            this.next = next;
+            this.thread = new Thread(this::deliver, "table-events");
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Returns how many events were overwritten before this subscription read them.
+         */
+        public long lostEvents() {
+            return lostEvents;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        private void deliver() {
+            int spins = 0;
+            while (!closed) {
+                if (next > cursor) {
+                    if (spins++ < SPINS_BEFORE_PARKING) {
+                        Thread.onSpinWait();
+                    } else {
+                        awaitPublish();
+                        spins = 0;
+                    }
+                    continue;
+                }
+
+                TableEvent event = slots.get((int) next & mask);
+                if (event.sequence() != next) {
+                    // Overwritten: skip to the oldest event still in the ring
+                    long oldest = Math.max(next + 1, cursor - mask);
+                    lostEvents += oldest - next;
+                    notifyLost(oldest - next);
+                    next = oldest;
+                    continue;
+                }
+                next++;
+                try {
+                    listener.onEvent(event);
+                } catch (RuntimeException e) {
+                    System.out.println("Error in table event listener: " + e.getMessage());
+                }
+            }
+        }
+
+        private void awaitPublish() {
+            parked = true;
+            // The writer checks the flag after moving the cursor, so one of us sees the other
+            if (next > cursor && !closed) {
+                LockSupport.park(this);
+            }
+            parked = false;
+        }
+
+        private void notifyLost(long count) {
+            try {
+                listener.onEventsLost(count);
+            } catch (RuntimeException e) {
+                System.out.println("Error in table event listener: " + e.getMessage());
+            }
+        }
+    }
+
+}
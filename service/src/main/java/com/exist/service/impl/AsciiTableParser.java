@@ -0,0 +1,229 @@
+package com.exist.service.impl;
+
+import com.exist.model.PackedRow;
+import com.exist.model.RowLayout;
+import com.exist.model.Table;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses table content that is pure ASCII straight from its bytes. Cells that fit a {@link PackedRow}
+ * never become strings; the others are cut out as Latin-1 strings, which the JDK stores one byte per
+ * character without decoding. Large inputs are split into newline-aligned chunks parsed on the
+ * fork-join pool. The byte range of the line each row came from is recorded as its slot.
+ */
+final class AsciiTableParser {
+
+    private static final int PARALLEL_PARSE_THRESHOLD = 256 * 1024;
+    private static final int PARSE_CHUNK_SIZE = 128 * 1024;
+
+    private AsciiTableParser() {}
+
+    static boolean isAscii(byte[] content) {
+        for (byte b : content) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the content into {@code table} and adds the slot of every row to {@code layout} when given.
+     */
+    static Table parse(byte[] content, RowLayout layout, Table table) {
+
+        if (content.length < PARALLEL_PARSE_THRESHOLD) {
+            addRows(new ChunkTask(content, 0, content.length).compute(), table, layout);
+            return table;
+        }
+
+        List<ChunkTask> tasks = new ArrayList<>();
+        int chunkStart = 0;
+        while (chunkStart < content.length) {
+            int chunkEnd = nextChunkEnd(content, chunkStart);
+            tasks.add(new ChunkTask(content, chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+        }
+
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        for (ChunkTask task : tasks) {
+            addRows(task.join(), table, layout);
+        }
+        return table;
+    }
+
+    /**
+     * Parses the lines in {@code [start, end)} of {@code content} on the calling thread. The range must
+     * end at the end of a line, and must hold only ASCII.
+     */
+    static ParsedChunk parseLines(byte[] content, int start, int end) {
+        return new ChunkTask(content, start, end).compute();
+    }
+
+    private static void addRows(ParsedChunk chunk, Table table, RowLayout layout) {
+        for (int i = 0; i < chunk.rows.size(); i++) {
+            table.add(chunk.rows.get(i));
+            if (layout != null) {
+                layout.addRow(chunk.lineStarts[i], chunk.lineEnds[i] - chunk.lineStarts[i]);
+            }
+        }
+    }
+
+    private static int nextChunkEnd(byte[] content, int chunkStart) {
+        int target = chunkStart + PARSE_CHUNK_SIZE;
+        if (target >= content.length) {
+            return content.length;
+        }
+        int newline = indexOf(content, (byte) '\n', target, content.length);
+        return newline == -1 ? content.length : newline + 1;
+    }
+
+    private static int indexOf(byte[] content, byte target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (content[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The rows of a range of lines, each with the bounds of its line in the parsed content, without
+     * the newline.
+     */
+    static final class ParsedChunk {
+
+        private final List<List<String>> rows = new ArrayList<>();
+        private int[] lineStarts = new int[64];
+        private int[] lineEnds = new int[64];
+
+        int size() {
+            return rows.size();
+        }
+
+        List<String> row(int index) {
+            return rows.get(index);
+        }
+
+        int lineStart(int index) {
+            return lineStarts[index];
+        }
+
+        int lineEnd(int index) {
+            return lineEnds[index];
+        }
+
+        void add(List<String> row, int lineStart, int lineEnd) {
+            int index = rows.size();
+            if (index == lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, index * 2);
+                lineEnds = Arrays.copyOf(lineEnds, index * 2);
+            }
+            rows.add(row);
+            lineStarts[index] = lineStart;
+            lineEnds[index] = lineEnd;
+        }
+    }
+
+    private static final class ChunkTask extends RecursiveTask<ParsedChunk> {
+
+        private final byte[] content;
+        private final int start;
+        private final int end;
+
+        // Bounds of the cells found on the current line
+        private int[] opens = new int[16];
+        private int[] closes = new int[16];
+
+        ChunkTask(byte[] content, int start, int end) {
+            this.content = content;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected ParsedChunk compute() {
+            ParsedChunk chunk = new ParsedChunk();
+            int lineStart = start;
+            while (lineStart < end) {
+                int lineEnd = indexOf(content, (byte) '\n', lineStart, end);
+                if (lineEnd == -1) {
+                    lineEnd = end;
+                }
+                List<String> row = parseLine(lineStart, lineEnd);
+                if (row != null) {
+                    chunk.add(row, lineStart, lineEnd);
+                }
+                lineStart = lineEnd + 1;
+            }
+            return chunk;
+        }
+
+        /**
+         * Finds the cells of one line the same way as the String parser and returns them as a row,
+         * or null when the line has no cells.
+         */
+        private List<String> parseLine(int lineStart, int lineEnd) {
+            int cells = 0;
+            boolean packable = true;
+            int position = lineStart;
+
+            while (position < lineEnd) {
+                int open = indexOf(content, (byte) '(', position, lineEnd);
+                if (open == -1) {
+                    break;
+                }
+                int comma = indexOf(content, (byte) ',', open + 1, lineEnd);
+                if (comma == -1) {
+                    break;
+                }
+                int close = indexOf(content, (byte) ')', comma + 1, lineEnd);
+                if (close == -1) {
+                    break;
+                }
+
+                if (cells == opens.length) {
+                    opens = Arrays.copyOf(opens, cells * 2);
+                    closes = Arrays.copyOf(closes, cells * 2);
+                }
+                opens[cells] = open;
+                closes[cells] = close;
+                packable &= PackedRow.fits(content, open, close + 1);
+                cells++;
+                position = close + 1;
+            }
+
+            if (cells == 0) {
+                return null;
+            }
+
+            if (packable) {
+                long[] packed = new long[cells];
+                for (int i = 0; i < cells; i++) {
+                    packed[i] = PackedRow.pack(content, opens[i]);
+                }
+                return new PackedRow(packed);
+            }
+
+            List<String> row = new ArrayList<>(cells);
+            for (int i = 0; i < cells; i++) {
+                row.add(new String(content, opens[i], closes[i] - opens[i] + 1, StandardCharsets.ISO_8859_1));
+            }
+            return row;
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.exist.service.impl;
+
+import com.exist.model.RowView;
+import com.exist.model.Table;
+import com.exist.service.query.CellPosition;
+import com.exist.service.query.Condition;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Base of the indexes from a cell's key or value to its {@link CellPosition}. Like
+ * {@link SearchFilter}, an index is built on first use and then kept current by the service
+ * reporting its changes; any change it did not report (through {@link Table#getModCount()}) makes
+ * the next use rebuild it.
+ */
+abstract class CellIndex {
+
+    private final Condition.Field field;
+
+    // Table and change count the index was last brought up to date with
+    private Table indexed;
+    private long modCount;
+
+    CellIndex(Condition.Field field) {
+        this.field = field;
+    }
+
+    final Condition.Field field() {
+        return field;
+    }
+
+    /**
+     * Rebuilds the index unless it already describes exactly this table.
+     */
+    final void sync(Table table) {
+        if (isCurrent(table)) {
+            return;
+        }
+        build(table);
+        indexed = table;
+        modCount = table.getModCount();
+    }
+
+    /**
+     * Returns whether the index already describes exactly this table, so it can be used or saved
+     * without rebuilding it.
+     */
+    final boolean isCurrent(Table table) {
+        return indexed == table && modCount == table.getModCount();
+    }
+
+    /**
+     * Replaces the index with one written by {@link #write} for exactly this table.
+     */
+    final void read(Table table, ByteBuffer in) {
+        indexed = null;
+        readEntries(in);
+        indexed = table;
+        modCount = table.getModCount();
+    }
+
+    /**
+     * Empties the index after the service cleared the table, so rows added next are indexed as they
+     * come. Does nothing until the index is built.
+     */
+    final void tableCleared(Table table) {
+        if (indexed != table) {
+            return;
+        }
+        clear();
+        modCount = table.getModCount();
+    }
+
+    /**
+     * Moves the cell from {@code oldText} to its current text after the service changed it with one
+     * table change.
+     */
+    final void cellChanged(Table table, int row, int column, String oldText) {
+        if (!isCurrentAfter(table, 1)) {
+            return;
+        }
+        long position = CellPosition.of(row, column);
+        String newText = text(table.view(row, null), column);
+        if (!newText.equals(oldText)) {
+            remove(oldText, position);
+            add(newText, position);
+        }
+        modCount = table.getModCount();
+    }
+
+    /**
+     * Removes the positions of a row the service is about to change in place. Must be followed by
+     * {@link #rowsChanged} for the row.
+     */
+    final void rowChanging(Table table, int row) {
+        if (indexed != table || modCount != table.getModCount()) {
+            return;
+        }
+        RowView view = table.view(row, null);
+        for (int column = 0; column < view.size(); column++) {
+            remove(text(view, column), CellPosition.of(row, column));
+        }
+    }
+
+    /**
+     * Indexes rows {@code [from, to)} after the service changed (see {@link #rowChanging}) or appended
+     * them with one table change per row.
+     */
+    final void rowsChanged(Table table, int from, int to) {
+        if (!isCurrentAfter(table, to - from)) {
+            return;
+        }
+        addRows(table, from, to);
+        modCount = table.getModCount();
+    }
+
+    /**
+     * Fills the index from the whole table.
+     */
+    void build(Table table) {
+        clear();
+        addRows(table, 0, table.size());
+    }
+
+    abstract void clear();
+
+    /**
+     * Writes the index for an {@link IndexSidecar}; it must be current.
+     */
+    abstract void write(DataOutputStream out) throws IOException;
+
+    /**
+     * Replaces the entries with the ones {@link #write} wrote.
+     */
+    abstract void readEntries(ByteBuffer in);
+
+    abstract void add(String text, long position);
+
+    abstract void remove(String text, long position);
+
+    /**
+     * Adds every cell of rows {@code [from, to)}.
+     */
+    void addRows(Table table, int from, int to) {
+        RowView view = null;
+        for (int row = from; row < to; row++) {
+            view = table.view(row, view);
+            for (int column = 0; column < view.size(); column++) {
+                add(text(view, column), CellPosition.of(row, column));
+            }
+        }
+    }
+
+    final String text(RowView view, int column) {
+        return field == Condition.Field.KEY ? view.key(column) : view.value(column);
+    }
+
+    private boolean isCurrentAfter(Table table, long changes) {
+        if (indexed != table) {
+            return false;
+        }
+        if (modCount + changes != table.getModCount()) {
+            // Something else changed the table as well
+            indexed = null;
+            return false;
+        }
+        return true;
+    }
+
+}
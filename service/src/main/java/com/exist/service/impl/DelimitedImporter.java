@@ -0,0 +1,149 @@
+package com.exist.service.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns {@code row,col,key,value} records, as written by the CSV exporter, back into table rows.
+ * Records must be grouped by row in ascending row order; within a row they may come in any column
+ * order. An optional header line starting with {@code row} is skipped. Only one row is buffered
+ * at a time, and each finished row is handed to a {@link RowSink}.
+ */
+final class DelimitedImporter {
+
+    private static final int FIELDS = 4;
+
+    /**
+     * Receives each imported row as a list of {@code (key,value)} cells.
+     */
+    interface RowSink {
+        void accept(List<String> row) throws IOException;
+    }
+
+    private DelimitedImporter() {}
+
+    /**
+     * Reads every record and returns the number of rows passed to {@code sink}.
+     */
+    static int importRows(Reader in, char delimiter, RowSink sink) throws IOException {
+        DelimitedRecordReader reader = new DelimitedRecordReader(in, delimiter);
+        List<String> fields = new ArrayList<>(FIELDS);
+        RowBuffer row = new RowBuffer();
+        long currentRow = -1;
+        int rows = 0;
+        boolean first = true;
+
+        while (reader.next(fields)) {
+            int line = reader.getRecordLine();
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue;
+            }
+            if (first && fields.get(0).trim().equalsIgnoreCase("row")) {
+                first = false;
+                continue;
+            }
+            first = false;
+
+            if (fields.size() != FIELDS) {
+                throw new IOException("Line " + line + ": expected " + FIELDS
+                        + " fields (row, col, key, value) but found " + fields.size());
+            }
+            long rowNumber = parseIndex(fields.get(0), line);
+            int column = (int) Math.min(parseIndex(fields.get(1), line), Integer.MAX_VALUE);
+
+            if (rowNumber != currentRow) {
+                if (rowNumber < currentRow) {
+                    throw new IOException("Line " + line + ": row " + rowNumber + " comes after row " + currentRow
+                            + "; records must be grouped by row in ascending order");
+                }
+                if (row.size > 0) {
+                    sink.accept(row.drain());
+                    rows++;
+                }
+                currentRow = rowNumber;
+            }
+            row.add(column, toCell(fields.get(2), fields.get(3), line));
+        }
+
+        if (row.size > 0) {
+            sink.accept(row.drain());
+            rows++;
+        }
+        return rows;
+    }
+
+    private static long parseIndex(String field, int line) throws IOException {
+        try {
+            long index = Long.parseLong(field.trim());
+            if (index >= 0) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException("Line " + line + ": '" + field + "' is not a valid row or column number");
+    }
+
+    /**
+     * Builds the {@code (key,value)} cell, rejecting text that the table file format cannot represent.
+     */
+    private static String toCell(String key, String value, int line) throws IOException {
+        if (key.indexOf(',') >= 0) {
+            throw new IOException("Line " + line + ": key may not contain ','");
+        }
+        if (value.indexOf(')') >= 0) {
+            throw new IOException("Line " + line + ": value may not contain ')'");
+        }
+        if (key.indexOf('\n') >= 0 || value.indexOf('\n') >= 0 || key.indexOf('\r') >= 0 || value.indexOf('\r') >= 0) {
+            throw new IOException("Line " + line + ": keys and values may not contain line breaks");
+        }
+        return "(" + key + "," + value + ")";
+    }
+
+    /**
+     * Cells of the row being imported with their column numbers.
+     */
+    private static final class RowBuffer {
+
+        private int[] columns = new int[16];
+        private String[] cells = new String[16];
+        private int size;
+        private boolean sorted = true;
+
+        void add(int column, String cell) {
+            if (size == cells.length) {
+                columns = Arrays.copyOf(columns, size * 2);
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            sorted &= size == 0 || columns[size - 1] <= column;
+            columns[size] = column;
+            cells[size] = cell;
+            size++;
+        }
+
+        List<String> drain() {
+            List<String> row = new ArrayList<>(size);
+            if (sorted) {
+                row.addAll(Arrays.asList(cells).subList(0, size));
+            } else {
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                // Stable, so cells that share a column keep their file order
+                Arrays.sort(order, (a, b) -> Integer.compare(columns[a], columns[b]));
+                for (Integer index : order) {
+                    row.add(cells[index]);
+                }
+            }
+            Arrays.fill(cells, 0, size, null);
+            size = 0;
+            sorted = true;
+            return row;
+        }
+    }
+
+}
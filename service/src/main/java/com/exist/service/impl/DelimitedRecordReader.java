@@ -0,0 +1,112 @@
+package com.exist.service.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Reads delimiter-separated records one at a time, with RFC 4180 quoting: a field in double quotes
+ * may hold delimiters and line breaks, and a doubled quote stands for one quote. Records end at
+ * LF or CRLF. Only the current record is held in memory.
+ */
+final class DelimitedRecordReader {
+
+    private final Reader in;
+    private final char delimiter;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private int line = 1;
+    private int recordLine;
+
+    DelimitedRecordReader(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Returns the line on which the last record read started.
+     */
+    int getRecordLine() {
+        return recordLine;
+    }
+
+    /**
+     * Reads the next record into {@code fields} and returns false at the end of the input.
+     */
+    boolean next(List<String> fields) throws IOException {
+        fields.clear();
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        recordLine = line;
+
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                c = readQuoted();
+            } else {
+                while (c != -1 && c != delimiter && c != '\n' && c != '\r') {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+
+            if (c == delimiter) {
+                c = read();
+                continue;
+            }
+            if (c == '\r') {
+                c = read();
+                if (c != '\n' && c != -1) {
+                    // A lone CR ends the record too; keep the character for the next one
+                    position--;
+                    c = '\n';
+                }
+            }
+            if (c == '\n') {
+                line++;
+            } else if (c != -1) {
+                throw new IOException("Line " + recordLine + ": unexpected character after quoted field");
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads a quoted field after its opening quote and returns the character following the closing quote.
+     */
+    private int readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Line " + recordLine + ": unterminated quoted field");
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    return c;
+                }
+            } else if (c == '\n') {
+                line++;
+            }
+            field.append((char) c);
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+}
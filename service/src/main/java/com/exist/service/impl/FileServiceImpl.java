@@ -2,12 +2,24 @@ package com.exist.service.impl;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.InputStream;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
+import com.exist.model.PackedRow;
+import com.exist.model.RowLayout;
+import com.exist.model.RowView;
 import com.exist.model.Table;
 import com.exist.service.FileService;
 import org.apache.commons.io.FileUtils;
@@ -18,7 +30,16 @@ import java.io.File;
 
 public class FileServiceImpl implements FileService {
 
-    private static final Pattern CELL_PATTERN = Pattern.compile("\\([^,]*,[^)]*\\)");
+    private static final int PARALLEL_PARSE_THRESHOLD = 256 * 1024;
+    private static final int PARSE_CHUNK_SIZE = 128 * 1024;
+    private static final int GATHER_BATCH_SIZE = 1024;
+    private static final int SAVE_CHUNK_ROWS = 1024;
+    private static final int ROW_SLACK = 8;
+    private static final byte[] NEWLINE = {'\n'};
+    private static final byte[] CARRIAGE_RETURN = {'\r'};
+
+    // Heap budget given to the tables this service creates, 0 for none
+    private long heapBudget;
 
     @Override
     public String getFileName(String[] args) throws Exception {
@@ -47,64 +68,285 @@ public class FileServiceImpl implements FileService {
 
     @Override
     public String loadFileContent(String fileName) throws IOException {
+        return new String(loadFileBytes(fileName), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] loadFileBytes(String fileName) throws IOException {
         if (DEFAULT_RESOURCE.equals(fileName)) {
             try (InputStream in = getClass().getClassLoader().getResourceAsStream(DEFAULT_RESOURCE)) {
                 if (in == null)
                     throw new IOException("default.txt not found in resources");
-                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                return in.readAllBytes();
+            }
+        }
+        if (FileUtils.getFile(fileName).canRead()) {
+            return FileUtils.readFileToByteArray(FileUtils.getFile(fileName));
+        }
+        throw new IOException(fileName + " not found.");
+    }
+
+    /**
+     * Reads and parses a table file. Pure ASCII files are parsed from their bytes without decoding and
+     * keep the position of every row, so the first save can patch rows in place; anything else goes
+     * through the UTF-8 String parser.
+     */
+    @Override
+    public Table loadTable(String fileName) throws IOException {
+        if (DEFAULT_RESOURCE.equals(fileName)) {
+            return parseFileToTable(loadFileBytes(fileName));
+        }
+
+        File file = FileUtils.getFile(fileName);
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if (heapBudget > 0 && length > heapBudget) {
+            return streamTable(fileName);
+        }
+        byte[] content = loadFileBytes(fileName);
+
+        if (content.length == 0 || !AsciiTableParser.isAscii(content)) {
+            return parseFileToTable(content);
+        }
+
+        RowLayout layout = new RowLayout(file.getAbsolutePath(), 16);
+        Table table = AsciiTableParser.parse(content, layout, newTable());
+        if (content.length == length && file.length() == length && file.lastModified() == lastModified) {
+            layout.stamp(length, lastModified);
+            table.setLayout(layout);
+            table.markClean();
+        }
+        return table;
+    }
+
+    /**
+     * Reads a file larger than the heap budget line by line, so only the rows within the budget are
+     * held in memory at any time. No row layout is kept, so the first save rewrites the file.
+     */
+    private Table streamTable(String fileName) throws IOException {
+        Table table = newTable();
+        try (BufferedReader reader = openFileReader(fileName)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> row = parseLineToRow(line);
+                if (!row.isEmpty()) {
+                    table.add(row);
+                }
             }
         }
+        return table;
+    }
+
+    /**
+     * Limits the heap held by the rows of every table this service creates from now on; 0 for no limit.
+     */
+    @Override
+    public void setHeapBudget(long heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    private Table newTable() {
+        return new Table(Table.CellStorage.PACKED, heapBudget);
+    }
+
+    @Override
+    public BufferedReader openFileReader(String fileName) throws IOException {
+        if (DEFAULT_RESOURCE.equals(fileName)) {
+            InputStream in = getClass().getClassLoader().getResourceAsStream(DEFAULT_RESOURCE);
+            if (in == null)
+                throw new IOException("default.txt not found in resources");
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
         if (FileUtils.getFile(fileName).canRead()) {
-            return FileUtils.readFileToString(FileUtils.getFile(fileName), StandardCharsets.UTF_8);
+            return Files.newBufferedReader(FileUtils.getFile(fileName).toPath(), StandardCharsets.UTF_8);
         }
         throw new IOException(fileName + " not found.");
     }
 
     @Override
     public Table parseFileToTable(String content) {
-        Table table = new Table();
+        Table table = newTable();
 
         if (content.isEmpty()) {
             System.out.println("File is empty, returning empty table.");
             return table;
         }
 
-        String[] lines = content.split("\\r?\\n");
+        if (content.length() < PARALLEL_PARSE_THRESHOLD) {
+            List<List<String>> rows = new ArrayList<>();
+            parseLines(content, 0, content.length(), rows);
+            rows.forEach(table::add);
+            return table;
+        }
+
+        List<ParseChunkTask> tasks = new ArrayList<>();
+        int chunkStart = 0;
+        while (chunkStart < content.length()) {
+            int chunkEnd = nextChunkEnd(content, chunkStart);
+            tasks.add(new ParseChunkTask(content, chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+        }
 
-        for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
-            String line = lines[lineIndex];
+        ForkJoinPool.commonPool().invoke(new ParseAllTask(tasks));
 
-            if (!parseLineToRow(line).isEmpty()) {
-                table.add(parseLineToRow(line));
-            }
+        for (ParseChunkTask task : tasks) {
+            task.join().forEach(table::add);
         }
 
         return table;
     }
 
-    private List<String> parseLineToRow(String line) {
-        List<String> rowCells = new ArrayList<>();
-        Matcher matcher = CELL_PATTERN.matcher(line);
+    /**
+     * Returns the end of the chunk starting at {@code chunkStart}, moved forward to just past the next
+     * newline so that no line is split between two chunks.
+     */
+    private static int nextChunkEnd(String content, int chunkStart) {
+        int target = chunkStart + PARSE_CHUNK_SIZE;
+        if (target >= content.length()) {
+            return content.length();
+        }
+        int newline = content.indexOf('\n', target);
+        return newline == -1 ? content.length() : newline + 1;
+    }
+
+    private static void parseLines(String content, int start, int end, List<List<String>> rows) {
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = content.indexOf('\n', lineStart);
+            if (lineEnd == -1 || lineEnd > end) {
+                lineEnd = end;
+            }
 
-        while (matcher.find()) {
-            String fullMatch = matcher.group(0); 
-            rowCells.add(fullMatch);
+            List<String> row = parseLineToRow(content, lineStart, lineEnd);
+            if (!row.isEmpty()) {
+                rows.add(row);
+            }
+            lineStart = lineEnd + 1;
         }
+    }
 
-        return rowCells;
+    @Override
+    public Table parseFileToTable(byte[] content) {
+        if (content.length == 0) {
+            System.out.println("File is empty, returning empty table.");
+            return newTable();
+        }
+        if (AsciiTableParser.isAscii(content)) {
+            return AsciiTableParser.parse(content, null, newTable());
+        }
+        return parseFileToTable(new String(content, StandardCharsets.UTF_8));
     }
 
     @Override
-    public String tableToString(Table table) {
-        StringBuilder content = new StringBuilder();
+    public List<String> parseLineToRow(String line) {
+        return parseLineToRow(line, 0, line.length());
+    }
 
-        for (int i = 0; i < table.size(); i++) {
-            for (int j = 0; j < table.get(i).size(); j++) {
-                if (j > 0) {
-                    content.append(" ");
+    /**
+     * Collects the cells of one line. Matches the same cells as {@code \([^,]*,[^)]*\)}: an opening
+     * parenthesis, everything up to the first comma, then everything up to the first closing parenthesis.
+     * While every cell fits a {@link PackedRow} the cells are packed straight from the content, so a
+     * typical line allocates no cell strings at all.
+     */
+    private static List<String> parseLineToRow(String content, int lineStart, int lineEnd) {
+        long[] packed = new long[8];
+        int packedCount = 0;
+        List<String> rowCells = null;
+        int position = lineStart;
+
+        while (position < lineEnd) {
+            int open = indexOf(content, '(', position, lineEnd);
+            if (open == -1) {
+                break;
+            }
+            int comma = indexOf(content, ',', open + 1, lineEnd);
+            if (comma == -1) {
+                break;
+            }
+            int close = indexOf(content, ')', comma + 1, lineEnd);
+            if (close == -1) {
+                break;
+            }
+            if (rowCells == null && PackedRow.fits(content, open, close + 1)) {
+                if (packedCount == packed.length) {
+                    packed = Arrays.copyOf(packed, packedCount * 2);
+                }
+                packed[packedCount++] = PackedRow.pack(content, open);
+            } else {
+                if (rowCells == null) {
+                    rowCells = new ArrayList<>();
+                    for (int i = 0; i < packedCount; i++) {
+                        rowCells.add(PackedRow.unpack(packed[i]));
+                    }
                 }
-                content.append(table.get(i).get(j));
+                rowCells.add(content.substring(open, close + 1));
             }
+            position = close + 1;
+        }
+
+        if (rowCells != null) {
+            return rowCells;
+        }
+        return packedCount == 0 ? new ArrayList<>() : new PackedRow(Arrays.copyOf(packed, packedCount));
+    }
+
+    private static int indexOf(String content, char target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (content.charAt(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class ParseChunkTask extends RecursiveTask<List<List<String>>> {
+
+        private final String content;
+        private final int start;
+        private final int end;
+
+        ParseChunkTask(String content, int start, int end) {
+            this.content = content;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<List<String>> compute() {
+            List<List<String>> rows = new ArrayList<>();
+            parseLines(content, start, end, rows);
+            return rows;
+        }
+    }
+
+    private static final class ParseAllTask extends RecursiveAction {
+
+        private final List<ParseChunkTask> tasks;
+
+        ParseAllTask(List<ParseChunkTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    @Override
+    public String tableToString(Table table) {
+        // Sized up front so the builder never grows and copies
+        int length = Math.max(table.size() - 1, 0);
+        RowView view = null;
+        for (int i = 0; i < table.size(); i++) {
+            view = table.view(i, view);
+            length += view.encodedLength();
+        }
+
+        StringBuilder content = new StringBuilder(length);
+        for (int i = 0; i < table.size(); i++) {
+            view = table.view(i, view);
+            view.appendTo(content);
 
             if (i < table.size() - 1) {
                 content.append("\n");
@@ -114,10 +356,357 @@ public class FileServiceImpl implements FileService {
         return content.toString();
     }
 
+    /**
+     * Saves the table. When the file is still exactly as this table last left it, only dirty rows are
+     * written back in place, padded with spaces to fill their slot (the parser ignores text between
+     * cells). A row that outgrew its slot is written with extra slack and everything after it is
+     * shifted. The file counts as unchanged when its size and modification time match the layout and
+     * a line ends on both sides of every slot about to be written. Otherwise the whole file is
+     * rewritten: rows without a cached encoding are encoded in parallel chunks, and the chunks are
+     * written in row order with gather writes.
+     */
     @Override
     public void saveFile(Table table, String fileName) throws IOException {
-        String content = tableToString(table);
-        FileUtils.writeStringToFile(FileUtils.getFile(fileName), content, StandardCharsets.UTF_8);
+        File file = FileUtils.getFile(fileName);
+        RowLayout layout = table.getLayout();
+
+        if (layout != null && layout.getRowCount() <= table.size() && file.isFile()
+                && layout.matches(file.getAbsolutePath(), file.length(), file.lastModified())
+                && slotsIntact(table, file, layout)) {
+            patchFile(table, file, layout);
+        } else {
+            layout = writeFile(table, file);
+            table.setLayout(layout);
+        }
+        layout.stamp(file.length(), file.lastModified());
+    }
+
+    /**
+     * Writes a table file of {@code rows} rows of {@code columns} random cells, with keys and values of
+     * {@code fieldLength} characters, without building the table in memory.
+     */
+    @Override
+    public void generateFile(String fileName, int rows, int columns, int fieldLength) throws IOException {
+        File file = FileUtils.getFile(fileName);
+        FileUtils.forceMkdirParent(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            TableGenerator.generate(channel, rows, columns, fieldLength);
+        }
+    }
+
+    /**
+     * Writes one {@code row,col,key,value} record per cell, with a header line and RFC 4180 quoting.
+     */
+    @Override
+    public void exportCsv(Table table, String fileName) throws IOException {
+        export(table, fileName, TableExporter.Format.CSV);
+    }
+
+    /**
+     * Writes one JSON object per row: {@code {"row":0,"cells":[{"key":"k","value":"v"}]}}.
+     */
+    @Override
+    public void exportJsonLines(Table table, String fileName) throws IOException {
+        export(table, fileName, TableExporter.Format.JSON_LINES);
+    }
+
+    private void export(Table table, String fileName, TableExporter.Format format) throws IOException {
+        File file = FileUtils.getFile(fileName);
+        FileUtils.forceMkdirParent(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            TableExporter.export(table, channel, format);
+        }
+    }
+
+    /**
+     * Reads {@code row,col,key,value} records (comma- or tab-separated, optionally quoted) into a new
+     * table, one row at a time.
+     */
+    @Override
+    public Table importDelimited(String fileName, char delimiter) throws IOException {
+        Table table = newTable();
+        try (BufferedReader reader = openFileReader(fileName)) {
+            DelimitedImporter.importRows(reader, delimiter, table::add);
+        }
+        return table;
+    }
+
+    /**
+     * Converts {@code row,col,key,value} records straight into a table file without building a table,
+     * so the source may be larger than the heap. Returns the number of rows written.
+     */
+    @Override
+    public int convertDelimited(String sourceFileName, String targetFileName, char delimiter) throws IOException {
+        File target = FileUtils.getFile(targetFileName);
+        File source = FileUtils.getFile(sourceFileName);
+        if (target.exists() && source.exists() && Files.isSameFile(source.toPath(), target.toPath())) {
+            throw new IOException("Cannot convert " + sourceFileName + " onto itself.");
+        }
+        FileUtils.forceMkdirParent(target);
+
+        try (BufferedReader reader = openFileReader(sourceFileName);
+             BufferedWriter writer = Files.newBufferedWriter(target.toPath(), StandardCharsets.UTF_8)) {
+            return DelimitedImporter.importRows(reader, delimiter, new DelimitedImporter.RowSink() {
+                private boolean first = true;
+
+                @Override
+                public void accept(List<String> row) throws IOException {
+                    if (!first) {
+                        writer.write('\n');
+                    }
+                    first = false;
+                    writer.write(String.join(" ", row));
+                }
+            });
+        }
+    }
+
+    private RowLayout writeFile(Table table, File file) throws IOException {
+        FileUtils.forceMkdirParent(file);
+        RowLayout layout = new RowLayout(file.getAbsolutePath(), table.size());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            GatherWriter writer = new GatherWriter(channel, 0);
+            // Under a heap budget reading a row pages it in and evicts others, which must not race
+            // with caching encodings here, so the rows are encoded on this thread
+            boolean parallel = table.getHeapBudget() == 0;
+            ParallelChunkWriter.forEachChunk(table.size(), SAVE_CHUNK_ROWS, parallel,
+                    (from, to) -> encodeRows(table, from, to), (from, rows) -> {
+                        for (int i = 0; i < rows.length; i++) {
+                            int rowIndex = from + i;
+                            if (rowIndex > 0) {
+                                writer.add(NEWLINE);
+                            }
+                            layout.addRow(writer.position(), rows[i].length);
+                            writer.add(rows[i]);
+                            if (table.getEncodedRow(rowIndex) != rows[i]) {
+                                table.setEncodedRow(rowIndex, rows[i]);
+                            }
+                        }
+                    });
+            writer.flush();
+        }
+        return layout;
+    }
+
+    /**
+     * Encodes rows {@code [from, to)}, reusing cached encodings. Without a heap budget it runs on pool
+     * threads while the saving thread writes earlier chunks and caches their encodings, so it only
+     * reads the table.
+     */
+    private static byte[][] encodeRows(Table table, int from, int to) {
+        byte[][] rows = new byte[to - from][];
+        RowView view = null;
+        for (int i = from; i < to; i++) {
+            byte[] encoded = table.getEncodedRow(i);
+            if (encoded == null) {
+                view = table.view(i, view);
+                encoded = encode(view);
+            }
+            rows[i - from] = encoded;
+        }
+        return rows;
+    }
+
+    /**
+     * Checks that the slots of the dirty rows, and the end of the last slot where appended rows go,
+     * still sit between line ends in the file. A change that kept the file's size and, to the
+     * millisecond, its modification time almost always moves some of them.
+     */
+    private static boolean slotsIntact(Table table, File file, RowLayout layout) throws IOException {
+        int rowCount = layout.getRowCount();
+        if (rowCount == 0) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            if (!endsLine(channel, layout.getSlotEnd(rowCount - 1), length, buffer)) {
+                return false;
+            }
+            for (int i = 0; i < rowCount; i++) {
+                if (table.isDirty(i) && (!endsLine(channel, layout.getOffset(i) - 1, length, buffer)
+                        || !endsLine(channel, layout.getSlotEnd(i), length, buffer))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a line ends at {@code position}: the start or end of the file, or a newline.
+     */
+    private static boolean endsLine(FileChannel channel, long position, long length, ByteBuffer buffer)
+            throws IOException {
+        if (position == -1 || position == length) {
+            return true;
+        }
+        if (position < -1 || position > length) {
+            return false;
+        }
+        buffer.clear();
+        while (buffer.hasRemaining() && channel.read(buffer, position) >= 0) {
+            // Short reads are continued
+        }
+        return !buffer.hasRemaining() && buffer.get(0) == '\n';
+    }
+
+    private void patchFile(Table table, File file, RowLayout layout) throws IOException {
+        int tailStart = layout.getRowCount();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            for (int i = 0; i < layout.getRowCount(); i++) {
+                if (!table.isDirty(i)) {
+                    continue;
+                }
+                byte[] encoded = encodeRow(table, i);
+                // A line ending in "\r\n" keeps its '\r', the last byte of the slot
+                boolean crlf = endsWithCarriageReturn(channel, layout, i, buffer);
+                int room = layout.getSlotLength(i) - (crlf ? 1 : 0);
+                if (encoded.length > room) {
+                    tailStart = i;
+                    break;
+                }
+                GatherWriter writer = new GatherWriter(channel, layout.getOffset(i));
+                writer.add(encoded);
+                writer.add(padding(room - encoded.length));
+                if (crlf) {
+                    writer.add(CARRIAGE_RETURN);
+                }
+                writer.flush();
+            }
+
+            if (tailStart < table.size()) {
+                int sample = Math.min(tailStart, layout.getRowCount() - 1);
+                boolean crlf = sample >= 0 && endsWithCarriageReturn(channel, layout, sample, buffer);
+                rewriteTail(table, layout, tailStart, crlf, channel);
+            }
+        }
+    }
+
+    /**
+     * Rewrites rows from {@code tailStart} on, keeping the slot of each old row that still fits and
+     * giving rows that outgrew theirs extra slack. In a file whose lines end in "\r\n", every row but
+     * the last is written with its '\r'.
+     */
+    private void rewriteTail(Table table, RowLayout layout, int tailStart, boolean crlf, FileChannel channel)
+            throws IOException {
+        int terminator = crlf ? 1 : 0;
+        int oldRowCount = layout.getRowCount();
+        int[] oldRooms = new int[oldRowCount - Math.min(tailStart, oldRowCount)];
+        for (int i = 0; i < oldRooms.length; i++) {
+            oldRooms[i] = Math.max(0, layout.getSlotLength(tailStart + i) - terminator);
+        }
+
+        GatherWriter writer = new GatherWriter(channel, layout.getSlotEnd(tailStart - 1));
+        layout.truncate(tailStart);
+
+        for (int i = tailStart; i < table.size(); i++) {
+            if (i > 0) {
+                writer.add(NEWLINE);
+            }
+            byte[] encoded = encodeRow(table, i);
+            int room = encoded.length;
+            if (i < oldRowCount) {
+                int oldRoom = oldRooms[i - tailStart];
+                room = encoded.length > oldRoom ? encoded.length + ROW_SLACK : oldRoom;
+            }
+            boolean lineEnd = crlf && i < table.size() - 1;
+            layout.addRow(writer.position(), room + (lineEnd ? 1 : 0));
+            writer.add(encoded);
+            writer.add(padding(room - encoded.length));
+            if (lineEnd) {
+                writer.add(CARRIAGE_RETURN);
+            }
+        }
+        writer.flush();
+        channel.truncate(writer.position());
+    }
+
+    private static boolean endsWithCarriageReturn(FileChannel channel, RowLayout layout, int rowIndex,
+                                                  ByteBuffer buffer) throws IOException {
+        if (layout.getSlotLength(rowIndex) == 0) {
+            return false;
+        }
+        buffer.clear();
+        while (buffer.hasRemaining() && channel.read(buffer, layout.getSlotEnd(rowIndex) - 1) >= 0) {
+            // Short reads are continued
+        }
+        return !buffer.hasRemaining() && buffer.get(0) == '\r';
+    }
+
+    private static byte[] encodeRow(Table table, int rowIndex) {
+        byte[] encoded = table.getEncodedRow(rowIndex);
+        if (encoded == null) {
+            encoded = encode(table.view(rowIndex, null));
+            table.setEncodedRow(rowIndex, encoded);
+        }
+        return encoded;
+    }
+
+    private static byte[] encode(RowView view) {
+        byte[] encoded = view.toAsciiBytes();
+        if (encoded == null) {
+            StringBuilder row = new StringBuilder();
+            view.appendTo(row);
+            encoded = row.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    private static byte[] padding(int length) {
+        byte[] spaces = new byte[length];
+        Arrays.fill(spaces, (byte) ' ');
+        return spaces;
+    }
+
+    /**
+     * Collects buffers and writes them with one gather write per batch, starting at a fixed position.
+     */
+    private static final class GatherWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer[] batch = new ByteBuffer[GATHER_BATCH_SIZE];
+        private int count;
+        private long position;
+
+        GatherWriter(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            this.position = position;
+            channel.position(position);
+        }
+
+        long position() {
+            return position;
+        }
+
+        void add(byte[] bytes) throws IOException {
+            if (bytes.length == 0) {
+                return;
+            }
+            batch[count++] = ByteBuffer.wrap(bytes);
+            position += bytes.length;
+            if (count == batch.length) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            long remaining = 0;
+            for (int i = 0; i < count; i++) {
+                remaining += batch[i].remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(batch, 0, count);
+            }
+            Arrays.fill(batch, 0, count, null);
+            count = 0;
+        }
     }
 
-}
\ No newline at end of file
+}
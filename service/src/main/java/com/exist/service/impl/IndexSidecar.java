@@ -0,0 +1,215 @@
+package com.exist.service.impl;
+
+import com.exist.model.Table;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The search indexes of a table file, saved next to it as {@code <file>.idx} so that loading the file
+ * again can read them back instead of building them from every row.
+ *
+ * <p>The sidecar starts with a header naming the format version, the table file's length and CRC32
+ * and the number of rows, and ends with a footer holding the offset of each index's section, or -1
+ * for an index that was not saved. All numbers are big-endian and strings are stored as UTF-16
+ * chars, so the file is read through a memory mapping without decoding. A sidecar whose header does
+ * not match the table file is stale and is never read.
+ */
+final class IndexSidecar {
+
+    static final String SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x54494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    // The bigram filters, then each cell index in the service's order
+    private static final int SECTIONS = 4;
+    private static final int FOOTER_BYTES = SECTIONS * Long.BYTES + Integer.BYTES;
+    private static final long CHECKSUM_CHUNK = 1 << 30;
+
+    private final Path path;
+    private final long tableLength;
+    private final long checksum;
+
+    private IndexSidecar(Path path, long tableLength, long checksum) {
+        this.path = path;
+        this.tableLength = tableLength;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Checksums the table file, reading it through a memory mapping, and returns the sidecar that
+     * belongs to its current contents.
+     */
+    static IndexSidecar of(Path tableFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(tableFile, StandardOpenOption.READ)) {
+            long length = channel.size();
+            CRC32 crc = new CRC32();
+            for (long offset = 0; offset < length; offset += CHECKSUM_CHUNK) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHECKSUM_CHUNK, length - offset)));
+            }
+            return new IndexSidecar(Path.of(tableFile + SUFFIX), length, crc.getValue());
+        }
+    }
+
+    /**
+     * Returns whether the sidecar file exists and was written for the table file's current contents
+     * with {@code rowCount} rows.
+     */
+    boolean isFresh(int rowCount) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Short reads are continued
+            }
+            return !header.hasRemaining() && matches(header.flip(), rowCount);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the saved indexes into {@code filter} and {@code indexes}, which must be the indexes of
+     * {@code table} as loaded from the table file. Indexes already current for the table are left
+     * alone, as is {@code filter} when it is null. Returns false, reading nothing more, when the
+     * sidecar is stale or damaged; indexes read before that are complete.
+     */
+    boolean read(Table table, SearchFilter filter, List<CellIndex> indexes) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES + FOOTER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                return false;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            return false;
+        }
+
+        try {
+            if (!matches(buffer, table.size())) {
+                return false;
+            }
+            buffer.position(buffer.limit() - FOOTER_BYTES);
+            long[] offsets = new long[SECTIONS];
+            for (int section = 0; section < SECTIONS; section++) {
+                offsets[section] = buffer.getLong();
+            }
+            if (buffer.getInt() != MAGIC) {
+                return false;
+            }
+
+            if (filter != null && offsets[0] >= 0 && !filter.isCurrent(table)) {
+                filter.read(table, buffer.position((int) offsets[0]));
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                CellIndex index = indexes.get(i);
+                if (offsets[i + 1] >= 0 && !index.isCurrent(table)) {
+                    index.read(table, buffer.position((int) offsets[i + 1]));
+                }
+            }
+            return true;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                | NegativeArraySizeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Serializes the indexes of {@code table} that are current for it, followed by the footer that
+     * locates them; {@code filter} may be null. The bytes are a snapshot, so they can be written by
+     * {@link #write(byte[], int)} on another thread while the table and its indexes go on changing.
+     */
+    static byte[] sections(Table table, SearchFilter filter, List<CellIndex> indexes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long[] offsets = new long[SECTIONS];
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            offsets[0] = -1;
+            if (filter != null && filter.isCurrent(table)) {
+                offsets[0] = HEADER_BYTES + out.size();
+                filter.write(out);
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                offsets[i + 1] = -1;
+                if (indexes.get(i).isCurrent(table)) {
+                    offsets[i + 1] = HEADER_BYTES + out.size();
+                    indexes.get(i).write(out);
+                }
+            }
+
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            out.writeInt(MAGIC);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Saves {@code sections}, taken from a table of {@code rowCount} rows by {@link #sections}. The
+     * sidecar is written to a temporary file and moved into place, so readers never see half of it.
+     * A sidecar too large to map is not kept.
+     */
+    void write(byte[] sections, int rowCount) throws IOException {
+        if ((long) HEADER_BYTES + sections.length >= Integer.MAX_VALUE) {
+            return;
+        }
+        Path temporary = Path.of(path + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(tableLength);
+            out.writeLong(checksum);
+            out.writeInt(rowCount);
+            out.write(sections);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean matches(ByteBuffer header, int rowCount) {
+        return header.getInt() == MAGIC && header.getInt() == VERSION && header.getLong() == tableLength
+                && header.getLong() == checksum && header.getInt() == rowCount;
+    }
+
+    static void writeString(DataOutputStream out, String text) throws IOException {
+        out.writeInt(text.length());
+        out.writeChars(text);
+    }
+
+    static String readString(ByteBuffer in) {
+        char[] chars = new char[in.getInt()];
+        in.asCharBuffer().get(chars);
+        in.position(in.position() + chars.length * Character.BYTES);
+        return new String(chars);
+    }
+
+    static void writeLongs(DataOutputStream out, long[] values, int count) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeLong(values[i]);
+        }
+    }
+
+    static long[] readLongs(ByteBuffer in) {
+        long[] values = new long[in.getInt()];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+}
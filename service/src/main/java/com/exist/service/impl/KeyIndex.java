@@ -0,0 +1,207 @@
+package com.exist.service.impl;
+
+import com.exist.model.Table;
+import com.exist.service.query.CellPosition;
+import com.exist.service.query.Condition;
+import com.exist.service.query.QueryIndex;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Hash index from every key to the {@link CellPosition}s of the cells holding it. Keys live in an
+ * open-addressing table with linear probing, and each key's positions in a {@code long[]} of its own,
+ * so no boxed collections are involved. A key whose last position is removed keeps its slot until the
+ * table grows.
+ */
+final class KeyIndex extends CellIndex {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long[] NO_POSITIONS = new long[0];
+
+    private String[] keys = new String[MIN_CAPACITY];
+    private long[][] positions = new long[MIN_CAPACITY][];
+    private int[] counts = new int[MIN_CAPACITY];
+    private int usedSlots;
+
+    KeyIndex() {
+        super(Condition.Field.KEY);
+    }
+
+    /**
+     * Returns the positions of every cell whose key is {@code key}, in row then column order.
+     */
+    long[] find(Table table, String key) {
+        sync(table);
+        int slot = slot(key);
+        if (keys[slot] == null || counts[slot] == 0) {
+            return NO_POSITIONS;
+        }
+        long[] found = Arrays.copyOf(positions[slot], counts[slot]);
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Returns a query index answering {@code key =} conditions on the table, built on first use.
+     */
+    QueryIndex forQueries(Table table) {
+        return new QueryIndex() {
+            @Override
+            public String name() {
+                return "hash";
+            }
+
+            @Override
+            public long estimateRows(Condition condition) {
+                if (!(condition instanceof Condition.Match match) || match.field != Condition.Field.KEY
+                        || match.operator != Condition.TextOperator.EQUALS) {
+                    return -1;
+                }
+                sync(table);
+                int slot = slot(match.text);
+                return keys[slot] == null ? 0 : counts[slot];
+            }
+
+            @Override
+            public BitSet candidateRows(Condition condition) {
+                BitSet rows = new BitSet(table.size());
+                for (long position : find(table, ((Condition.Match) condition).text)) {
+                    rows.set(CellPosition.row(position));
+                }
+                return rows;
+            }
+        };
+    }
+
+    @Override
+    void clear() {
+        clearSlots(MIN_CAPACITY);
+    }
+
+    /**
+     * Writes every key that has positions, followed by its positions in no particular order.
+     */
+    @Override
+    void write(DataOutputStream out) throws IOException {
+        int liveKeys = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null && counts[slot] > 0) {
+                liveKeys++;
+            }
+        }
+        out.writeInt(liveKeys);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null && counts[slot] > 0) {
+                IndexSidecar.writeString(out, keys[slot]);
+                IndexSidecar.writeLongs(out, positions[slot], counts[slot]);
+            }
+        }
+    }
+
+    @Override
+    void readEntries(ByteBuffer in) {
+        int liveKeys = in.getInt();
+        int capacity = MIN_CAPACITY;
+        while ((liveKeys + 1) * 2L > capacity) {
+            capacity *= 2;
+        }
+        clearSlots(capacity);
+        for (int i = 0; i < liveKeys; i++) {
+            String key = IndexSidecar.readString(in);
+            long[] keyPositions = IndexSidecar.readLongs(in);
+            int slot = slot(key);
+            if (keys[slot] == null) {
+                keys[slot] = key;
+                positions[slot] = keyPositions;
+                counts[slot] = keyPositions.length;
+                usedSlots++;
+            }
+        }
+    }
+
+    @Override
+    void add(String key, long position) {
+        int slot = slot(key);
+        if (keys[slot] == null) {
+            if ((usedSlots + 1) * 4L > keys.length * 3L) {
+                rehash();
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            positions[slot] = new long[2];
+            usedSlots++;
+        }
+        if (counts[slot] == positions[slot].length) {
+            positions[slot] = Arrays.copyOf(positions[slot], counts[slot] * 2);
+        }
+        positions[slot][counts[slot]++] = position;
+    }
+
+    @Override
+    void remove(String key, long position) {
+        int slot = slot(key);
+        if (keys[slot] == null) {
+            return;
+        }
+        long[] list = positions[slot];
+        for (int i = 0; i < counts[slot]; i++) {
+            if (list[i] == position) {
+                list[i] = list[--counts[slot]];
+                return;
+            }
+        }
+    }
+
+    private int slot(String key) {
+        int mask = keys.length - 1;
+        int hash = key.hashCode() * 0x9e3779b9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the slots, dropping keys without positions and doubling the capacity when still needed.
+     */
+    private void rehash() {
+        String[] oldKeys = keys;
+        long[][] oldPositions = positions;
+        int[] oldCounts = counts;
+
+        int liveKeys = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null && oldCounts[i] > 0) {
+                liveKeys++;
+            }
+        }
+        int capacity = oldKeys.length;
+        while ((liveKeys + 1) * 2L > capacity) {
+            capacity *= 2;
+        }
+        clearSlots(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null && oldCounts[i] > 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                positions[slot] = oldPositions[i];
+                counts[slot] = oldCounts[i];
+                usedSlots++;
+            }
+        }
+    }
+
+    private void clearSlots(int capacity) {
+        keys = new String[capacity];
+        positions = new long[capacity][];
+        counts = new int[capacity];
+        usedSlots = 0;
+    }
+
+}
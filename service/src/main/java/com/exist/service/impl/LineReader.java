@@ -0,0 +1,53 @@
+package com.exist.service.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads lines split at {@code '\n'} only, the way the ASCII table parser splits them, for the part of
+ * a file that {@link RowReader} cannot read as ASCII bytes. A {@code '\r'} before the newline stays
+ * part of the line, as it does in the parser's row slots.
+ */
+final class LineReader implements Closeable {
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+
+    private final StringBuilder line = new StringBuilder();
+
+    LineReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Returns the next line without its newline, or null at the end of the input.
+     */
+    String readLine() throws IOException {
+        line.setLength(0);
+        boolean empty = true;
+        while (true) {
+            if (position == limit) {
+                limit = Math.max(0, in.read(buffer, 0, buffer.length));
+                position = 0;
+                if (limit == 0) {
+                    return empty ? null : line.toString();
+                }
+            }
+            char c = buffer[position++];
+            empty = false;
+            if (c == '\n') {
+                return line.toString();
+            }
+            line.append(c);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.exist.service.impl;
+
+import com.exist.model.RowView;
+import com.exist.model.Table;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Estimates how often a term occurs in the keys and in the values of a table from a sample of rows
+ * drawn without replacement, and refines the estimate as more rows are sampled; once every row has
+ * been sampled the totals are exact. Occurrences are counted as {@code searchValue} counts them.
+ *
+ * <p>The table is split into blocks of consecutive rows (strata), and every block gets an equal
+ * share of each sample, so a term clustered in part of the table is not over- or under-sampled by
+ * chance. With one block this is a uniform sample of the whole table. The total is estimated per
+ * block and summed, and comes with a 95% confidence interval from the normal approximation with the
+ * finite population correction. The interval never goes below the occurrences already seen.
+ */
+final class OccurrenceSampler {
+
+    // Smallest stratum, and fewest rows sampled from each stratum by the first sample
+    private static final int MIN_BLOCK_ROWS = 1024;
+    private static final int MIN_ROWS_PER_BLOCK = 2;
+    private static final double Z_95 = 1.959964;
+
+    private final Table table;
+    private final long modCount;
+    private final String term;
+    private final byte[] asciiTerm;
+    private final RowScanner scanner;
+    private final SearchFilter filter;
+    private final long[] probe;
+    private final Random random;
+
+    private final int rowCount;
+    private final int blockRows;
+    private final int blocks;
+    private final boolean stratified;
+
+    // Per block: rows sampled so far, and sums and sums of squares of their key and value counts
+    private final int[] taken;
+    private final double[] keySums;
+    private final double[] keySquares;
+    private final double[] valueSums;
+    private final double[] valueSquares;
+    private int sampled;
+    private int nextBlock;
+
+    // Sparse Fisher-Yates shuffle within each block: the row moved to a position, where it is not its own
+    private final Map<Integer, Integer> moved = new HashMap<>();
+    private RowView view;
+
+    /**
+     * Prepares to sample rows of the table. {@code filter}, when not null, must be current for the
+     * table; rows it rules out count as zero without being read. The first sample should be of at
+     * least {@code plannedRows} rows, which bounds the number of blocks when stratified.
+     */
+    OccurrenceSampler(Table table, String term, boolean stratified, int plannedRows, SearchKernel kernel,
+                      SearchFilter filter, long seed) {
+        this.table = table;
+        this.modCount = table.getModCount();
+        this.term = term;
+        this.asciiTerm = RowScanner.asciiTerm(term);
+        this.scanner = kernel == null || asciiTerm == null ? null : new RowScanner(kernel);
+        this.filter = filter;
+        this.probe = filter == null ? null : filter.probe(term);
+        this.random = new Random(seed);
+        this.rowCount = table.size();
+        this.stratified = stratified;
+
+        int maxBlocks = Math.max(1, Math.min(divideUp(rowCount, MIN_BLOCK_ROWS), plannedRows / MIN_ROWS_PER_BLOCK));
+        this.blockRows = stratified ? Math.max(1, divideUp(rowCount, maxBlocks)) : Math.max(1, rowCount);
+        this.blocks = divideUp(rowCount, blockRows);
+        this.taken = new int[blocks];
+        this.keySums = new double[blocks];
+        this.keySquares = new double[blocks];
+        this.valueSums = new double[blocks];
+        this.valueSquares = new double[blocks];
+    }
+
+    /**
+     * Returns whether the table is still the one, unchanged, that the sample was drawn from.
+     */
+    boolean isCurrent(Table table) {
+        return table == this.table && table.getModCount() == modCount;
+    }
+
+    boolean isExact() {
+        return sampled == rowCount;
+    }
+
+    /**
+     * Samples up to {@code rows} more rows, spread evenly over the blocks that still have rows left.
+     */
+    void sample(int rows) {
+        int remaining = (int) Math.min(rows, (long) rowCount - sampled);
+        while (remaining > 0) {
+            int block = nextBlock;
+            nextBlock = (nextBlock + 1) % blocks;
+            if (taken[block] < blockSize(block)) {
+                sampleRow(block);
+                remaining--;
+            }
+        }
+    }
+
+    private void sampleRow(int block) {
+        int start = block * blockRows;
+        int position = start + taken[block];
+        int pick = position + random.nextInt(blockSize(block) - taken[block]);
+        int row = rowAt(pick);
+        if (pick != position) {
+            moved.put(pick, rowAt(position));
+        }
+        moved.remove(position);
+        taken[block]++;
+        sampled++;
+
+        if (filter != null && !filter.isCandidate(row, probe)) {
+            return;
+        }
+        view = table.view(row, view);
+        boolean scanned = scanner != null && scanner.scan(view, asciiTerm);
+        long keys = 0;
+        long values = 0;
+        for (int column = 0; column < view.size(); column++) {
+            keys += scanned ? scanner.keyCount(column) : view.countInKey(column, term);
+            values += scanned ? scanner.valueCount(column) : view.countInValue(column, term);
+        }
+        keySums[block] += keys;
+        keySquares[block] += (double) keys * keys;
+        valueSums[block] += values;
+        valueSquares[block] += (double) values * values;
+    }
+
+    private int rowAt(int position) {
+        Integer row = moved.get(position);
+        return row == null ? position : row;
+    }
+
+    /**
+     * Describes the estimated key and value totals, or the exact ones once every row is sampled.
+     */
+    String describe() {
+        if (isExact()) {
+            return String.format(Locale.ROOT, "%d <%s> at keys and %d <%s> at values (exact, all %d rows scanned)%n",
+                    Math.round(sum(keySums)), term, Math.round(sum(valueSums)), term, rowCount);
+        }
+        String sampling = stratified && blocks > 1 ? "stratified over " + blocks + " blocks" : "uniform";
+        return "~" + interval(keySums, keySquares) + " <" + term + "> at keys, ~" + interval(valueSums, valueSquares)
+                + " <" + term + "> at values (95% confidence)\n"
+                + String.format(Locale.ROOT, "estimated from %d of %d rows (%.1f%%), %s%n", sampled, rowCount,
+                100.0 * sampled / rowCount, sampling);
+    }
+
+    /**
+     * Returns the estimated total, its lower bound and its upper bound.
+     */
+    long[] estimate(double[] sums, double[] squares) {
+        double seen = sum(sums);
+        double total = 0;
+        double variance = 0;
+        for (int block = 0; block < blocks; block++) {
+            int n = taken[block];
+            int size = blockSize(block);
+            if (n == 0) {
+                // Not reached yet: assume the table-wide mean
+                total += size * (sampled == 0 ? 0 : seen / sampled);
+                continue;
+            }
+            double mean = sums[block] / n;
+            total += size * mean;
+            if (n > 1 && n < size) {
+                double sampleVariance = Math.max(0, (squares[block] - sums[block] * mean) / (n - 1));
+                variance += (double) size * size * (1 - (double) n / size) * sampleVariance / n;
+            }
+        }
+
+        double margin = Z_95 * Math.sqrt(variance);
+        double upper = total + margin;
+        if (seen == 0 && !isExact()) {
+            // Nothing seen, so no spread either: bound the rate by the rule of three instead
+            upper = sampled == 0 ? Double.POSITIVE_INFINITY : 3.0 * rowCount / sampled;
+        }
+        return new long[]{Math.round(total), Math.round(Math.max(seen, total - margin)),
+                upper == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : Math.round(Math.max(seen, upper))};
+    }
+
+    private String interval(double[] sums, double[] squares) {
+        long[] estimate = estimate(sums, squares);
+        return estimate[0] + " [" + estimate[1] + ".." + estimate[2] + "]";
+    }
+
+    long[] keyEstimate() {
+        return estimate(keySums, keySquares);
+    }
+
+    long[] valueEstimate() {
+        return estimate(valueSums, valueSquares);
+    }
+
+    private int blockSize(int block) {
+        return Math.min(blockRows, rowCount - block * blockRows);
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static int divideUp(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+}
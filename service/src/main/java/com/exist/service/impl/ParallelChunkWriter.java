@@ -0,0 +1,102 @@
+package com.exist.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Encodes rows in chunks on the fork-join pool and writes the chunks to a channel, or hands them
+ * to a sink, in row order.
+ * Only a small window of chunks is in flight at a time, so memory stays bounded however large
+ * the table is.
+ */
+final class ParallelChunkWriter {
+
+    /**
+     * Encodes rows {@code [from, to)}. Called from pool threads, so it must only read shared state.
+     */
+    interface ChunkEncoder<T> {
+        T encode(int from, int to);
+    }
+
+    /**
+     * Receives each encoded chunk, starting at row {@code from}, in row order on the calling thread.
+     */
+    interface ChunkSink<T> {
+        void accept(int from, T chunk) throws IOException;
+    }
+
+    private ParallelChunkWriter() {}
+
+    /**
+     * Writes the encoding of rows {@code [0, rowCount)} starting at {@code position} and returns the
+     * position after the last byte written.
+     */
+    static long write(FileChannel channel, long position, int rowCount, int chunkRows, ChunkEncoder<byte[]> encoder)
+            throws IOException {
+        long[] end = {position};
+        forEachChunk(rowCount, chunkRows, encoder, (from, bytes) -> end[0] = writeFully(channel, end[0], bytes));
+        return end[0];
+    }
+
+    /**
+     * Encodes rows {@code [0, rowCount)} in chunks of {@code chunkRows} and hands the chunks to
+     * {@code sink} in row order. A table of a single chunk is encoded on the calling thread.
+     */
+    static <T> void forEachChunk(int rowCount, int chunkRows, ChunkEncoder<T> encoder, ChunkSink<T> sink)
+            throws IOException {
+        forEachChunk(rowCount, chunkRows, true, encoder, sink);
+    }
+
+    /**
+     * Like {@link #forEachChunk(int, int, ChunkEncoder, ChunkSink)}, but unless {@code parallel} every
+     * chunk is encoded on the calling thread just before it is handed to {@code sink}, for encoders
+     * that may not run while the sink changes the rows.
+     */
+    static <T> void forEachChunk(int rowCount, int chunkRows, boolean parallel, ChunkEncoder<T> encoder,
+                                 ChunkSink<T> sink) throws IOException {
+        if (!parallel || rowCount <= chunkRows) {
+            for (int from = 0; from < rowCount; from += chunkRows) {
+                sink.accept(from, encoder.encode(from, Math.min(rowCount, from + chunkRows)));
+            }
+            return;
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        Deque<ForkJoinTask<T>> inFlight = new ArrayDeque<>();
+        int nextChunk = 0;
+
+        try {
+            for (int from = 0; from < rowCount; from += chunkRows) {
+                int chunkStart = from;
+                int chunkEnd = Math.min(rowCount, from + chunkRows);
+                inFlight.add(pool.submit(() -> encoder.encode(chunkStart, chunkEnd)));
+
+                if (inFlight.size() == window) {
+                    sink.accept(nextChunk, inFlight.poll().join());
+                    nextChunk += chunkRows;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                sink.accept(nextChunk, inFlight.poll().join());
+                nextChunk += chunkRows;
+            }
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+        }
+    }
+
+    static long writeFully(FileChannel channel, long position, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.exist.service.impl;
+
+import com.exist.model.RowLayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads the rows of a table file one at a time for the progressive loader. Whole lines are cut from
+ * the file's bytes and parsed by {@link AsciiTableParser}, so the byte offset of each line is known
+ * exactly. From the first block of lines holding a non-ASCII byte on, the rest of the file is decoded
+ * as UTF-8 and read line by line through a {@link LineReader} instead.
+ */
+final class RowReader implements Closeable {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final Function<String, List<String>> lineParser;
+    private byte[] buffer = new byte[BLOCK_SIZE];
+    private int position;
+    private int limit;
+    // Offset in the file of buffer[0]
+    private long bufferOffset;
+    private boolean endOfInput;
+
+    private AsciiTableParser.ParsedChunk chunk;
+    private int nextRow;
+
+    private LineReader lines;
+
+    /**
+     * Reads the rows of {@code in} from its bytes, parsing lines through {@code lineParser} only once
+     * a non-ASCII byte is found.
+     */
+    RowReader(InputStream in, Function<String, List<String>> lineParser) {
+        this.in = in;
+        this.lineParser = lineParser;
+    }
+
+    /**
+     * Reads the rows of {@code in} line by line, for input that is not a file of bytes.
+     */
+    RowReader(Reader in, Function<String, List<String>> lineParser) {
+        this.in = InputStream.nullInputStream();
+        this.lineParser = lineParser;
+        this.lines = new LineReader(in);
+    }
+
+    /**
+     * Hands the next row to {@code rows}, recording its slot in {@code layout} when not null and the
+     * row was read from bytes. Returns false at the end of the input.
+     */
+    boolean readRow(Consumer<List<String>> rows, RowLayout layout) throws IOException {
+        while (lines == null) {
+            if (chunk != null && nextRow < chunk.size()) {
+                int row = nextRow++;
+                rows.accept(chunk.row(row));
+                if (layout != null) {
+                    layout.addRow(bufferOffset + chunk.lineStart(row), chunk.lineEnd(row) - chunk.lineStart(row));
+                }
+                return true;
+            }
+            if (!readChunk()) {
+                return false;
+            }
+        }
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            List<String> row = lineParser.apply(line);
+            if (!row.isEmpty()) {
+                rows.accept(row);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether every row so far was read from bytes, so the slots recorded are byte offsets.
+     */
+    boolean hasByteOffsets() {
+        return lines == null;
+    }
+
+    /**
+     * Returns the number of bytes read so far; only meaningful while {@link #hasByteOffsets()}.
+     */
+    long length() {
+        return bufferOffset + position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (in) {
+            if (lines != null) {
+                lines.close();
+            }
+        }
+    }
+
+    /**
+     * Parses the next block of whole lines, or switches to reading lines when it holds a non-ASCII
+     * byte. Returns false at the end of the input.
+     */
+    private boolean readChunk() throws IOException {
+        // The rest of a line cut off at the end of the last block moves to the front
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        bufferOffset += position;
+        limit -= position;
+        position = 0;
+
+        int end = fill();
+        if (end == 0) {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            if (buffer[i] < 0) {
+                // A block starts at a line start, so the lines read from here on are whole
+                InputStream rest = new SequenceInputStream(new ByteArrayInputStream(buffer, 0, limit), in);
+                lines = new LineReader(new InputStreamReader(rest, StandardCharsets.UTF_8));
+                chunk = null;
+                return true;
+            }
+        }
+        chunk = AsciiTableParser.parseLines(buffer, 0, end);
+        nextRow = 0;
+        position = end;
+        return true;
+    }
+
+    /**
+     * Reads until the buffer holds a whole line, growing it for a line longer than a block, and
+     * returns the end of the last whole line; at the end of the input, everything left is a line.
+     */
+    private int fill() throws IOException {
+        int scanned = 0;
+        while (true) {
+            for (int i = limit - 1; i >= scanned; i--) {
+                if (buffer[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            if (endOfInput) {
+                return limit;
+            }
+            scanned = limit;
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                limit += read;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.exist.service.impl;
+
+import com.exist.model.RowView;
+
+import java.util.Arrays;
+
+/**
+ * Counts a term in every key and value of a row in one pass over the row's ASCII bytes: the kernel
+ * finds each position holding the term's first byte, the rest of the term is verified there, and a
+ * match counts for the key or value it lies entirely within. Counts are the same as
+ * {@link RowView#countInKey(int, String)} and {@link RowView#countInValue(int, String)}.
+ */
+final class RowScanner {
+
+    private final SearchKernel kernel;
+
+    private byte[] bytes = new byte[256];
+    private int[] cellStarts = new int[16];
+    private int[] keyCounts = new int[16];
+    private int[] valueCounts = new int[16];
+
+    RowScanner(SearchKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /**
+     * Returns the term as ASCII bytes, or null when it is empty or not ASCII and rows must be searched
+     * through the {@link RowView} methods instead.
+     */
+    static byte[] asciiTerm(String term) {
+        if (term.isEmpty()) {
+            return null;
+        }
+        byte[] ascii = new byte[term.length()];
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c >= 0x80) {
+                return null;
+            }
+            ascii[i] = (byte) c;
+        }
+        return ascii;
+    }
+
+    /**
+     * Counts the term in the row the view is bound to. Returns false, leaving the counts undefined,
+     * when the row is not ASCII.
+     */
+    boolean scan(RowView view, byte[] term) {
+        int cells = view.size();
+        int length = view.encodedLength();
+        if (length > bytes.length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        if (cells > cellStarts.length) {
+            int capacity = Math.max(cells, cellStarts.length * 2);
+            cellStarts = new int[capacity];
+            keyCounts = new int[capacity];
+            valueCounts = new int[capacity];
+        }
+        if (view.writeAscii(bytes, cellStarts) < 0) {
+            return false;
+        }
+        Arrays.fill(keyCounts, 0, cells, 0);
+        Arrays.fill(valueCounts, 0, cells, 0);
+
+        int end = length - term.length + 1;
+        int cell = 0;
+        for (int position = kernel.indexOf(bytes, 0, end, term[0]); position >= 0;
+                position = kernel.indexOf(bytes, position + 1, end, term[0])) {
+            if (!matches(position, term)) {
+                continue;
+            }
+            while (cell + 1 < cells && cellStarts[cell + 1] <= position) {
+                cell++;
+            }
+            int keyStart = cellStarts[cell] + 1;
+            int valueEnd = (cell + 1 < cells ? cellStarts[cell + 1] - 1 : length) - 1;
+            int matchEnd = position + term.length;
+            if (position >= keyStart && matchEnd <= keyStart + view.keyLength(cell)) {
+                keyCounts[cell]++;
+            } else if (position >= valueEnd - view.valueLength(cell) && matchEnd <= valueEnd) {
+                valueCounts[cell]++;
+            }
+        }
+        return true;
+    }
+
+    int keyCount(int column) {
+        return keyCounts[column];
+    }
+
+    int valueCount(int column) {
+        return valueCounts[column];
+    }
+
+    private boolean matches(int position, byte[] term) {
+        for (int i = 1; i < term.length; i++) {
+            if (bytes[position + i] != term[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.exist.service.impl;
+
+/**
+ * Checks one byte at a time.
+ */
+final class ScalarSearchKernel implements SearchKernel {
+
+    static final ScalarSearchKernel INSTANCE = new ScalarSearchKernel();
+
+    private ScalarSearchKernel() {}
+
+    @Override
+    public int indexOf(byte[] text, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (text[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
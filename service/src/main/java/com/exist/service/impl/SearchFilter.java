@@ -0,0 +1,257 @@
+package com.exist.service.impl;
+
+import com.exist.model.RowView;
+import com.exist.model.Table;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bloom filters over the character bigrams of every key and value, one per row and one per block of
+ * {@value #BLOCK_ROWS} rows. A term can only occur in a row whose filter holds all of the term's
+ * bigrams, so a search can skip whole blocks and rows without looking at their cells. Filters never
+ * give false negatives; with {@value #BITS_PER_GRAM} bits per bigram a missing bigram slips through
+ * about 3% of the time.
+ *
+ * <p>The filters are built on the first search and then kept current by the service reporting the
+ * rows it changes. Any change the service did not report (through {@link Table#getModCount()}) makes
+ * the next search rebuild them.
+ */
+final class SearchFilter {
+
+    static final int BLOCK_ROWS = 64;
+
+    private static final int BITS_PER_GRAM = 8;
+    private static final int HASHES = 3;
+    private static final int MIN_FILTER_BITS = 64;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long[][] rowFilters = new long[0][];
+    private long[][] blockFilters = new long[0][];
+    private int rowCount;
+
+    // Table and change count the filters were last brought up to date with
+    private Table indexed;
+    private long modCount;
+
+    /**
+     * Rebuilds the filters unless they already describe exactly this table.
+     */
+    void sync(Table table) {
+        if (indexed == table && modCount == table.getModCount()) {
+            return;
+        }
+        rowFilters = new long[table.size()][];
+        blockFilters = new long[blockCount(table.size())][];
+        rowCount = 0;
+        index(table, 0, table.size());
+        indexed = table;
+        modCount = table.getModCount();
+    }
+
+    /**
+     * Returns whether the filters already describe exactly this table, so they can be used without
+     * rebuilding them.
+     */
+    boolean isCurrent(Table table) {
+        return indexed == table && modCount == table.getModCount();
+    }
+
+    /**
+     * Updates the filters for rows {@code [from, to)} after the service changed or appended them with
+     * one table change per row. Does nothing until the filters are built.
+     */
+    void rowsChanged(Table table, int from, int to) {
+        if (indexed != table) {
+            return;
+        }
+        if (from > rowCount || modCount + (to - from) != table.getModCount()) {
+            // Something else changed the table as well
+            indexed = null;
+            return;
+        }
+        index(table, from, to);
+        modCount = table.getModCount();
+    }
+
+    /**
+     * Writes the filters for an {@link IndexSidecar}; they must be current.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            IndexSidecar.writeLongs(out, rowFilters[i], rowFilters[i].length);
+        }
+        for (int block = 0; block < blockCount(rowCount); block++) {
+            IndexSidecar.writeLongs(out, blockFilters[block], blockFilters[block].length);
+        }
+    }
+
+    /**
+     * Replaces the filters with ones written by {@link #write} for exactly this table.
+     */
+    void read(Table table, ByteBuffer in) {
+        int rows = in.getInt();
+        if (rows != table.size()) {
+            throw new IllegalArgumentException("Filters are for " + rows + " rows, not " + table.size() + ".");
+        }
+        long[][] readRows = new long[rows][];
+        long[][] readBlocks = new long[blockCount(rows)][];
+        for (int i = 0; i < rows; i++) {
+            readRows[i] = IndexSidecar.readLongs(in);
+        }
+        for (int block = 0; block < readBlocks.length; block++) {
+            readBlocks[block] = IndexSidecar.readLongs(in);
+        }
+
+        rowFilters = readRows;
+        blockFilters = readBlocks;
+        rowCount = rows;
+        indexed = table;
+        modCount = table.getModCount();
+    }
+
+    /**
+     * Returns the hashes of the term's bigrams, or null when the term is too short to filter on.
+     */
+    long[] probe(String term) {
+        if (term.length() < 2) {
+            return null;
+        }
+        long[] hashes = new long[term.length() - 1];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash(term.charAt(i), term.charAt(i + 1));
+        }
+        return hashes;
+    }
+
+    /**
+     * Returns the first row from {@code rowIndex} on that may contain the probed term, or the row count
+     * when there is none. With a null probe every row is a candidate.
+     */
+    int nextCandidate(int rowIndex, long[] probe) {
+        if (probe == null) {
+            return rowIndex;
+        }
+        while (rowIndex < rowCount) {
+            if (rowIndex % BLOCK_ROWS == 0 && !mayContain(blockFilters[rowIndex / BLOCK_ROWS], probe)) {
+                rowIndex += BLOCK_ROWS;
+                continue;
+            }
+            if (mayContain(rowFilters[rowIndex], probe)) {
+                return rowIndex;
+            }
+            rowIndex++;
+        }
+        return rowCount;
+    }
+
+    /**
+     * Returns whether the row may contain the probed term; checks the same filters as {@link #nextCandidate}.
+     */
+    boolean isCandidate(int rowIndex, long[] probe) {
+        return probe == null
+                || mayContain(blockFilters[rowIndex / BLOCK_ROWS], probe) && mayContain(rowFilters[rowIndex], probe);
+    }
+
+    /**
+     * Returns how many rows {@link #nextCandidate} would return for the probe. Only the filters are
+     * checked, which is far cheaper than reading the rows.
+     */
+    int countCandidates(long[] probe) {
+        int rows = 0;
+        for (int row = nextCandidate(0, probe); row < rowCount; row = nextCandidate(row + 1, probe)) {
+            rows++;
+        }
+        return rows;
+    }
+
+    private void index(Table table, int from, int to) {
+        if (to > rowFilters.length) {
+            rowFilters = Arrays.copyOf(rowFilters, Math.max(to, rowFilters.length * 2));
+            blockFilters = Arrays.copyOf(blockFilters, blockCount(rowFilters.length));
+        }
+        rowCount = Math.max(rowCount, to);
+
+        RowView view = null;
+        for (int i = from; i < to; i++) {
+            view = table.view(i, view);
+            long[] filter = newFilter(gramCount(view));
+            addGrams(filter, view);
+            rowFilters[i] = filter;
+        }
+
+        for (int block = from / BLOCK_ROWS; block * BLOCK_ROWS < to; block++) {
+            int blockEnd = Math.min(rowCount, (block + 1) * BLOCK_ROWS);
+            int grams = 0;
+            for (int i = block * BLOCK_ROWS; i < blockEnd; i++) {
+                grams += gramCount(table.view(i, view));
+            }
+            long[] filter = newFilter(grams);
+            for (int i = block * BLOCK_ROWS; i < blockEnd; i++) {
+                addGrams(filter, table.view(i, view));
+            }
+            blockFilters[block] = filter;
+        }
+    }
+
+    private static int blockCount(int rows) {
+        return (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+    }
+
+    private static int gramCount(RowView view) {
+        int grams = 0;
+        for (int column = 0; column < view.size(); column++) {
+            grams += Math.max(view.keyLength(column) - 1, 0) + Math.max(view.valueLength(column) - 1, 0);
+        }
+        return grams;
+    }
+
+    private static long[] newFilter(int grams) {
+        int bits = Math.max(MIN_FILTER_BITS, grams * BITS_PER_GRAM);
+        return new long[Integer.highestOneBit(bits - 1) >>> 5];
+    }
+
+    private static void addGrams(long[] filter, RowView view) {
+        for (int column = 0; column < view.size(); column++) {
+            for (int i = 0; i + 1 < view.keyLength(column); i++) {
+                add(filter, hash(view.keyChar(column, i), view.keyChar(column, i + 1)));
+            }
+            for (int i = 0; i + 1 < view.valueLength(column); i++) {
+                add(filter, hash(view.valueChar(column, i), view.valueChar(column, i + 1)));
+            }
+        }
+    }
+
+    private static long hash(char first, char second) {
+        return ((long) first << 16 | second) * GOLDEN_GAMMA;
+    }
+
+    private static void add(long[] filter, long hash) {
+        int mask = filter.length * Long.SIZE - 1;
+        int h1 = (int) (hash >>> 32);
+        int h2 = (int) hash | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            filter[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean mayContain(long[] filter, long[] probe) {
+        int mask = filter.length * Long.SIZE - 1;
+        for (long hash : probe) {
+            int h1 = (int) (hash >>> 32);
+            int h2 = (int) hash | 1;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                if ((filter[bit >>> 6] & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.exist.service.impl;
+
+import com.exist.model.Table;
+import com.exist.service.query.Condition;
+import com.exist.service.query.QueryIndex;
+
+import java.util.BitSet;
+
+/**
+ * Lets queries use the bigram {@link SearchFilter}: any text condition on two or more characters
+ * needs all of the text's bigrams in the row.
+ */
+final class SearchFilterIndex implements QueryIndex {
+
+    private final SearchFilter filter;
+    private final Table table;
+
+    SearchFilterIndex(SearchFilter filter, Table table) {
+        this.filter = filter;
+        this.table = table;
+    }
+
+    @Override
+    public String name() {
+        return "bigram";
+    }
+
+    @Override
+    public long estimateRows(Condition condition) {
+        if (!(condition instanceof Condition.Match match)) {
+            return -1;
+        }
+        long[] probe = filter.probe(match.text);
+        if (probe == null) {
+            return -1;
+        }
+        filter.sync(table);
+        return filter.countCandidates(probe);
+    }
+
+    @Override
+    public BitSet candidateRows(Condition condition) {
+        long[] probe = filter.probe(((Condition.Match) condition).text);
+        filter.sync(table);
+        BitSet rows = new BitSet(table.size());
+        for (int row = filter.nextCandidate(0, probe); row < table.size(); row = filter.nextCandidate(row + 1, probe)) {
+            rows.set(row);
+        }
+        return rows;
+    }
+
+}
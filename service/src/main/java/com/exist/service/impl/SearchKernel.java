@@ -0,0 +1,51 @@
+package com.exist.service.impl;
+
+/**
+ * Finds candidate match positions in ASCII row bytes during a search. The vector kernel compares a
+ * whole vector of bytes with the term's first byte at once; it needs the {@code jdk.incubator.vector}
+ * module ({@code --add-modules jdk.incubator.vector}) and otherwise the scalar kernel is used.
+ */
+public interface SearchKernel {
+
+    /**
+     * Returns the first index in {@code [from, to)} holding {@code value}, or -1 when there is none.
+     */
+    int indexOf(byte[] text, int from, int to, byte value);
+
+    static SearchKernel scalar() {
+        return ScalarSearchKernel.INSTANCE;
+    }
+
+    /**
+     * Returns the vector kernel, or throws {@link UnsupportedOperationException} when the
+     * {@code jdk.incubator.vector} module is not available.
+     */
+    static SearchKernel vector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            throw new UnsupportedOperationException("Run with --add-modules jdk.incubator.vector to use the vector kernel");
+        }
+        try {
+            // Loaded reflectively so this interface never links against the incubator module
+            return (SearchKernel) Class.forName("com.exist.service.impl.VectorSearchKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new UnsupportedOperationException("Vector kernel unavailable: " + e, e);
+        }
+    }
+
+    /**
+     * Returns the vector kernel when it is available and not turned off with
+     * {@code -Dtable.vectorSearch=false}, otherwise the scalar kernel.
+     */
+    static SearchKernel best() {
+        if (!Boolean.parseBoolean(System.getProperty("table.vectorSearch", "true"))) {
+            return scalar();
+        }
+        try {
+            return vector();
+        } catch (UnsupportedOperationException e) {
+            return scalar();
+        }
+    }
+
+}
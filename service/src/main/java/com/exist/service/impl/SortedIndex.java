@@ -0,0 +1,349 @@
+package com.exist.service.impl;
+
+import com.exist.model.RowView;
+import com.exist.model.Table;
+import com.exist.service.query.CellPosition;
+import com.exist.service.query.Condition;
+import com.exist.service.query.QueryIndex;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.LongConsumer;
+
+/**
+ * Every key (or every value) of the table in {@link String#compareTo} order, next to its
+ * {@link CellPosition}, so prefix and range conditions are answered with two binary searches plus
+ * the size of the output. The full build collects and sorts the entries on the fork-join pool.
+ *
+ * <p>Changes do not touch the sorted arrays: removed entries are marked in a bit set and added
+ * entries go to a small sorted pending buffer, which is merged into the arrays once it holds more
+ * than about the square root of their size. That keeps both an insert and its share of the next
+ * merge at O(sqrt(n)).
+ */
+final class SortedIndex extends CellIndex {
+
+    private static final int CHUNK_ROWS = 4096;
+    private static final int MIN_PENDING = 1024;
+
+    // Entries sorted by text, then position
+    private String[] texts = new String[0];
+    private long[] positions = new long[0];
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    // Entries added since the last merge, in the same order
+    private String[] pendingTexts = new String[16];
+    private long[] pendingPositions = new long[16];
+    private int pendingCount;
+
+    private static final class Entry implements Comparable<Entry> {
+
+        final String text;
+        final long position;
+
+        Entry(String text, long position) {
+            this.text = text;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return compare(text, position, other.text, other.position);
+        }
+    }
+
+    SortedIndex(Condition.Field field) {
+        super(field);
+    }
+
+    /**
+     * Calls {@code action} with the position of every cell whose text lies in the range, in no
+     * particular order.
+     */
+    void forEachInRange(Table table, Condition.TextRange range, LongConsumer action) {
+        sync(table);
+        int from = lowerIndex(texts, positions, texts.length, range);
+        int to = upperIndex(texts, positions, texts.length, range);
+        for (int i = deleted.nextClearBit(from); i < to; i = deleted.nextClearBit(i + 1)) {
+            action.accept(positions[i]);
+        }
+        int pendingTo = upperIndex(pendingTexts, pendingPositions, pendingCount, range);
+        for (int i = lowerIndex(pendingTexts, pendingPositions, pendingCount, range); i < pendingTo; i++) {
+            action.accept(pendingPositions[i]);
+        }
+    }
+
+    /**
+     * Returns at least the number of cells whose text lies in the range; removed entries that are not
+     * merged away yet are counted too.
+     */
+    long countInRange(Table table, Condition.TextRange range) {
+        sync(table);
+        return upperIndex(texts, positions, texts.length, range) - lowerIndex(texts, positions, texts.length, range)
+                + upperIndex(pendingTexts, pendingPositions, pendingCount, range)
+                - lowerIndex(pendingTexts, pendingPositions, pendingCount, range);
+    }
+
+    /**
+     * Returns a query index answering range, prefix and equality conditions on this index's field.
+     */
+    QueryIndex forQueries(Table table) {
+        return new QueryIndex() {
+            @Override
+            public String name() {
+                return "sorted-" + field().name().toLowerCase();
+            }
+
+            @Override
+            public long estimateRows(Condition condition) {
+                Condition.TextRange range = asRange(condition);
+                return range == null ? -1 : countInRange(table, range);
+            }
+
+            @Override
+            public BitSet candidateRows(Condition condition) {
+                BitSet rows = new BitSet(table.size());
+                forEachInRange(table, asRange(condition), position -> rows.set(CellPosition.row(position)));
+                return rows;
+            }
+        };
+    }
+
+    private Condition.TextRange asRange(Condition condition) {
+        if (condition instanceof Condition.TextRange range && range.field == field()) {
+            return range;
+        }
+        if (condition instanceof Condition.Match match && match.field == field()) {
+            return switch (match.operator) {
+                case EQUALS -> new Condition.TextRange(match.field, match.text, true, match.text, true);
+                case STARTS_WITH -> Condition.TextRange.prefix(match.field, match.text);
+                case CONTAINS -> null;
+            };
+        }
+        return null;
+    }
+
+    @Override
+    void build(Table table) {
+        int rowCount = table.size();
+        List<ForkJoinTask<Entry[]>> chunks = new ArrayList<>();
+        for (int from = 0; from < rowCount; from += CHUNK_ROWS) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(rowCount, from + CHUNK_ROWS);
+            chunks.add(ForkJoinPool.commonPool().submit(() -> collect(table, chunkStart, chunkEnd)));
+        }
+
+        List<Entry[]> collected = new ArrayList<>();
+        int total = 0;
+        for (ForkJoinTask<Entry[]> chunk : chunks) {
+            Entry[] entries = chunk.join();
+            collected.add(entries);
+            total += entries.length;
+        }
+        Entry[] entries = new Entry[total];
+        int offset = 0;
+        for (Entry[] chunk : collected) {
+            System.arraycopy(chunk, 0, entries, offset, chunk.length);
+            offset += chunk.length;
+        }
+        Arrays.parallelSort(entries);
+
+        clear();
+        texts = new String[total];
+        positions = new long[total];
+        for (int i = 0; i < total; i++) {
+            texts[i] = entries[i].text;
+            positions[i] = entries[i].position;
+        }
+    }
+
+    /**
+     * Adds many rows at once by sorting their entries and merging them in, rather than inserting
+     * them into the pending buffer one by one.
+     */
+    @Override
+    void addRows(Table table, int from, int to) {
+        Entry[] entries = collect(table, from, to);
+        if (entries.length <= MIN_PENDING) {
+            for (Entry entry : entries) {
+                add(entry.text, entry.position);
+            }
+            return;
+        }
+        merge();
+        Arrays.parallelSort(entries);
+        pendingTexts = new String[entries.length];
+        pendingPositions = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            pendingTexts[i] = entries[i].text;
+            pendingPositions[i] = entries[i].position;
+        }
+        pendingCount = entries.length;
+        merge();
+    }
+
+    private Entry[] collect(Table table, int from, int to) {
+        List<Entry> entries = new ArrayList<>();
+        RowView view = null;
+        for (int row = from; row < to; row++) {
+            view = table.view(row, view);
+            for (int column = 0; column < view.size(); column++) {
+                entries.add(new Entry(text(view, column), CellPosition.of(row, column)));
+            }
+        }
+        return entries.toArray(new Entry[0]);
+    }
+
+    @Override
+    void clear() {
+        texts = new String[0];
+        positions = new long[0];
+        deleted.clear();
+        deletedCount = 0;
+        pendingTexts = new String[16];
+        pendingPositions = new long[16];
+        pendingCount = 0;
+    }
+
+    /**
+     * Writes the entries in order, after merging the pending ones in.
+     */
+    @Override
+    void write(DataOutputStream out) throws IOException {
+        merge();
+        out.writeInt(texts.length);
+        for (String text : texts) {
+            IndexSidecar.writeString(out, text);
+        }
+        IndexSidecar.writeLongs(out, positions, positions.length);
+    }
+
+    @Override
+    void readEntries(ByteBuffer in) {
+        String[] readTexts = new String[in.getInt()];
+        for (int i = 0; i < readTexts.length; i++) {
+            readTexts[i] = IndexSidecar.readString(in);
+        }
+        long[] readPositions = IndexSidecar.readLongs(in);
+        if (readPositions.length != readTexts.length) {
+            throw new IllegalArgumentException("Sorted index has " + readTexts.length + " texts but "
+                    + readPositions.length + " positions.");
+        }
+        clear();
+        texts = readTexts;
+        positions = readPositions;
+    }
+
+    @Override
+    void add(String text, long position) {
+        int index = lowerBound(pendingTexts, pendingPositions, pendingCount, text, position);
+        if (pendingCount == pendingTexts.length) {
+            pendingTexts = Arrays.copyOf(pendingTexts, pendingCount * 2);
+            pendingPositions = Arrays.copyOf(pendingPositions, pendingCount * 2);
+        }
+        System.arraycopy(pendingTexts, index, pendingTexts, index + 1, pendingCount - index);
+        System.arraycopy(pendingPositions, index, pendingPositions, index + 1, pendingCount - index);
+        pendingTexts[index] = text;
+        pendingPositions[index] = position;
+        pendingCount++;
+
+        if (pendingCount > Math.max(MIN_PENDING, (int) Math.sqrt(texts.length))) {
+            merge();
+        }
+    }
+
+    @Override
+    void remove(String text, long position) {
+        int index = lowerBound(texts, positions, texts.length, text, position);
+        if (index < texts.length && positions[index] == position && texts[index].equals(text) && !deleted.get(index)) {
+            deleted.set(index);
+            deletedCount++;
+            if (deletedCount > Math.max(MIN_PENDING, texts.length / 4)) {
+                merge();
+            }
+            return;
+        }
+        index = lowerBound(pendingTexts, pendingPositions, pendingCount, text, position);
+        if (index < pendingCount && pendingPositions[index] == position && pendingTexts[index].equals(text)) {
+            System.arraycopy(pendingTexts, index + 1, pendingTexts, index, pendingCount - index - 1);
+            System.arraycopy(pendingPositions, index + 1, pendingPositions, index, pendingCount - index - 1);
+            pendingTexts[--pendingCount] = null;
+        }
+    }
+
+    /**
+     * Merges the pending entries into the sorted arrays and drops the removed ones.
+     */
+    private void merge() {
+        int size = texts.length - deletedCount + pendingCount;
+        String[] mergedTexts = new String[size];
+        long[] mergedPositions = new long[size];
+        int base = deleted.nextClearBit(0);
+        int pending = 0;
+        for (int i = 0; i < size; i++) {
+            boolean fromBase = pending == pendingCount || base < texts.length
+                    && compare(texts[base], positions[base], pendingTexts[pending], pendingPositions[pending]) < 0;
+            if (fromBase) {
+                mergedTexts[i] = texts[base];
+                mergedPositions[i] = positions[base];
+                base = deleted.nextClearBit(base + 1);
+            } else {
+                mergedTexts[i] = pendingTexts[pending];
+                mergedPositions[i] = pendingPositions[pending++];
+            }
+        }
+
+        texts = mergedTexts;
+        positions = mergedPositions;
+        deleted.clear();
+        deletedCount = 0;
+        Arrays.fill(pendingTexts, 0, pendingCount, null);
+        pendingCount = 0;
+    }
+
+    private static int lowerIndex(String[] texts, long[] positions, int count, Condition.TextRange range) {
+        if (range.lower == null) {
+            return 0;
+        }
+        return lowerBound(texts, positions, count, range.lower, range.lowerInclusive ? Long.MIN_VALUE : Long.MAX_VALUE);
+    }
+
+    private static int upperIndex(String[] texts, long[] positions, int count, Condition.TextRange range) {
+        if (range.upper == null) {
+            return count;
+        }
+        int upper = lowerBound(texts, positions, count, range.upper, range.upperInclusive ? Long.MAX_VALUE : Long.MIN_VALUE);
+        // An empty range, such as a lower bound past the upper one
+        return Math.max(upper, lowerIndex(texts, positions, count, range));
+    }
+
+    /**
+     * Returns the first index whose entry is not before {@code (text, position)}.
+     */
+    private static int lowerBound(String[] texts, long[] positions, int count, String text, long position) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(texts[middle], positions[middle], text, position) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(String text, long position, String otherText, long otherPosition) {
+        int c = text.compareTo(otherText);
+        return c != 0 ? c : Long.compare(position, otherPosition);
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.exist.service.impl;
+
+import com.exist.model.RowView;
+import com.exist.model.Table;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes tables for other tools: CSV with one {@code row,col,key,value} record per cell, quoted as
+ * in RFC 4180, and JSON Lines with one object per row. Rows are encoded in parallel chunks and
+ * streamed to the file through {@link ParallelChunkWriter}.
+ */
+final class TableExporter {
+
+    static final String CSV_HEADER = "row,col,key,value\r\n";
+
+    private static final int CHUNK_ROWS = 2048;
+
+    enum Format { CSV, JSON_LINES }
+
+    private TableExporter() {}
+
+    static void export(Table table, FileChannel channel, Format format) throws IOException {
+        long position = 0;
+        if (format == Format.CSV) {
+            position = ParallelChunkWriter.writeFully(channel, 0, CSV_HEADER.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        long end = ParallelChunkWriter.write(channel, position, table.size(), CHUNK_ROWS,
+                (from, to) -> encode(table, from, to, format));
+        channel.truncate(end);
+    }
+
+    private static byte[] encode(Table table, int from, int to, Format format) {
+        StringBuilder out = new StringBuilder();
+        RowView view = null;
+        for (int row = from; row < to; row++) {
+            view = table.view(row, view);
+            if (format == Format.CSV) {
+                appendCsvRow(out, row, view);
+            } else {
+                appendJsonRow(out, row, view);
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendCsvRow(StringBuilder out, int row, RowView view) {
+        for (int column = 0; column < view.size(); column++) {
+            out.append(row).append(',').append(column).append(',');
+            appendCsvField(out, view.key(column));
+            out.append(',');
+            appendCsvField(out, view.value(column));
+            out.append("\r\n");
+        }
+    }
+
+    private static void appendCsvField(StringBuilder out, String field) {
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.append(field);
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static void appendJsonRow(StringBuilder out, int row, RowView view) {
+        out.append("{\"row\":").append(row).append(",\"cells\":[");
+        for (int column = 0; column < view.size(); column++) {
+            if (column > 0) {
+                out.append(',');
+            }
+            out.append("{\"key\":");
+            appendJsonString(out, view.key(column));
+            out.append(",\"value\":");
+            appendJsonString(out, view.value(column));
+            out.append('}');
+        }
+        out.append("]}\n");
+    }
+
+    private static void appendJsonString(StringBuilder out, String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.exist.service.impl;
+
+import com.exist.service.FileService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Watches a table file for writes by other processes. Every line of the last seen content is
+ * remembered by its hash, so after a change only the lines whose hash was not seen before are
+ * parsed again, wherever they moved to.
+ * The result is handed over as a {@link RowDelta}; nothing here touches the table itself.
+ */
+final class TableFileWatcher implements Closeable {
+
+    private static final long DEBOUNCE_MILLIS = 100;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path file;
+    private final FileService fileService;
+    private final Consumer<RowDelta> listener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    private long[] lineHashes;
+    // Row index produced by each line of the last seen content, or -1 for a line without cells
+    private int[] lineRows;
+    private int rowCount;
+
+    TableFileWatcher(Path file, FileService fileService, Consumer<RowDelta> listener) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.fileService = fileService;
+        this.listener = listener;
+
+        this.lineHashes = new long[0];
+        this.lineRows = new int[0];
+        diff(read());
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        this.thread = new Thread(this::watch, "table-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = containsFile(key);
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+
+                // Writers often touch the file several times in a row; wait for them to settle
+                Thread.sleep(DEBOUNCE_MILLIS);
+                WatchKey next;
+                while ((next = watchService.poll()) != null) {
+                    next.pollEvents();
+                    next.reset();
+                }
+
+                // Under the lock, so a resync never overtakes a change found before it
+                synchronized (this) {
+                    RowDelta delta = diff(read());
+                    if (delta != null) {
+                        listener.accept(delta);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Watching stopped
+        } catch (IOException e) {
+            System.out.println("Stopped watching " + file + ": " + e.getMessage());
+        }
+    }
+
+    private boolean containsFile(WatchKey key) {
+        boolean found = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (file.getFileName().equals(event.context())) {
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Takes the file as it is now as the last seen content, without reporting a change, after this
+     * process wrote it itself. Changes found before the resync have already reached the listener.
+     */
+    synchronized void resync() throws IOException {
+        diff(read());
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares the new content with the last seen one and returns the changes, or null when every
+     * line hashes the same as before. A line that hashes the same as a line of the last seen content,
+     * at any position, keeps that line's row, so rows shifted by lines inserted or removed above them
+     * are not parsed again. Of several equal lines, the earliest one not yet kept is taken.
+     */
+    private RowDelta diff(String content) {
+        long[] oldHashes = lineHashes;
+        int[] oldRows = lineRows;
+        int oldRowCount = rowCount;
+
+        Lines lines = new Lines(content);
+        if (lines.count == oldHashes.length
+                && Arrays.equals(lines.hashes, 0, lines.count, oldHashes, 0, oldHashes.length)) {
+            return null;
+        }
+
+        int[] rows = new int[lines.count];
+        int[] sourceRows = new int[lines.count];
+        List<List<String>> parsedRows = new ArrayList<>();
+        int rowIndex = 0;
+        boolean shifted = false;
+        SeenLines seen = new SeenLines(oldHashes);
+
+        for (int line = 0; line < lines.count; line++) {
+            int oldLine = seen.take(lines.hashes[line]);
+            if (oldLine >= 0) {
+                int oldRow = oldRows[oldLine];
+                if (oldRow < 0) {
+                    rows[line] = -1;
+                    continue;
+                }
+                sourceRows[rowIndex] = oldRow;
+                parsedRows.add(null);
+                shifted |= oldRow != rowIndex;
+            } else {
+                List<String> row = fileService.parseLineToRow(content.substring(lines.starts[line], lines.ends[line]));
+                if (row.isEmpty()) {
+                    rows[line] = -1;
+                    continue;
+                }
+                sourceRows[rowIndex] = -1;
+                parsedRows.add(row);
+            }
+            rows[line] = rowIndex++;
+        }
+
+        this.lineHashes = Arrays.copyOf(lines.hashes, lines.count);
+        this.lineRows = rows;
+        this.rowCount = rowIndex;
+        return new RowDelta(oldRowCount, Arrays.copyOf(sourceRows, rowIndex), parsedRows, shifted);
+    }
+
+    private static long hash(String content, int start, int end) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ content.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Line boundaries and line hashes of one version of the file.
+     */
+    private static final class Lines {
+
+        private long[] hashes = new long[16];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int count;
+
+        Lines(String content) {
+            int lineStart = 0;
+            while (lineStart < content.length()) {
+                int lineEnd = content.indexOf('\n', lineStart);
+                if (lineEnd == -1) {
+                    lineEnd = content.length();
+                }
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, count * 2);
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                hashes[count] = hash(content, lineStart, lineEnd);
+                starts[count] = lineStart;
+                ends[count] = lineEnd;
+                count++;
+                lineStart = lineEnd + 1;
+            }
+        }
+    }
+
+    /**
+     * The lines of the last seen content by hash, each of which can be taken once, earliest first.
+     * Lines with the same hash are chained in order; an open-addressing table holds the first line of
+     * each chain not taken yet.
+     */
+    private static final class SeenLines {
+
+        private static final int EMPTY_SLOT = -2;
+
+        private final long[] slotHashes;
+        // Per slot: first line not taken yet, -1 once all are taken, or EMPTY_SLOT
+        private final int[] slotLines;
+        // Per line: next line with the same hash, or -1
+        private final int[] nextLines;
+
+        SeenLines(long[] hashes) {
+            int capacity = Integer.highestOneBit(Math.max(2, hashes.length) * 2 - 1) * 2;
+            slotHashes = new long[capacity];
+            slotLines = new int[capacity];
+            Arrays.fill(slotLines, EMPTY_SLOT);
+            nextLines = new int[hashes.length];
+            for (int line = hashes.length - 1; line >= 0; line--) {
+                int slot = slot(hashes[line]);
+                slotHashes[slot] = hashes[line];
+                nextLines[line] = slotLines[slot] == EMPTY_SLOT ? -1 : slotLines[slot];
+                slotLines[slot] = line;
+            }
+        }
+
+        /**
+         * Returns the earliest line with the hash not taken yet and takes it, or -1 when there is none.
+         */
+        int take(long hash) {
+            int slot = slot(hash);
+            int line = slotLines[slot];
+            if (line < 0) {
+                return -1;
+            }
+            slotLines[slot] = nextLines[line];
+            return line;
+        }
+
+        private int slot(long hash) {
+            int mask = slotHashes.length - 1;
+            int slot = (int) (hash ^ hash >>> 32) & mask;
+            while (slotLines[slot] != EMPTY_SLOT && slotHashes[slot] != hash) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    /**
+     * Row-level difference between two versions of the file. For every new row, {@code sourceRows}
+     * holds the index of the unchanged old row to keep, or -1 when {@code parsedRows} has the
+     * freshly parsed row.
+     */
+    static final class RowDelta {
+
+        final int oldRowCount;
+        final int[] sourceRows;
+        final List<List<String>> parsedRows;
+        final boolean shifted;
+
+        RowDelta(int oldRowCount, int[] sourceRows, List<List<String>> parsedRows, boolean shifted) {
+            this.oldRowCount = oldRowCount;
+            this.sourceRows = sourceRows;
+            this.parsedRows = parsedRows;
+            this.shifted = shifted;
+        }
+    }
+
+}
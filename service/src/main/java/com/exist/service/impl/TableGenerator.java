@@ -0,0 +1,61 @@
+package com.exist.service.impl;
+
+import com.exist.utilities.AsciiUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a table of random {@code (key,value)} cells straight to a file, in the same format as a
+ * saved table, without building the table first. Rows are generated in parallel chunks of about
+ * {@value #CHUNK_BYTES} bytes and streamed through {@link ParallelChunkWriter}, so memory use does
+ * not depend on the size of the table.
+ */
+final class TableGenerator {
+
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private TableGenerator() {}
+
+    static void generate(FileChannel channel, int rows, int columns, int fieldLength) throws IOException {
+        if (rows < 0 || columns <= 0 || fieldLength <= 0) {
+            throw new IllegalArgumentException("Dimensions must be greater than 0.");
+        }
+        long lineBytes = (long) columns * (2L * fieldLength + 4) - 1;
+        if (lineBytes >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Rows of " + columns + " cells are too long.");
+        }
+        int chunkRows = (int) Math.max(1, Math.min(rows, CHUNK_BYTES / (lineBytes + 1)));
+
+        long end = ParallelChunkWriter.write(channel, 0, rows, chunkRows,
+                (from, to) -> encode(from, to, columns, fieldLength, (int) lineBytes));
+        channel.truncate(end);
+    }
+
+    /**
+     * Generates rows {@code [from, to)}, each but the first preceded by a newline.
+     */
+    private static byte[] encode(int from, int to, int columns, int fieldLength, int lineBytes) {
+        byte[] out = new byte[(to - from) * (lineBytes + 1) - (from == 0 ? 1 : 0)];
+        int position = 0;
+        for (int row = from; row < to; row++) {
+            if (row > 0) {
+                out[position++] = '\n';
+            }
+            for (int column = 0; column < columns; column++) {
+                if (column > 0) {
+                    out[position++] = ' ';
+                }
+                out[position++] = '(';
+                AsciiUtils.fillRandomAscii(out, position, fieldLength);
+                position += fieldLength;
+                out[position++] = ',';
+                AsciiUtils.fillRandomAscii(out, position, fieldLength);
+                position += fieldLength;
+                out[position++] = ')';
+            }
+        }
+        return out;
+    }
+
+}
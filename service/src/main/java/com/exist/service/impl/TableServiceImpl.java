@@ -1,21 +1,100 @@
 package com.exist.service.impl;
 
+import com.exist.model.RowLayout;
+import com.exist.model.RowView;
 import com.exist.model.Table;
 import com.exist.service.FileService;
 import com.exist.service.TableService;
+import com.exist.service.event.TableEvent;
+import com.exist.service.event.TableEventListener;
+import com.exist.service.event.TableEventRing;
+import com.exist.service.query.CellPosition;
+import com.exist.service.query.Condition;
+import com.exist.service.query.QueryIndex;
+import com.exist.service.query.QueryParser;
+import com.exist.service.query.QueryPlan;
+import com.exist.service.query.QueryPlanner;
 import com.exist.utilities.AsciiUtils;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.UnaryOperator;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 
 public class TableServiceImpl implements TableService {
 
-    private Table table = new Table();
+    private Table table = new Table(Table.CellStorage.PACKED);
     private FileService fileService;
 
     private static final int ASCII_STRING_LENGTH = 3;
+    private static final int LOAD_BATCH_ROWS = 4096;
+    private static final int MAX_PENDING_BATCHES = 16;
+    private static final long GENERATED_HEAP_BUDGET = 64L * 1024 * 1024;
+    private static final List<List<String>> END_OF_LOAD = new ArrayList<>();
+
+    // Rows parsed by the background loader, handed over in batches and added to the table by the caller's thread
+    private BlockingQueue<List<List<String>>> pendingRows;
+    private Thread loaderThread;
+    private volatile IOException loadError;
+
+    // Changes written to the file by other processes, applied by the caller's thread before the next operation
+    private final Queue<TableFileWatcher.RowDelta> externalChanges = new ConcurrentLinkedQueue<>();
+    private TableFileWatcher watcher;
+    private String watchedFileName;
+
+    // Bigram Bloom filters that let searches skip rows; built on the first search
+    private final SearchFilter searchFilter = new SearchFilter();
+    private boolean searchFilterEnabled = true;
+
+    // Cell positions by key for exact key lookups, and keys and values in sorted order for prefix and
+    // range queries; each is built on first use
+    private final KeyIndex keyIndex = new KeyIndex();
+    private final SortedIndex sortedKeys = new SortedIndex(Condition.Field.KEY);
+    private final SortedIndex sortedValues = new SortedIndex(Condition.Field.VALUE);
+    private final List<CellIndex> cellIndexes = List.of(keyIndex, sortedKeys, sortedValues);
+
+    // Sidecar of the loaded file's indexes: checked by a background thread, then read in and rewritten as
+    // more indexes get built by the caller's thread, as long as the table is still exactly what was loaded
+    private volatile SidecarCheck pendingSidecar;
+    private SidecarCheck attachedSidecar;
+    private int savedIndexes;
+    // The last sidecar write started; the next one waits for it so writes land in order
+    private Thread sidecarWriter;
+    // The file to save the table to once it has finished loading; see saveTable
+    private String deferredSave;
+    // Change count of a progressively loaded table while only the loader has changed it, else -1
+    private String loadingFileName;
+    private FileTime loadingModified;
+    private long loadingModCount = -1;
+    // Positions of the rows of a file being loaded progressively, filled in by the loader
+    private RowLayout loadingLayout;
+
+    // Finds match candidates in row bytes; null searches through RowView one cell at a time
+    private SearchKernel searchKernel = SearchKernel.best();
+
+    // The last sampled estimate, kept so that it can be refined with more rows
+    private OccurrenceSampler estimate;
+    private Random sampleSeeds = new Random();
+
+    private long heapBudget;
+    // Shares string cells with other tables; applied to every table this service holds
+    private UnaryOperator<String> cellInterner;
+
+    // Changes made to the table, for subscribers; events are only created while someone subscribes
+    private final TableEventRing events = new TableEventRing();
 
     public TableServiceImpl() {
         this.fileService = new FileServiceImpl();
@@ -25,68 +104,650 @@ public class TableServiceImpl implements TableService {
         this.fileService = fileService;
     }
 
+    /**
+     * Loads the whole table, then reads its indexes from the file's sidecar once a background check
+     * finds it fresh, or saves them there as they are built; see {@link IndexSidecar}.
+     */
     @Override
     public void loadTableFromFile(String fileName) throws IOException {
-        String content = fileService.loadFileContent(fileName);
-        this.table = fileService.parseFileToTable(content);
+        stopWatching();
+        cancelLoading();
+        FileTime modified = lastModified(fileName);
+        replaceTable(fileService.loadTable(fileName));
+        attachSidecar(fileName, modified);
     }
 
+    /**
+     * Replaces the table with {@code row,col,key,value} records read from a CSV or TSV file.
+     */
     @Override
-    public String searchValue(String searchTerm) {
-        boolean found = false;
-        StringBuilder result = new StringBuilder();
+    public void importTable(String fileName, char delimiter) throws IOException {
+        stopWatching();
+        cancelLoading();
+        replaceTable(fileService.importDelimited(fileName, delimiter));
+    }
 
-        for (int rowIndex = 0; rowIndex < table.size(); rowIndex++) {
-            for (int colIndex = 0; colIndex < table.get(rowIndex).size(); colIndex++) {
-                String cellValue = table.get(rowIndex).get(colIndex);
-                String key = extractKey(cellValue);
-                String value = extractValue(cellValue);
-
-                int keyOccurrences = countOccurrences(key, searchTerm);
-                int valueOccurrences = countOccurrences(value, searchTerm);
-
-                if (keyOccurrences > 0 && valueOccurrences > 0) {
-                    result.append(keyOccurrences)
-                            .append(" <")
-                            .append(searchTerm)
-                            .append("> at key and ")
-                            .append(valueOccurrences)
-                            .append(" <")
-                            .append(searchTerm)
-                            .append("> at value of [")
-                            .append(rowIndex)
-                            .append(",")
-                            .append(colIndex)
-                            .append("]\n");
-                    found = true;
-                    continue;
+    /**
+     * Reads the first {@code initialRows} rows before returning and keeps loading the rest on a
+     * background thread. Operations only wait for the rows they touch; see {@link #awaitRows(int)}.
+     * A file on disk is read as bytes and cut into rows by the ASCII parser, recording the position
+     * of every row, so once the whole file is loaded the first save can patch rows in place, as after
+     * {@link #loadTableFromFile}. Lines from the first non-ASCII byte on are decoded and parsed as text.
+     */
+    @Override
+    public void loadTableProgressively(String fileName, int initialRows) throws IOException {
+        loadProgressively(fileName, initialRows, heapBudget);
+    }
+
+    /**
+     * Loads like {@link #loadTableProgressively}, holding the table's rows to {@code budget} bytes of
+     * heap; 0 for no limit.
+     */
+    private void loadProgressively(String fileName, int initialRows, long budget) throws IOException {
+        stopWatching();
+        cancelLoading();
+        FileTime modified = lastModified(fileName);
+        RowReader reader = modified == null
+                ? new RowReader(fileService.openFileReader(fileName), fileService::parseLineToRow)
+                : new RowReader(Files.newInputStream(Path.of(fileName)), fileService::parseLineToRow);
+        Table loaded = new Table(Table.CellStorage.PACKED, budget);
+        RowLayout layout = modified == null ? null : new RowLayout(new File(fileName).getAbsolutePath(), 16);
+
+        try {
+            while (loaded.size() < initialRows && reader.readRow(loaded::add, layout)) {
+                // Rows are added as they are read
+            }
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        loaded.markClean();
+
+        replaceTable(loaded);
+        loadingFileName = fileName;
+        loadingModified = modified;
+        loadingModCount = table.getModCount();
+        loadingLayout = layout;
+        // With a heap budget the loader may only run a few batches ahead of the table
+        BlockingQueue<List<List<String>>> queue = budget > 0
+                ? new LinkedBlockingQueue<>(MAX_PENDING_BATCHES) : new LinkedBlockingQueue<>();
+        this.pendingRows = queue;
+        this.loadError = null;
+        Path file = Path.of(fileName);
+        this.loaderThread = new Thread(() -> loadRemainingRows(reader, queue, layout, file, modified), "table-loader");
+        loaderThread.setDaemon(true);
+        loaderThread.start();
+    }
+
+    private void loadRemainingRows(RowReader reader, BlockingQueue<List<List<String>>> queue,
+                                   RowLayout layout, Path file, FileTime modified) {
+        try (reader) {
+            List<List<String>> batch = new ArrayList<>();
+            while (!Thread.currentThread().isInterrupted() && reader.readRow(batch::add, layout)) {
+                if (batch.size() == LOAD_BATCH_ROWS) {
+                    queue.put(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                queue.put(batch);
+            }
+            // Slots only match a file read wholly as ASCII bytes and left alone while loading
+            if (layout != null && reader.hasByteOffsets() && Files.size(file) == reader.length()
+                    && modified.equals(Files.getLastModifiedTime(file))) {
+                layout.stamp(reader.length(), modified.toMillis());
+            }
+        } catch (IOException e) {
+            loadError = e;
+        } catch (InterruptedException e) {
+            // Loading was cancelled
+            return;
+        }
+
+        try {
+            queue.put(END_OF_LOAD);
+        } catch (InterruptedException e) {
+            // Loading was cancelled
+        }
+    }
+
+    /**
+     * Blocks until at least {@code count} rows are loaded or the whole file has been read, and returns
+     * the number of rows now in the table. Changes picked up in watch mode are applied first.
+     */
+    @Override
+    public int awaitRows(int count) {
+        applyExternalChanges();
+        applyReadySidecar();
+        while (pendingRows != null && table.size() < count) {
+            List<List<String>> batch;
+            try {
+                batch = pendingRows.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (batch == END_OF_LOAD) {
+                pendingRows = null;
+                loaderThread = null;
+                if (loadError != null) {
+                    throw new UncheckedIOException("Error loading rows: " + loadError.getMessage(), loadError);
+                }
+                // A layout the loader could not stamp never matches the file, so the first save rewrites it
+                if (loadingLayout != null) {
+                    table.setLayout(loadingLayout);
+                }
+                if (table.getModCount() == loadingModCount) {
+                    attachSidecar(loadingFileName, loadingModified);
+                }
+                if (deferredSave != null) {
+                    saveDeferred();
+                }
+                break;
+            }
+            boolean untouched = table.getModCount() == loadingModCount;
+            int firstRow = table.size();
+            for (List<String> row : batch) {
+                table.add(row);
+                if (events.hasSubscribers()) {
+                    events.publish(new TableEvent.RowAppended(table.size() - 1, row));
+                }
+            }
+            table.markClean(firstRow, table.size());
+            rowsChanged(firstRow, table.size());
+            loadingModCount = untouched ? table.getModCount() : -1;
+        }
+        return table.size();
+    }
+
+    /**
+     * Limits the heap held by table rows to about {@code heapBudget} bytes, spilling cold rows to disk;
+     * 0 removes the limit. Applies to the current table and every table loaded afterwards.
+     */
+    @Override
+    public void setHeapBudget(long heapBudget) {
+        this.heapBudget = heapBudget;
+        fileService.setHeapBudget(heapBudget);
+        table.setHeapBudget(heapBudget);
+    }
+
+    /**
+     * Passes the string cells of the current table, and of every table loaded afterwards, through
+     * {@code cellInterner}; see {@link Table#setInterner}.
+     */
+    public void setCellInterner(UnaryOperator<String> cellInterner) {
+        this.cellInterner = cellInterner;
+        table.setInterner(cellInterner);
+    }
+
+    /**
+     * Returns the estimated heap held by the table's rows, without waiting for rows still being loaded.
+     */
+    public long getHeapBytes() {
+        return table.estimateHeapBytes();
+    }
+
+    @Override
+    public int getColumnCount(int rowIndex) {
+        awaitRows(rowIndex + 1);
+        return table.get(rowIndex).size();
+    }
+
+    private void awaitAllRows() {
+        awaitRows(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Watches the file for writes by other processes and swaps in the rows that changed, keeping rows
+     * changed here and not saved yet. The table is expected to match the file when watching starts;
+     * saves made through {@link #saveTable} are not reported back as changes.
+     */
+    @Override
+    public void startWatching(String fileName) throws IOException {
+        stopWatching();
+        awaitAllRows();
+        externalChanges.clear();
+        watcher = new TableFileWatcher(Path.of(fileName), fileService, externalChanges::add);
+        watchedFileName = fileName;
+    }
+
+    @Override
+    public void stopWatching() {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            System.out.println("Error stopping file watch: " + e.getMessage());
+        }
+        watcher = null;
+        watchedFileName = null;
+        externalChanges.clear();
+    }
+
+    @Override
+    public boolean isWatching() {
+        return watcher != null;
+    }
+
+    private void applyExternalChanges() {
+        TableFileWatcher.RowDelta delta;
+        while ((delta = externalChanges.poll()) != null) {
+            applyExternalChange(delta);
+        }
+    }
+
+    /**
+     * Applies one change found in the watched file row by row. Rows changed here and not saved yet
+     * are never overwritten: they move with their row when lines are inserted or removed above them,
+     * and when the file changed or removed the same row, the row here is kept and the conflict is
+     * reported. Rows added here stay after the file's last row. Rows taken from the file are clean.
+     */
+    private void applyExternalChange(TableFileWatcher.RowDelta delta) {
+        int localRows = table.size();
+        // Rows of the table that were in the file when the watcher last saw it
+        int fileRows = Math.min(delta.oldRowCount, localRows);
+        BitSet kept = new BitSet(fileRows);
+        for (int source : delta.sourceRows) {
+            if (source >= 0 && source < fileRows) {
+                kept.set(source);
+            }
+        }
+
+        // Per row of the result: the row of the table it comes from, or -1 - i for the file's row i
+        int[] sources = new int[delta.sourceRows.length + localRows];
+        int count = 0;
+        List<Integer> conflicts = new ArrayList<>();
+        for (int i = 0; i < delta.sourceRows.length; i++) {
+            int source = delta.sourceRows[i];
+            if (source >= localRows) {
+                // Removed here and not saved yet
+                continue;
+            }
+            if (source < 0 && i < fileRows && !kept.get(i) && table.isDirty(i)) {
+                // Replaced in the file and changed here
+                source = i;
+                kept.set(i);
+                conflicts.add(i);
+            }
+            sources[count++] = source >= 0 ? source : -1 - i;
+        }
+        for (int i = 0; i < localRows; i++) {
+            if (i >= fileRows || (!kept.get(i) && table.isDirty(i))) {
+                if (i < fileRows) {
+                    // Removed from the file and changed here
+                    conflicts.add(i);
                 }
+                sources[count++] = i;
+            }
+        }
+
+        boolean moved = false;
+        for (int i = 0; i < count; i++) {
+            moved |= sources[i] >= 0 && sources[i] != i;
+        }
+        List<List<String>> localCopy = new ArrayList<>();
+        BitSet dirtyCopy = new BitSet();
+        for (int i = 0; moved && i < localRows; i++) {
+            localCopy.add(table.get(i));
+            if (table.isDirty(i)) {
+                dirtyCopy.set(i);
+            }
+        }
+
+        int changedRows = 0;
+        for (int i = 0; i < count; i++) {
+            int source = sources[i];
+            if (source == i) {
+                continue;
+            }
+            List<String> row = source < 0 ? delta.parsedRows.get(-1 - source) : localCopy.get(source);
+            if (i >= table.size()) {
+                table.add(row);
+                changedRows++;
+            } else if (!row.equals(table.get(i))) {
+                table.setRow(i, row);
+                changedRows++;
+            }
+            if (source >= 0 && dirtyCopy.get(source)) {
+                table.markDirty(i);
+            } else {
+                table.markClean(i, i + 1);
+            }
+        }
+        if (count < table.size()) {
+            changedRows += table.size() - count;
+            table.truncate(count);
+        }
 
-                if (keyOccurrences > 0) {
-                    result.append(keyOccurrences)
-                            .append(" <")
-                            .append(searchTerm)
-                            .append("> at key of [")
-                            .append(rowIndex)
-                            .append(",")
-                            .append(colIndex)
-                            .append("]\n");
-                    found = true;
-                    continue;
+        if (changedRows > 0) {
+            tableReplaced();
+            System.out.println("Reloaded " + changedRows + " changed row(s) from " + watchedFileName);
+        }
+        if (!conflicts.isEmpty()) {
+            System.out.println("Kept unsaved changes to row(s) " + conflicts + " also changed in " + watchedFileName);
+        }
+    }
+
+    private void cancelLoading() {
+        if (loaderThread != null) {
+            loaderThread.interrupt();
+        }
+        loaderThread = null;
+        pendingRows = null;
+        loadingModCount = -1;
+        loadingLayout = null;
+
+        pendingSidecar = null;
+        attachedSidecar = null;
+        deferredSave = null;
+    }
+
+    /**
+     * Returns when the file was last modified, or null when it is not a file on disk, such as the
+     * bundled default resource.
+     */
+    private static FileTime lastModified(String fileName) {
+        try {
+            Path file = Path.of(fileName);
+            return Files.isRegularFile(file) ? Files.getLastModifiedTime(file) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts checking the sidecar of the file the table was just loaded from, which was last modified
+     * at {@code modified} before loading began. The check only reads files; the table itself is only
+     * ever touched by the caller's thread.
+     */
+    private void attachSidecar(String fileName, FileTime modified) {
+        if (modified == null) {
+            return;
+        }
+        SidecarCheck check = new SidecarCheck(table, Path.of(fileName), modified);
+        pendingSidecar = check;
+        Thread thread = new Thread(check, "index-sidecar");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Takes over the sidecar once the background check is done, unless the table changed or was
+     * replaced since it was loaded. A fresh sidecar's indexes are read in; a missing or stale one is
+     * rewritten by {@link #persistIndexes()} once indexes are built.
+     */
+    private void applyReadySidecar() {
+        SidecarCheck check = pendingSidecar;
+        if (check == null || !check.isDone()) {
+            return;
+        }
+        pendingSidecar = null;
+        if (!check.isCurrent(table) || check.sidecar == null) {
+            return;
+        }
+        attachedSidecar = check;
+        savedIndexes = check.fresh && check.sidecar.read(table, searchFilterEnabled ? searchFilter : null, cellIndexes)
+                ? builtIndexes() : 0;
+    }
+
+    /**
+     * Rewrites the attached sidecar when the table has built indexes the sidecar does not hold yet,
+     * so that the next load reads them. Only the snapshot of the indexes is taken here; the write
+     * happens in the background. Drops the sidecar once the table has changed.
+     */
+    private void persistIndexes() {
+        SidecarCheck attached = attachedSidecar;
+        if (attached == null) {
+            return;
+        }
+        if (!attached.isCurrent(table)) {
+            attachedSidecar = null;
+            return;
+        }
+        int built = builtIndexes();
+        if ((built & ~savedIndexes) == 0) {
+            return;
+        }
+        savedIndexes = built;
+        writeSidecar(attached.file, attached.sidecar, attached.modified,
+                IndexSidecar.sections(table, searchFilterEnabled ? searchFilter : null, cellIndexes));
+    }
+
+    /**
+     * Writes {@code sections} to the sidecar of {@code file} on a background thread, after any write
+     * started before it. {@code sidecar} is null when the file still has to be checksummed there. The
+     * write is dropped when the file was modified since {@code modified}, as the indexes may not match
+     * it then; a failed write only means the next load builds the indexes again.
+     */
+    private void writeSidecar(Path file, IndexSidecar sidecar, FileTime modified, byte[] sections) {
+        Thread previous = sidecarWriter;
+        int rowCount = table.size();
+        Thread writer = new Thread(() -> {
+            try {
+                if (previous != null) {
+                    previous.join();
                 }
+                IndexSidecar target = sidecar != null ? sidecar : IndexSidecar.of(file);
+                if (modified.equals(Files.getLastModifiedTime(file))) {
+                    target.write(sections, rowCount);
+                }
+            } catch (IOException | RuntimeException e) {
+                // The indexes stay in memory; the next load builds them again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "index-sidecar-writer");
+        // Not a daemon, so a write still running when the application exits is finished
+        writer.start();
+        sidecarWriter = writer;
+    }
 
-                if (valueOccurrences > 0) {
-                    result.append(valueOccurrences)
-                            .append(" <")
-                            .append(searchTerm)
-                            .append("> at value of [")
-                            .append(rowIndex)
-                            .append(",")
-                            .append(colIndex)
-                            .append("]\n");
-                    found = true;
+    /**
+     * Returns a bit for each index current for the table: the search filters first, then each cell
+     * index in order.
+     */
+    private int builtIndexes() {
+        int built = searchFilterEnabled && searchFilter.isCurrent(table) ? 1 : 0;
+        for (int i = 0; i < cellIndexes.size(); i++) {
+            if (cellIndexes.get(i).isCurrent(table)) {
+                built |= 1 << (i + 1);
+            }
+        }
+        return built;
+    }
+
+    /**
+     * A table just loaded from a file and the check of that file's sidecar, run on a background thread.
+     * The outcome is kept with the table it was made for, so a check still running for a table that was
+     * since replaced can never be applied to its replacement.
+     */
+    private static final class SidecarCheck implements Runnable {
+
+        private final Table table;
+        private final long modCount;
+        private final Path file;
+        private final FileTime modified;
+        private final int rowCount;
+
+        // Written by the check's thread before done, read by the caller's thread after it
+        private IndexSidecar sidecar;
+        private boolean fresh;
+        private volatile boolean done;
+
+        SidecarCheck(Table table, Path file, FileTime modified) {
+            this.table = table;
+            this.modCount = table.getModCount();
+            this.file = file;
+            this.modified = modified;
+            this.rowCount = table.size();
+        }
 
+        @Override
+        public void run() {
+            try {
+                IndexSidecar checked = IndexSidecar.of(file);
+                // A file changed since it was loaded may not match the table
+                if (modified.equals(Files.getLastModifiedTime(file))) {
+                    fresh = checked.isFresh(rowCount);
+                    sidecar = checked;
                 }
+            } catch (IOException | RuntimeException e) {
+                // Indexes are built on first use and not saved
+            } finally {
+                done = true;
+            }
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        boolean isCurrent(Table table) {
+            return table == this.table && table.getModCount() == modCount;
+        }
+
+    }
+
+    /**
+     * Saves the indexes already built for the table next to {@code fileName}, which must hold exactly
+     * the table, so that loading the file again reads them instead of building them. The indexes are
+     * copied here and written in the background, reusing the checksum taken when the table was loaded
+     * while neither the table nor the file has changed since. Does nothing when no index is built, the
+     * table is still loading or the file is not on disk.
+     */
+    public void saveIndexes(String fileName) {
+        if (pendingRows != null) {
+            // Indexes of part of the file would not match it
+            return;
+        }
+        FileTime modified = lastModified(fileName);
+        if (builtIndexes() == 0 || modified == null) {
+            return;
+        }
+        Path file = Path.of(fileName);
+        SidecarCheck attached = attachedSidecar;
+        IndexSidecar sidecar = attached != null && attached.isCurrent(table) && attached.file.equals(file)
+                && attached.modified.equals(modified) ? attached.sidecar : null;
+        writeSidecar(file, sidecar, modified,
+                IndexSidecar.sections(table, searchFilterEnabled ? searchFilter : null, cellIndexes));
+    }
+
+    /**
+     * Returns whether rows were changed or added since the table was read from or last written to its
+     * file. Does not wait for rows still loading, which are unchanged.
+     */
+    public boolean hasUnsavedChanges() {
+        return table.hasDirtyRows();
+    }
+
+    /**
+     * Returns whether the search filters, when enabled, and every cell index are built for the table
+     * as it is now, so searches and queries will not need to build them.
+     */
+    public boolean areIndexesCurrent() {
+        awaitAllRows();
+        for (CellIndex index : cellIndexes) {
+            if (!index.isCurrent(table)) {
+                return false;
+            }
+        }
+        return !searchFilterEnabled || searchFilter.isCurrent(table);
+    }
+
+    /**
+     * Turns the Bloom filters used by {@link #searchValue(String)} on or off. They are on by default.
+     */
+    @Override
+    public void setSearchFilterEnabled(boolean enabled) {
+        this.searchFilterEnabled = enabled;
+    }
+
+    /**
+     * Sets the kernel used to scan rows during a search, or null to count matches cell by cell.
+     */
+    public void setSearchKernel(SearchKernel searchKernel) {
+        this.searchKernel = searchKernel;
+    }
+
+    /**
+     * Seeds the choice of rows sampled by {@link #estimateSearch}, so that estimates can be repeated.
+     */
+    public void setSampleSeed(long seed) {
+        this.sampleSeeds = new Random(seed);
+    }
+
+    /**
+     * Estimates how many times {@code searchTerm} occurs in keys and in values, as {@link #searchValue}
+     * would count them, from {@code sampleRows} rows chosen at random, with 95% confidence intervals.
+     * Stratified sampling spreads the rows evenly over blocks of the table. The Bloom filters are used
+     * to skip rows only when a search has already built them.
+     */
+    @Override
+    public String estimateSearch(String searchTerm, int sampleRows, boolean stratified) {
+        if (sampleRows <= 0) {
+            throw new IllegalArgumentException("Sample size must be positive.");
+        }
+        awaitAllRows();
+        if (table.size() == 0) {
+            estimate = null;
+            return "No occurrences found in the table\n";
+        }
+        SearchFilter filter = searchFilterEnabled && searchFilter.isCurrent(table) ? searchFilter : null;
+        estimate = new OccurrenceSampler(table, searchTerm, stratified, sampleRows, searchKernel, filter,
+                sampleSeeds.nextLong());
+        estimate.sample(sampleRows);
+        return estimate.describe();
+    }
+
+    /**
+     * Samples {@code moreRows} more rows for the last estimate and describes the refined one; with
+     * {@link Integer#MAX_VALUE}, every remaining row is read and the counts are exact.
+     */
+    @Override
+    public String refineEstimate(int moreRows) {
+        if (moreRows <= 0) {
+            throw new IllegalArgumentException("Sample size must be positive.");
+        }
+        awaitAllRows();
+        if (estimate == null) {
+            return "No estimate to refine.\n";
+        }
+        if (!estimate.isCurrent(table)) {
+            estimate = null;
+            return "The table changed since the estimate; estimate again.\n";
+        }
+        estimate.sample(moreRows);
+        return estimate.describe();
+    }
+
+    @Override
+    public String searchValue(String searchTerm) {
+        awaitAllRows();
+        boolean found = false;
+        StringBuilder result = new StringBuilder();
+
+        long[] probe = null;
+        if (searchFilterEnabled) {
+            searchFilter.sync(table);
+            persistIndexes();
+            probe = searchFilter.probe(searchTerm);
+        }
+
+        byte[] asciiTerm = RowScanner.asciiTerm(searchTerm);
+        RowScanner scanner = searchKernel == null || asciiTerm == null ? null : new RowScanner(searchKernel);
+        RowView view = null;
+
+        for (int rowIndex = searchFilter.nextCandidate(0, probe); rowIndex < table.size();
+                rowIndex = searchFilter.nextCandidate(rowIndex + 1, probe)) {
+            view = table.view(rowIndex, view);
+            boolean scanned = scanner != null && scanner.scan(view, asciiTerm);
+            for (int colIndex = 0; colIndex < view.size(); colIndex++) {
+                int keyOccurrences = scanned ? scanner.keyCount(colIndex) : view.countInKey(colIndex, searchTerm);
+                int valueOccurrences = scanned ? scanner.valueCount(colIndex) : view.countInValue(colIndex, searchTerm);
+                found |= appendOccurrences(result, searchTerm, keyOccurrences, valueOccurrences, rowIndex, colIndex);
             }
         }
 
@@ -96,20 +757,171 @@ public class TableServiceImpl implements TableService {
         return result.toString();
     }
 
-    private int countOccurrences(String text, String searchTerm) {
-        int count = 0;
-        int index = 0;
-        while ((index = text.indexOf(searchTerm, index)) != -1) {
-            count++;
-            index++;
+    /**
+     * Searches for many terms in one pass over the table, with an Aho-Corasick automaton over all of
+     * them, rather than one pass per term. Returns, for each distinct term in order, a
+     * {@code === term ===} line followed by what {@link #searchValue} returns for the term.
+     */
+    @Override
+    public String searchValues(List<String> searchTerms) {
+        awaitAllRows();
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(searchTerms));
+        TermAutomaton automaton = new TermAutomaton(terms);
+        StringBuilder[] results = new StringBuilder[terms.size()];
+        for (int term = 0; term < results.length; term++) {
+            results[term] = new StringBuilder();
         }
-        return count;
+
+        int[] counts = new int[2 * terms.size()];
+        int[] touched = new int[terms.size()];
+        RowView view = null;
+        for (int rowIndex = 0; rowIndex < table.size(); rowIndex++) {
+            view = table.view(rowIndex, view);
+            for (int colIndex = 0; colIndex < view.size(); colIndex++) {
+                int touchedCount = automaton.count(view, colIndex, true, counts, touched, 0);
+                touchedCount = automaton.count(view, colIndex, false, counts, touched, touchedCount);
+                for (int i = 0; i < touchedCount; i++) {
+                    int term = touched[i];
+                    appendOccurrences(results[term], terms.get(term), counts[2 * term], counts[2 * term + 1],
+                            rowIndex, colIndex);
+                    counts[2 * term] = 0;
+                    counts[2 * term + 1] = 0;
+                }
+            }
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (int term = 0; term < results.length; term++) {
+            result.append("=== ").append(terms.get(term)).append(" ===\n");
+            if (results[term].length() == 0) {
+                result.append("No occurrences found in the table\n");
+            } else {
+                result.append(results[term]);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Appends the line {@link #searchValue} reports for a cell, if the term occurs in it at all, and
+     * returns whether it did.
+     */
+    private static boolean appendOccurrences(StringBuilder result, String searchTerm, int keyOccurrences,
+                                             int valueOccurrences, int rowIndex, int colIndex) {
+        if (keyOccurrences > 0 && valueOccurrences > 0) {
+            result.append(keyOccurrences)
+                    .append(" <")
+                    .append(searchTerm)
+                    .append("> at key and ")
+                    .append(valueOccurrences)
+                    .append(" <")
+                    .append(searchTerm)
+                    .append("> at value of [")
+                    .append(rowIndex)
+                    .append(",")
+                    .append(colIndex)
+                    .append("]\n");
+            return true;
+        }
+
+        if (keyOccurrences > 0) {
+            result.append(keyOccurrences)
+                    .append(" <")
+                    .append(searchTerm)
+                    .append("> at key of [")
+                    .append(rowIndex)
+                    .append(",")
+                    .append(colIndex)
+                    .append("]\n");
+            return true;
+        }
+
+        if (valueOccurrences > 0) {
+            result.append(valueOccurrences)
+                    .append(" <")
+                    .append(searchTerm)
+                    .append("> at value of [")
+                    .append(rowIndex)
+                    .append(",")
+                    .append(colIndex)
+                    .append("]\n");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the {@link CellPosition} of every cell whose key is exactly {@code key}, in row then
+     * column order, from a hash index rather than a scan of the table.
+     */
+    @Override
+    public long[] findByKey(String key) {
+        awaitAllRows();
+        long[] positions = keyIndex.find(table, key);
+        persistIndexes();
+        return positions;
+    }
+
+    /**
+     * Lists every cell matching the query, one {@code [row,col] (key,value)} line each. See
+     * {@link QueryParser} for the syntax; invalid queries throw {@link IllegalArgumentException}.
+     */
+    @Override
+    public String query(String query) {
+        awaitAllRows();
+        long[] positions = planQuery(query).execute(table);
+        persistIndexes();
+        if (positions.length == 0) {
+            return "No cells match the query\n";
+        }
+
+        StringBuilder result = new StringBuilder();
+        RowView view = null;
+        for (long position : positions) {
+            int rowIndex = CellPosition.row(position);
+            int colIndex = CellPosition.column(position);
+            view = table.view(rowIndex, view);
+            result.append("[")
+                    .append(rowIndex)
+                    .append(",")
+                    .append(colIndex)
+                    .append("] ")
+                    .append(view.cell(colIndex))
+                    .append("\n");
+        }
+        result.append(positions.length).append(" matching cell(s)\n");
+        return result.toString();
+    }
+
+    /**
+     * Describes how {@link #query(String)} would run the query.
+     */
+    @Override
+    public String explainQuery(String query) {
+        awaitAllRows();
+        String plan = planQuery(query).describe() + "\n";
+        persistIndexes();
+        return plan;
+    }
+
+    private QueryPlan planQuery(String query) {
+        Condition condition = QueryParser.parse(query);
+        List<QueryIndex> indexes = new ArrayList<>();
+        indexes.add(keyIndex.forQueries(table));
+        indexes.add(sortedKeys.forQueries(table));
+        indexes.add(sortedValues.forQueries(table));
+        if (searchFilterEnabled) {
+            indexes.add(new SearchFilterIndex(searchFilter, table));
+        }
+        return new QueryPlanner(indexes).plan(condition, table.size());
     }
 
     @Override
     public void editCell(int rowIndex, int columnIndex, String newKey, String newValue, String editMode) {
-        String oldKey = extractKey(table.get(rowIndex).get(columnIndex));
-        String oldValue = extractValue(table.get(rowIndex).get(columnIndex));
+        awaitRows(rowIndex + 1);
+        RowView view = table.view(rowIndex, null);
+        String oldKey = view.key(columnIndex);
+        String oldValue = view.value(columnIndex);
 
         String finalKey = oldKey;
         String finalValue = oldValue;
@@ -131,13 +943,21 @@ public class TableServiceImpl implements TableService {
         }
 
         String newCell = "(" + finalKey + "," + finalValue + ")";
-        table.get(rowIndex).set(columnIndex, newCell);
+        table.set(rowIndex, columnIndex, newCell);
+        searchFilter.rowsChanged(table, rowIndex, rowIndex + 1);
+        keyIndex.cellChanged(table, rowIndex, columnIndex, oldKey);
+        sortedKeys.cellChanged(table, rowIndex, columnIndex, oldKey);
+        sortedValues.cellChanged(table, rowIndex, columnIndex, oldValue);
+        if (events.hasSubscribers()) {
+            events.publish(new TableEvent.CellEdited(rowIndex, columnIndex, oldKey, oldValue, finalKey, finalValue));
+        }
 
-        printTable();
+        printTable(table.size());
     }
 
     @Override
     public void addRow(int numberOfCells) {
+        awaitAllRows();
         List<String> newRow = new ArrayList<>();
 
         for (int i = 0; i < numberOfCells; i++) {
@@ -147,11 +967,17 @@ public class TableServiceImpl implements TableService {
         }
 
         table.add(newRow);
+        rowsChanged(table.size() - 1, table.size());
+        if (events.hasSubscribers()) {
+            events.publish(new TableEvent.RowAppended(table.size() - 1, newRow));
+        }
         printTable();
     }
 
     @Override
     public void sortRow(int rowIndex, String order) {
+        awaitRows(rowIndex + 1);
+        cellIndexes.forEach(index -> index.rowChanging(table, rowIndex));
         switch (order.toLowerCase()) {
             case "asc":
                 Collections.sort(table.get(rowIndex));
@@ -160,13 +986,20 @@ public class TableServiceImpl implements TableService {
                 Collections.sort(table.get(rowIndex), Collections.reverseOrder());
                 break;
         }
+        table.markDirty(rowIndex);
+        rowsChanged(rowIndex, rowIndex + 1);
+        if (events.hasSubscribers()) {
+            events.publish(new TableEvent.RowSorted(rowIndex, order.toLowerCase(), table.get(rowIndex)));
+        }
 
-        printTable();
+        printTable(table.size());
     }
 
     @Override
     public void resetTable(int rows, int columns) {
+        cancelLoading();
         table.clear();
+        cellIndexes.forEach(index -> index.tableCleared(table));
 
         for (int i = 0; i < rows; i++) {
             List<String> row = new ArrayList<>();
@@ -177,36 +1010,161 @@ public class TableServiceImpl implements TableService {
             }
             table.add(row);
         }
+        for (CellIndex index : cellIndexes) {
+            index.rowsChanged(table, 0, table.size());
+        }
+        if (searchFilterEnabled) {
+            searchFilter.sync(table);
+        }
+        tableReplaced();
 
         printTable();
     }
 
+    /**
+     * Replaces the table, like {@link #resetTable}, with random rows written straight to
+     * {@code fileName} in parallel chunks, so even a huge table is created in constant memory. The file
+     * is then loaded progressively; see {@link #loadTableProgressively}. Without a heap budget, a file
+     * larger than {@value #GENERATED_HEAP_BUDGET} bytes is loaded under a budget of that size, so the
+     * rows beyond it are paged to disk instead of all being held in memory.
+     */
     @Override
-    public void printTable() {
-        System.out.println("\n--- Table Contents ---");
-        for (int i = 0; i < table.size(); i++) {
-            for (int j = 0; j < table.get(i).size(); j++) {
-                if (j > 0) System.out.print(" ");
-                System.out.print(table.get(i).get(j));
-            }
-            System.out.println();
+    public void generateTable(String fileName, int rows, int columns, int initialRows) throws IOException {
+        stopWatching();
+        cancelLoading();
+        fileService.generateFile(fileName, rows, columns, ASCII_STRING_LENGTH);
+
+        long budget = heapBudget;
+        if (budget == 0 && Files.size(Path.of(fileName)) > GENERATED_HEAP_BUDGET) {
+            budget = GENERATED_HEAP_BUDGET;
+            System.out.println("The generated table is larger than " + (GENERATED_HEAP_BUDGET >> 20)
+                    + " MB, so rows beyond that are paged to disk.");
+        }
+        loadProgressively(fileName, initialRows, budget);
+    }
+
+    /**
+     * Saves the table to {@code fileName}. While rows are still loading, only notes the file and
+     * returns at once: the table is saved when the last rows arrive, so an edit made during a long load
+     * never waits for it. Saving again before then only replaces the file noted.
+     */
+    @Override
+    public void saveTable(String fileName) throws IOException {
+        if (pendingRows != null) {
+            deferredSave = fileName;
+            return;
+        }
+        deferredSave = null;
+        writeTable(fileName);
+    }
+
+    private void saveDeferred() {
+        String fileName = deferredSave;
+        deferredSave = null;
+        try {
+            writeTable(fileName);
+        } catch (IOException e) {
+            // The changes stay in memory and are saved again with the next change
+            System.out.println("Error saving " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the table to {@code fileName} after taking in the changes already found in the watched
+     * file, then has the watcher take the written file as seen, so it does not report the write back.
+     */
+    private void writeTable(String fileName) throws IOException {
+        applyExternalChanges();
+        fileService.saveFile(table, fileName);
+        if (watcher != null && fileName.equals(watchedFileName)) {
+            watcher.resync();
+            externalChanges.clear();
         }
     }
 
-    private String extractKey(String cellValue) {
-        String content = cellValue.substring(1, cellValue.length() - 1);
-        String[] parts = content.split(",", 2);
-        return parts[0];
+    /**
+     * Brings the search filter and the cell indexes up to date after the service changed or appended
+     * rows {@code [from, to)}.
+     */
+    private void rowsChanged(int from, int to) {
+        searchFilter.rowsChanged(table, from, to);
+        for (CellIndex index : cellIndexes) {
+            index.rowsChanged(table, from, to);
+        }
+    }
+
+    /**
+     * Makes {@code replacement} the table and clears the table it replaces, which deletes the page file
+     * that table spilled rows to under a heap budget.
+     */
+    private void replaceTable(Table replacement) {
+        Table replaced = table;
+        table = replacement;
+        if (replaced != replacement) {
+            replaced.clear();
+        }
+        tableReplaced();
     }
 
-    private String extractValue(String cellValue) {
-        String content = cellValue.substring(1, cellValue.length() - 1);
-        String[] parts = content.split(",", 2);
-        return parts[1];
+    /**
+     * Stops loading and watching and clears the table, deleting its page file. The service must not be
+     * used afterwards.
+     */
+    public void close() {
+        stopWatching();
+        cancelLoading();
+        table.clear();
+    }
+
+    private void tableReplaced() {
+        table.setInterner(cellInterner);
+        if (events.hasSubscribers()) {
+            events.publish(new TableEvent.TableReset(table.size()));
+        }
+    }
+
+    /**
+     * Delivers every change made to the table from now on to {@code listener}, on a thread of its own.
+     * A listener that falls too far behind loses events rather than slowing the table down.
+     */
+    @Override
+    public TableEventRing.Subscription subscribe(TableEventListener listener) {
+        return events.subscribe(listener);
+    }
+
+    @Override
+    public void printTable() {
+        awaitAllRows();
+        printRows(table.size());
+    }
+
+    /**
+     * Prints at most {@code maxRows} rows, waiting only until those rows are loaded.
+     */
+    @Override
+    public void printTable(int maxRows) {
+        int shown = Math.min(awaitRows(maxRows), maxRows);
+        printRows(shown);
+        if (pendingRows != null || table.size() > shown) {
+            System.out.println("... showing the first " + shown + " rows");
+        }
+    }
+
+    private void printRows(int count) {
+        System.out.println("\n--- Table Contents ---");
+        RowView view = null;
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            view = table.view(i, view);
+            line.setLength(0);
+            view.appendTo(line);
+            System.out.println(line);
+        }
     }
 
     @Override
     public Table getTable() {
+        awaitAllRows();
         return table;
     }
 
@@ -0,0 +1,195 @@
+package com.exist.service.impl;
+
+import com.exist.model.RowView;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a list of distinct search terms: one pass over a key or value counts
+ * the occurrences of every term in it, overlapping ones included, as {@link RowView#countInKey} would
+ * count them one term at a time. The pass takes time linear in the text plus the matches, however
+ * many terms there are.
+ *
+ * <p>Trie edges live in one open-addressing table keyed by node and character, with the root's ASCII
+ * edges also in a dense array since most transitions fall back to the root. A character with no edge
+ * follows failure links, each node's longest proper suffix that is also in the trie.
+ */
+final class TermAutomaton {
+
+    private static final int ROOT = 0;
+    private static final int ASCII = 128;
+    private static final long EMPTY_EDGE = -1;
+
+    // Term that is empty, counted once per position including the end, or -1
+    private int emptyTerm = -1;
+
+    // Per node: failure link, term ending there or -1, and the nearest failure ancestor ending a term or -1
+    private int[] fail;
+    private int[] termAt;
+    private int[] outputLink;
+    private int nodeCount = 1;
+
+    // Trie edges: (node << 16 | character) to child node
+    private long[] edgeKeys;
+    private int[] edgeNodes;
+    private final int[] rootAscii = new int[ASCII];
+
+    /**
+     * Builds the automaton; {@code terms} must not repeat, and a term's number is its index.
+     */
+    TermAutomaton(List<String> terms) {
+        int maxNodes = 1;
+        for (String term : terms) {
+            maxNodes += term.length();
+        }
+        termAt = new int[maxNodes];
+        Arrays.fill(termAt, -1);
+        int[] parent = new int[maxNodes];
+        char[] edgeChar = new char[maxNodes];
+        int[] depth = new int[maxNodes];
+        edgeKeys = new long[Integer.highestOneBit(Math.max(2, maxNodes) * 2 - 1) * 2];
+        Arrays.fill(edgeKeys, EMPTY_EDGE);
+        edgeNodes = new int[edgeKeys.length];
+
+        for (int term = 0; term < terms.size(); term++) {
+            String text = terms.get(term);
+            if (text.isEmpty()) {
+                emptyTerm = term;
+                continue;
+            }
+            int node = ROOT;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int child = edge(node, c);
+                if (child < 0) {
+                    child = nodeCount++;
+                    putEdge(node, c, child);
+                    parent[child] = node;
+                    edgeChar[child] = c;
+                    depth[child] = i + 1;
+                }
+                node = child;
+            }
+            termAt[node] = term;
+        }
+
+        Arrays.fill(rootAscii, ROOT);
+        for (char c = 0; c < ASCII; c++) {
+            int child = edge(ROOT, c);
+            if (child >= 0) {
+                rootAscii[c] = child;
+            }
+        }
+        linkFailures(parent, edgeChar, depth);
+    }
+
+    /**
+     * Sets the failure and output links, visiting nodes in order of depth so that every link points
+     * to a node already linked.
+     */
+    private void linkFailures(int[] parent, char[] edgeChar, int[] depth) {
+        fail = new int[nodeCount];
+        outputLink = new int[nodeCount];
+        outputLink[ROOT] = -1;
+
+        int maxDepth = 0;
+        for (int node = 1; node < nodeCount; node++) {
+            maxDepth = Math.max(maxDepth, depth[node]);
+        }
+        int[] firstAtDepth = new int[maxDepth + 2];
+        for (int node = 1; node < nodeCount; node++) {
+            firstAtDepth[depth[node] + 1]++;
+        }
+        for (int d = 1; d < firstAtDepth.length; d++) {
+            firstAtDepth[d] += firstAtDepth[d - 1];
+        }
+        int[] byDepth = new int[nodeCount];
+        for (int node = 1; node < nodeCount; node++) {
+            byDepth[firstAtDepth[depth[node]]++] = node;
+        }
+
+        for (int i = 0; i < nodeCount - 1; i++) {
+            int node = byDepth[i];
+            int link = parent[node] == ROOT ? ROOT : next(fail[parent[node]], edgeChar[node]);
+            fail[node] = link;
+            outputLink[node] = termAt[link] >= 0 ? link : outputLink[link];
+        }
+    }
+
+    /**
+     * Adds the occurrences of every term in the cell's key to {@code counts[2 * term]}, or in its value
+     * to {@code counts[2 * term + 1]}. Terms whose key and value counts were both 0 are appended to
+     * {@code touched} from {@code touchedCount} on; returns the new number of touched terms.
+     */
+    int count(RowView view, int column, boolean key, int[] counts, int[] touched, int touchedCount) {
+        int slot = key ? 0 : 1;
+        int length = key ? view.keyLength(column) : view.valueLength(column);
+        if (emptyTerm >= 0) {
+            touchedCount = add(emptyTerm, slot, length + 1, counts, touched, touchedCount);
+        }
+
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            char c = key ? view.keyChar(column, i) : view.valueChar(column, i);
+            state = next(state, c);
+            for (int node = termAt[state] >= 0 ? state : outputLink[state]; node >= 0; node = outputLink[node]) {
+                touchedCount = add(termAt[node], slot, 1, counts, touched, touchedCount);
+            }
+        }
+        return touchedCount;
+    }
+
+    private static int add(int term, int slot, int occurrences, int[] counts, int[] touched, int touchedCount) {
+        if (counts[2 * term] == 0 && counts[2 * term + 1] == 0) {
+            touched[touchedCount++] = term;
+        }
+        counts[2 * term + slot] += occurrences;
+        return touchedCount;
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            if (state == ROOT) {
+                if (c < ASCII) {
+                    return rootAscii[c];
+                }
+                int child = edge(ROOT, c);
+                return child < 0 ? ROOT : child;
+            }
+            int child = edge(state, c);
+            if (child >= 0) {
+                return child;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int edge(int node, char c) {
+        long key = (long) node << 16 | c;
+        int mask = edgeKeys.length - 1;
+        for (int slot = slot(key, mask); edgeKeys[slot] != EMPTY_EDGE; slot = (slot + 1) & mask) {
+            if (edgeKeys[slot] == key) {
+                return edgeNodes[slot];
+            }
+        }
+        return -1;
+    }
+
+    private void putEdge(int node, char c, int child) {
+        long key = (long) node << 16 | c;
+        int mask = edgeKeys.length - 1;
+        int slot = slot(key, mask);
+        while (edgeKeys[slot] != EMPTY_EDGE) {
+            slot = (slot + 1) & mask;
+        }
+        edgeKeys[slot] = key;
+        edgeNodes[slot] = child;
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.exist.service.impl;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Compares a full vector of bytes with the wanted byte per step and finishes the tail one byte at a
+ * time. Only instantiated through {@link SearchKernel#vector()}.
+ */
+final class VectorSearchKernel implements SearchKernel {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    VectorSearchKernel() {}
+
+    @Override
+    public int indexOf(byte[] text, int from, int to, byte value) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> matches = ByteVector.fromArray(SPECIES, text, i).eq(value);
+            if (matches.anyTrue()) {
+                return i + matches.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (text[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.exist.service.impl;
+
+import com.exist.service.FileService;
+import com.exist.service.TableService;
+import com.exist.service.WorkspaceService;
+import com.exist.utilities.StringPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps several tables open at once, each in a {@link TableServiceImpl} of its own, with one of them
+ * current. The string cells of every table go through one {@link StringPool}, so a cell repeated
+ * across related files is held once.
+ *
+ * <p>Open tables are kept in least-recently-used order. When opening or switching to a table brings
+ * their estimated heap over the memory cap, the least recently used tables are dropped until the rest
+ * fits, after saving those with unsaved changes; a table still loading is dropped without waiting for
+ * the rest of its file. Dropped tables stay in the workspace and are read back from disk when switched
+ * to again, along with the indexes they had built. The current table is never evicted.
+ */
+public class WorkspaceServiceImpl implements WorkspaceService {
+
+    private final FileService fileService;
+    private final StringPool stringPool = new StringPool();
+
+    // Tables in memory by file name, least recently used first
+    private final LinkedHashMap<String, TableServiceImpl> tables = new LinkedHashMap<>(16, 0.75f, true);
+    // Tables saved to their files under the memory cap, in the order they were evicted
+    private final Set<String> evicted = new LinkedHashSet<>();
+    private String currentFileName;
+
+    private long memoryCap;
+    private long heapBudget;
+
+    public WorkspaceServiceImpl() {
+        this(new FileServiceImpl());
+    }
+
+    public WorkspaceServiceImpl(FileService fileService) {
+        this.fileService = fileService;
+    }
+
+    /**
+     * Makes the table in {@code fileName} current and returns its service. A table that is not in
+     * memory is loaded progressively, returning once its first {@code initialRows} rows are read.
+     */
+    @Override
+    public TableService open(String fileName, int initialRows) throws IOException {
+        TableServiceImpl tableService = tables.get(fileName);
+        if (tableService == null) {
+            tableService = new TableServiceImpl(fileService);
+            tableService.setHeapBudget(heapBudget);
+            tableService.setCellInterner(stringPool);
+            tableService.loadTableProgressively(fileName, initialRows);
+            tables.put(fileName, tableService);
+            evicted.remove(fileName);
+        }
+        currentFileName = fileName;
+        enforceMemoryCap();
+        return tableService;
+    }
+
+    @Override
+    public TableService current() {
+        if (currentFileName == null) {
+            throw new IllegalStateException("No table is open.");
+        }
+        return tables.get(currentFileName);
+    }
+
+    @Override
+    public String currentFileName() {
+        return currentFileName;
+    }
+
+    /**
+     * Returns every file in the workspace: the tables in memory, most recently used first, followed by
+     * the evicted ones, most recently evicted first.
+     */
+    @Override
+    public List<String> getFileNames() {
+        List<String> resident = new ArrayList<>(tables.keySet());
+        Collections.reverse(resident);
+        List<String> onDisk = new ArrayList<>(evicted);
+        Collections.reverse(onDisk);
+        resident.addAll(onDisk);
+        return resident;
+    }
+
+    @Override
+    public boolean isResident(String fileName) {
+        return tables.containsKey(fileName);
+    }
+
+    /**
+     * Saves the table to its file when it has unsaved changes and removes it from the workspace. When
+     * it was the current table, the most recently used table in memory becomes current.
+     */
+    @Override
+    public void close(String fileName) throws IOException {
+        TableServiceImpl tableService = tables.get(fileName);
+        if (tableService != null) {
+            save(fileName, tableService);
+            tables.remove(fileName);
+            tableService.close();
+        }
+        evicted.remove(fileName);
+
+        if (fileName.equals(currentFileName)) {
+            List<String> resident = new ArrayList<>(tables.keySet());
+            currentFileName = resident.isEmpty() ? null : resident.get(resident.size() - 1);
+        }
+    }
+
+    /**
+     * Searches every table in the workspace, most recently used first. Evicted tables are read from
+     * their files for the search only and dropped again.
+     */
+    @Override
+    public String searchAll(String searchTerm) {
+        // Copied first, since looking tables up would change their order
+        List<Map.Entry<String, TableServiceImpl>> resident = new ArrayList<>(tables.entrySet());
+        Collections.reverse(resident);
+
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, TableServiceImpl> entry : resident) {
+            appendResults(result, entry.getKey(), entry.getValue().searchValue(searchTerm));
+        }
+        List<String> onDisk = new ArrayList<>(evicted);
+        Collections.reverse(onDisk);
+        for (String fileName : onDisk) {
+            TableServiceImpl visitor = new TableServiceImpl(fileService);
+            try {
+                visitor.loadTableFromFile(fileName);
+                appendResults(result, fileName, visitor.searchValue(searchTerm));
+            } catch (IOException e) {
+                appendResults(result, fileName, "Error loading file: " + e.getMessage() + "\n");
+            } finally {
+                visitor.close();
+            }
+        }
+        return result.toString();
+    }
+
+    private static void appendResults(StringBuilder result, String fileName, String results) {
+        result.append("=== ").append(fileName).append(" ===\n").append(results);
+    }
+
+    /**
+     * Limits the estimated heap of the tables in memory to {@code memoryCap} bytes, or removes the
+     * limit when it is 0. The cap is checked whenever a table is opened or switched to.
+     */
+    @Override
+    public void setMemoryCap(long memoryCap) {
+        if (memoryCap < 0) {
+            throw new IllegalArgumentException("Memory cap cannot be negative.");
+        }
+        this.memoryCap = memoryCap;
+        enforceMemoryCap();
+    }
+
+    /**
+     * Sets the heap budget of every table, open now or later; see {@link TableService#setHeapBudget}.
+     */
+    @Override
+    public void setHeapBudget(long heapBudget) {
+        this.heapBudget = heapBudget;
+        for (TableServiceImpl tableService : tables.values()) {
+            tableService.setHeapBudget(heapBudget);
+        }
+    }
+
+    private void enforceMemoryCap() {
+        if (memoryCap == 0) {
+            return;
+        }
+        long total = 0;
+        for (TableServiceImpl tableService : tables.values()) {
+            total += tableService.getHeapBytes();
+        }
+
+        Iterator<Map.Entry<String, TableServiceImpl>> leastRecent = tables.entrySet().iterator();
+        while (total > memoryCap && leastRecent.hasNext()) {
+            Map.Entry<String, TableServiceImpl> entry = leastRecent.next();
+            if (entry.getKey().equals(currentFileName)) {
+                continue;
+            }
+            long bytes = entry.getValue().getHeapBytes();
+            try {
+                save(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                // Kept in memory rather than losing its changes
+                System.out.println("Error saving " + entry.getKey() + ": " + e.getMessage());
+                continue;
+            }
+            leastRecent.remove();
+            entry.getValue().close();
+            evicted.add(entry.getKey());
+            total -= bytes;
+        }
+    }
+
+    /**
+     * Makes sure the file holds the table before it is dropped. Only a table with unsaved changes is
+     * written, waiting for it to finish loading; a clean one, loading or not, already matches its file.
+     */
+    private void save(String fileName, TableServiceImpl tableService) throws IOException {
+        tableService.stopWatching();
+        if (tableService.hasUnsavedChanges()) {
+            fileService.saveFile(tableService.getTable(), fileName);
+        }
+        // Lets the table come back with the indexes it had
+        tableService.saveIndexes(fileName);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.exist.service.query;
+
+/**
+ * Packs a cell's row and column into one {@code long}, {@code row << 32 | column}, so positions can
+ * be kept in primitive arrays. Packed positions sort in row, then column order.
+ */
+public final class CellPosition {
+
+    private CellPosition() {}
+
+    public static long of(int row, int column) {
+        return (long) row << 32 | column;
+    }
+
+    public static int row(long position) {
+        return (int) (position >>> 32);
+    }
+
+    public static int column(long position) {
+        return (int) position;
+    }
+
+}
@@ -0,0 +1,277 @@
+package com.exist.service.query;
+
+import com.exist.model.RowView;
+
+/**
+ * A parsed query condition, tested against one cell at a time. Text conditions compare the cell's
+ * key or value character by character, without creating strings.
+ */
+public abstract class Condition {
+
+    public enum Field { KEY, VALUE }
+
+    public enum TextOperator { EQUALS, STARTS_WITH, CONTAINS }
+
+    public enum Axis { ROW, COLUMN }
+
+    Condition() {}
+
+    /**
+     * Returns whether the cell at {@code column} of the row bound to {@code view} satisfies the condition.
+     */
+    public abstract boolean test(RowView view, int row, int column);
+
+    /**
+     * {@code key|value =|startswith|contains text}.
+     */
+    public static final class Match extends Condition {
+
+        public final Field field;
+        public final TextOperator operator;
+        public final String text;
+
+        public Match(Field field, TextOperator operator, String text) {
+            this.field = field;
+            this.operator = operator;
+            this.text = text;
+        }
+
+        @Override
+        public boolean test(RowView view, int row, int column) {
+            boolean key = field == Field.KEY;
+            int length = key ? view.keyLength(column) : view.valueLength(column);
+            return switch (operator) {
+                case EQUALS -> length == text.length() && matchesAt(view, column, key, 0);
+                case STARTS_WITH -> length >= text.length() && matchesAt(view, column, key, 0);
+                case CONTAINS -> contains(view, column, key, length);
+            };
+        }
+
+        private boolean contains(RowView view, int column, boolean key, int length) {
+            for (int start = 0; start + text.length() <= length; start++) {
+                if (matchesAt(view, column, key, start)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesAt(RowView view, int column, boolean key, int start) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = key ? view.keyChar(column, start + i) : view.valueChar(column, start + i);
+                if (c != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            String operatorName = switch (operator) {
+                case EQUALS -> "=";
+                case STARTS_WITH -> "startswith";
+                case CONTAINS -> "contains";
+            };
+            return field.name().toLowerCase() + " " + operatorName + " " + quote(text);
+        }
+    }
+
+    /**
+     * Restricts the key or value to a lexicographic range ({@link String#compareTo} order). A null
+     * bound leaves that side open.
+     */
+    public static final class TextRange extends Condition {
+
+        public final Field field;
+        public final String lower;
+        public final boolean lowerInclusive;
+        public final String upper;
+        public final boolean upperInclusive;
+
+        public TextRange(Field field, String lower, boolean lowerInclusive, String upper, boolean upperInclusive) {
+            this.field = field;
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        /**
+         * Returns the range of texts starting with {@code prefix}.
+         */
+        public static TextRange prefix(Field field, String prefix) {
+            // The first string after every string with the prefix, or none when the prefix is all U+FFFF
+            int end = prefix.length();
+            while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+                end--;
+            }
+            String upper = end == 0 ? null : prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+            return new TextRange(field, prefix, true, upper, false);
+        }
+
+        /**
+         * Returns the range both this and {@code other} (on the same field) allow.
+         */
+        public TextRange intersect(TextRange other) {
+            String low = lower;
+            boolean lowInclusive = lowerInclusive;
+            if (other.lower != null && (low == null || other.lower.compareTo(low) > 0
+                    || other.lower.equals(low) && !other.lowerInclusive)) {
+                low = other.lower;
+                lowInclusive = other.lowerInclusive;
+            }
+            String high = upper;
+            boolean highInclusive = upperInclusive;
+            if (other.upper != null && (high == null || other.upper.compareTo(high) < 0
+                    || other.upper.equals(high) && !other.upperInclusive)) {
+                high = other.upper;
+                highInclusive = other.upperInclusive;
+            }
+            return new TextRange(field, low, lowInclusive, high, highInclusive);
+        }
+
+        /**
+         * Returns whether {@code text} lies in the range.
+         */
+        public boolean contains(String text) {
+            if (lower != null) {
+                int c = text.compareTo(lower);
+                if (c < 0 || c == 0 && !lowerInclusive) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int c = text.compareTo(upper);
+                return c < 0 || c == 0 && upperInclusive;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean test(RowView view, int row, int column) {
+            boolean key = field == Field.KEY;
+            if (lower != null) {
+                int c = compare(view, column, key, lower);
+                if (c < 0 || c == 0 && !lowerInclusive) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int c = compare(view, column, key, upper);
+                return c < 0 || c == 0 && upperInclusive;
+            }
+            return true;
+        }
+
+        private static int compare(RowView view, int column, boolean key, String bound) {
+            int length = key ? view.keyLength(column) : view.valueLength(column);
+            for (int i = 0; i < Math.min(length, bound.length()); i++) {
+                char c = key ? view.keyChar(column, i) : view.valueChar(column, i);
+                if (c != bound.charAt(i)) {
+                    return c - bound.charAt(i);
+                }
+            }
+            return length - bound.length();
+        }
+
+        @Override
+        public String toString() {
+            return field.name().toLowerCase() + " in " + (lower == null ? "(*" : (lowerInclusive ? "[" : "(") + quote(lower))
+                    + ", " + (upper == null ? "*)" : quote(upper) + (upperInclusive ? "]" : ")"));
+        }
+    }
+
+    /**
+     * Restricts the row or column index to {@code [from, to)}.
+     */
+    public static final class Range extends Condition {
+
+        public final Axis axis;
+        public final int from;
+        public final int to;
+
+        public Range(Axis axis, int from, int to) {
+            this.axis = axis;
+            this.from = Math.max(from, 0);
+            this.to = Math.max(to, this.from);
+        }
+
+        @Override
+        public boolean test(RowView view, int row, int column) {
+            int index = axis == Axis.ROW ? row : column;
+            return index >= from && index < to;
+        }
+
+        @Override
+        public String toString() {
+            return (axis == Axis.ROW ? "row " : "col ") + from + ".." + (to - 1);
+        }
+    }
+
+    public static final class And extends Condition {
+
+        public final Condition left;
+        public final Condition right;
+
+        public And(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(RowView view, int row, int column) {
+            return left.test(view, row, column) && right.test(view, row, column);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " and " + right + ")";
+        }
+    }
+
+    public static final class Or extends Condition {
+
+        public final Condition left;
+        public final Condition right;
+
+        public Or(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(RowView view, int row, int column) {
+            return left.test(view, row, column) || right.test(view, row, column);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " or " + right + ")";
+        }
+    }
+
+    public static final class Not extends Condition {
+
+        public final Condition operand;
+
+        public Not(Condition operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(RowView view, int row, int column) {
+            return !operand.test(view, row, column);
+        }
+
+        @Override
+        public String toString() {
+            return "not " + operand;
+        }
+    }
+
+    static String quote(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.exist.service.query;
+
+import java.util.BitSet;
+
+/**
+ * An index the {@link QueryPlanner} can use to find the rows a text condition ({@link Condition.Match}
+ * or {@link Condition.TextRange}) may match without looking at every row.
+ */
+public interface QueryIndex {
+
+    /**
+     * Short name shown in query plans.
+     */
+    String name();
+
+    /**
+     * Returns about how many rows {@link #candidateRows} would return for the condition, or -1 when
+     * the index cannot answer it.
+     */
+    long estimateRows(Condition condition);
+
+    /**
+     * Returns every row holding a cell that satisfies the condition. It may also return rows that do
+     * not, as the plan tests every cell of a candidate row.
+     */
+    BitSet candidateRows(Condition condition);
+
+}
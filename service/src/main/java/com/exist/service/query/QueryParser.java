@@ -0,0 +1,287 @@
+package com.exist.service.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the query language into a {@link Condition}. Keywords are case-insensitive; text is
+ * matched case-sensitively, like {@code search}.
+ *
+ * <pre>
+ * query  := and ("or" and)*
+ * and    := unary ("and" unary)*
+ * unary  := "not" unary | "(" query ")" | match | range
+ * match  := ("key" | "value") ("=" | "startswith" | "contains") text
+ *         | ("key" | "value") cmp text ("and" cmp text)*
+ * cmp    := "&lt;" | "&lt;=" | "&gt;" | "&gt;="      (lexicographic, in {@link String#compareTo} order)
+ * range  := ("row" | "col") (N | N..M | ("=" | "&lt;" | "&lt;=" | "&gt;" | "&gt;=") N)
+ * text   := word | "quoted text"     (a word runs up to whitespace, a parenthesis or a quote)
+ * </pre>
+ *
+ * <p>For example {@code key startswith ab and (value contains "x y" or row 10..20) and not col = 0}, or
+ * {@code key >= A0 and < B} for the keys from {@code A0} up to but excluding {@code B}.
+ */
+public final class QueryParser {
+
+    private final List<Token> tokens;
+    private int next;
+
+    private static final class Token {
+
+        final String text;
+        final boolean quoted;
+        final int position;
+
+        Token(String text, boolean quoted, int position) {
+            this.text = text;
+            this.quoted = quoted;
+            this.position = position;
+        }
+
+        boolean is(String keyword) {
+            return !quoted && text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    private QueryParser(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parses the query, throwing {@link IllegalArgumentException} with the position of the first error.
+     */
+    public static Condition parse(String query) {
+        QueryParser parser = new QueryParser(tokenize(query));
+        if (parser.tokens.isEmpty()) {
+            throw new IllegalArgumentException("Query cannot be empty.");
+        }
+        Condition condition = parser.parseOr();
+        if (parser.next < parser.tokens.size()) {
+            throw parser.error("end of query");
+        }
+        return condition;
+    }
+
+    private Condition parseOr() {
+        Condition condition = parseAnd();
+        while (accept("or")) {
+            condition = new Condition.Or(condition, parseAnd());
+        }
+        return condition;
+    }
+
+    private Condition parseAnd() {
+        Condition condition = parseUnary();
+        while (accept("and")) {
+            condition = new Condition.And(condition, parseUnary());
+        }
+        return condition;
+    }
+
+    private Condition parseUnary() {
+        if (accept("not")) {
+            return new Condition.Not(parseUnary());
+        }
+        if (accept("(")) {
+            Condition condition = parseOr();
+            expect(")");
+            return condition;
+        }
+        if (accept("key")) {
+            return parseMatch(Condition.Field.KEY);
+        }
+        if (accept("value")) {
+            return parseMatch(Condition.Field.VALUE);
+        }
+        if (accept("row")) {
+            return parseRange(Condition.Axis.ROW);
+        }
+        if (accept("col") || accept("column")) {
+            return parseRange(Condition.Axis.COLUMN);
+        }
+        throw error("key, value, row, col, not or (");
+    }
+
+    private Condition parseMatch(Condition.Field field) {
+        String comparison = acceptComparison();
+        if (comparison != null) {
+            Condition.TextRange range = textRange(field, comparison, parseText());
+            // "key >= a and < b" bounds the same field on both sides
+            while (peekIs(0, "and") && isComparison(peek(1))) {
+                next++;
+                range = range.intersect(textRange(field, acceptComparison(), parseText()));
+            }
+            return range;
+        }
+
+        Condition.TextOperator operator;
+        if (accept("=")) {
+            operator = Condition.TextOperator.EQUALS;
+        } else if (accept("startswith")) {
+            operator = Condition.TextOperator.STARTS_WITH;
+        } else if (accept("contains")) {
+            operator = Condition.TextOperator.CONTAINS;
+        } else {
+            throw error("=, <, <=, >, >=, startswith or contains");
+        }
+        return new Condition.Match(field, operator, parseText());
+    }
+
+    private String parseText() {
+        Token text = peek();
+        if (text == null || !text.quoted && (text.is("(") || text.is(")"))) {
+            throw error("text");
+        }
+        next++;
+        return text.text;
+    }
+
+    private static Condition.TextRange textRange(Condition.Field field, String comparison, String text) {
+        return switch (comparison) {
+            case "<" -> new Condition.TextRange(field, null, false, text, false);
+            case "<=" -> new Condition.TextRange(field, null, false, text, true);
+            case ">" -> new Condition.TextRange(field, text, false, null, false);
+            default -> new Condition.TextRange(field, text, true, null, false);
+        };
+    }
+
+    private String acceptComparison() {
+        Token token = peek();
+        if (isComparison(token)) {
+            next++;
+            return token.text;
+        }
+        return null;
+    }
+
+    private static boolean isComparison(Token token) {
+        return token != null && (token.is("<") || token.is("<=") || token.is(">") || token.is(">="));
+    }
+
+    private boolean peekIs(int ahead, String keyword) {
+        Token token = peek(ahead);
+        return token != null && token.is(keyword);
+    }
+
+    private Condition parseRange(Condition.Axis axis) {
+        String comparison = null;
+        for (String operator : new String[]{"<=", ">=", "<", ">", "="}) {
+            if (accept(operator)) {
+                comparison = operator;
+                break;
+            }
+        }
+
+        Token token = peek();
+        if (token == null || token.quoted) {
+            throw error("a number");
+        }
+        int dots = token.text.indexOf("..");
+        if (dots >= 0 && comparison != null) {
+            throw error("a number");
+        }
+        int first = number(token, dots >= 0 ? token.text.substring(0, dots) : token.text);
+        next++;
+
+        if (dots >= 0) {
+            int last = number(token, token.text.substring(dots + 2));
+            return new Condition.Range(axis, first, last + 1);
+        }
+        return switch (comparison == null ? "=" : comparison) {
+            case "<" -> new Condition.Range(axis, 0, first);
+            case "<=" -> new Condition.Range(axis, 0, first + 1);
+            case ">" -> new Condition.Range(axis, first + 1, Integer.MAX_VALUE);
+            case ">=" -> new Condition.Range(axis, first, Integer.MAX_VALUE);
+            default -> new Condition.Range(axis, first, first + 1);
+        };
+    }
+
+    private int number(Token token, String text) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value >= 0 && value < Integer.MAX_VALUE) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid number '" + text + "' at position " + token.position + ".");
+    }
+
+    private Token peek() {
+        return peek(0);
+    }
+
+    private Token peek(int ahead) {
+        return next + ahead < tokens.size() ? tokens.get(next + ahead) : null;
+    }
+
+    private boolean accept(String keyword) {
+        Token token = peek();
+        if (token != null && token.is(keyword)) {
+            next++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String keyword) {
+        if (!accept(keyword)) {
+            throw error("'" + keyword + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String expected) {
+        Token token = peek();
+        String found = token == null ? "end of query" : "'" + token.text + "' at position " + token.position;
+        return new IllegalArgumentException("Expected " + expected + " but found " + found + ".");
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(String.valueOf(c), false, i++));
+            } else if (c == '=' || c == '<' || c == '>') {
+                int length = c != '=' && i + 1 < query.length() && query.charAt(i + 1) == '=' ? 2 : 1;
+                tokens.add(new Token(query.substring(i, i + length), false, i));
+                i += length;
+            } else if (c == '"') {
+                i = readQuoted(query, i, tokens);
+            } else {
+                int start = i;
+                while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                        && "()=<>\"".indexOf(query.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(new Token(query.substring(start, i), false, start));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Reads a double-quoted string in which {@code \"} and {@code \\} stand for a quote and a backslash.
+     */
+    private static int readQuoted(String query, int start, List<Token> tokens) {
+        StringBuilder text = new StringBuilder();
+        int i = start + 1;
+        while (i < query.length()) {
+            char c = query.charAt(i++);
+            if (c == '"') {
+                tokens.add(new Token(text.toString(), true, start));
+                return i;
+            }
+            if (c == '\\' && i < query.length()) {
+                c = query.charAt(i++);
+            }
+            text.append(c);
+        }
+        throw new IllegalArgumentException("Unterminated quote at position " + start + ".");
+    }
+
+}
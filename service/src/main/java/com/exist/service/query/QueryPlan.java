@@ -0,0 +1,99 @@
+package com.exist.service.query;
+
+import com.exist.model.RowView;
+import com.exist.model.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * A condition together with the way its candidate rows are found. Tables of more than
+ * {@value #CHUNK_ROWS} rows are tested in chunks on the fork-join pool, which only reads the table.
+ */
+public final class QueryPlan {
+
+    private static final int CHUNK_ROWS = 4096;
+
+    private final Condition condition;
+    private final String access;
+    // Null to test every row
+    private final Supplier<BitSet> candidateRows;
+
+    QueryPlan(Condition condition, String access, Supplier<BitSet> candidateRows) {
+        this.condition = condition;
+        this.access = access;
+        this.candidateRows = candidateRows;
+    }
+
+    /**
+     * Returns the access path and the condition every candidate cell is tested with.
+     */
+    public String describe() {
+        return "access: " + access + "\nfilter: " + condition;
+    }
+
+    /**
+     * Returns the {@link CellPosition} of every matching cell, in row then column order.
+     */
+    public long[] execute(Table table) {
+        int rowCount = table.size();
+        BitSet rows = candidateRows == null ? null : candidateRows.get();
+        if (rowCount <= CHUNK_ROWS) {
+            return execute(table, rows, 0, rowCount);
+        }
+
+        List<ForkJoinTask<long[]>> chunks = new ArrayList<>();
+        for (int from = 0; from < rowCount; from += CHUNK_ROWS) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(rowCount, from + CHUNK_ROWS);
+            if (rows != null && nextRow(rows, chunkStart) >= chunkEnd) {
+                continue;
+            }
+            chunks.add(ForkJoinPool.commonPool().submit(() -> execute(table, rows, chunkStart, chunkEnd)));
+        }
+
+        long[][] results = new long[chunks.size()][];
+        int total = 0;
+        for (int i = 0; i < results.length; i++) {
+            results[i] = chunks.get(i).join();
+            total += results[i].length;
+        }
+        long[] positions = new long[total];
+        int offset = 0;
+        for (long[] result : results) {
+            System.arraycopy(result, 0, positions, offset, result.length);
+            offset += result.length;
+        }
+        return positions;
+    }
+
+    private long[] execute(Table table, BitSet rows, int from, int to) {
+        long[] positions = new long[16];
+        int count = 0;
+        RowView view = null;
+        for (int row = rows == null ? from : nextRow(rows, from); row < to;
+                row = rows == null ? row + 1 : nextRow(rows, row + 1)) {
+            view = table.view(row, view);
+            for (int column = 0; column < view.size(); column++) {
+                if (condition.test(view, row, column)) {
+                    if (count == positions.length) {
+                        positions = Arrays.copyOf(positions, count * 2);
+                    }
+                    positions[count++] = CellPosition.of(row, column);
+                }
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    private static int nextRow(BitSet rows, int from) {
+        int row = rows.nextSetBit(from);
+        return row < 0 ? Integer.MAX_VALUE : row;
+    }
+
+}
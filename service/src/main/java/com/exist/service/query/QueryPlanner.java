@@ -0,0 +1,126 @@
+package com.exist.service.query;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Chooses how to find the rows a condition may match. Each text condition uses the index with the
+ * smallest row estimate, or a scan when no index can answer it or one would not help. {@code and}
+ * merges two text ranges on the same field into one and otherwise takes the cheaper side
+ * (intersected with a row range when the other side is one), {@code or} unions both sides unless
+ * either needs a scan, and {@code not} and column ranges always scan. The plan then tests the whole
+ * condition on every cell of the chosen rows.
+ */
+public final class QueryPlanner {
+
+    private final List<QueryIndex> indexes;
+
+    /**
+     * How to find the candidate rows of one condition. Cost is the number of rows to test.
+     */
+    private static final class Access {
+
+        final String description;
+        final long cost;
+        // Null for every row
+        final Supplier<BitSet> rows;
+        final boolean rowRange;
+
+        Access(String description, long cost, Supplier<BitSet> rows, boolean rowRange) {
+            this.description = description;
+            this.cost = cost;
+            this.rows = rows;
+            this.rowRange = rowRange;
+        }
+
+        boolean isScan() {
+            return rows == null;
+        }
+    }
+
+    public QueryPlanner(List<QueryIndex> indexes) {
+        this.indexes = List.copyOf(indexes);
+    }
+
+    public QueryPlan plan(Condition condition, int rowCount) {
+        Access access = access(condition, rowCount);
+        return new QueryPlan(condition, access.description, access.rows);
+    }
+
+    private Access access(Condition condition, int rowCount) {
+        if (condition instanceof Condition.Match || condition instanceof Condition.TextRange) {
+            return indexAccess(condition, rowCount);
+        }
+        if (condition instanceof Condition.Range range && range.axis == Condition.Axis.ROW) {
+            int from = Math.min(range.from, rowCount);
+            int to = Math.min(range.to, rowCount);
+            return new Access("rows " + from + ".." + (to - 1), to - from, () -> {
+                BitSet rows = new BitSet(to);
+                rows.set(from, to);
+                return rows;
+            }, true);
+        }
+        if (condition instanceof Condition.And and) {
+            if (and.left instanceof Condition.TextRange left && and.right instanceof Condition.TextRange right
+                    && left.field == right.field) {
+                return indexAccess(left.intersect(right), rowCount);
+            }
+            return andAccess(access(and.left, rowCount), access(and.right, rowCount));
+        }
+        if (condition instanceof Condition.Or or) {
+            return orAccess(access(or.left, rowCount), access(or.right, rowCount), rowCount);
+        }
+        return scan(rowCount);
+    }
+
+    private Access indexAccess(Condition condition, int rowCount) {
+        QueryIndex best = null;
+        long bestEstimate = rowCount;
+        for (QueryIndex index : indexes) {
+            long estimate = index.estimateRows(condition);
+            if (estimate >= 0 && estimate < bestEstimate) {
+                best = index;
+                bestEstimate = estimate;
+            }
+        }
+        if (best == null) {
+            return scan(rowCount);
+        }
+        QueryIndex index = best;
+        return new Access(index.name() + "(" + condition + ")", bestEstimate, () -> index.candidateRows(condition),
+                false);
+    }
+
+    private static Access andAccess(Access left, Access right) {
+        if (left.isScan() || right.isScan()) {
+            return left.isScan() ? right : left;
+        }
+        if (left.rowRange || right.rowRange) {
+            // Intersecting with a range costs nothing, so keep the rows both sides allow
+            return new Access(left.description + " & " + right.description, Math.min(left.cost, right.cost), () -> {
+                BitSet rows = left.rows.get();
+                rows.and(right.rows.get());
+                return rows;
+            }, left.rowRange && right.rowRange);
+        }
+        return left.cost <= right.cost ? left : right;
+    }
+
+    private static Access orAccess(Access left, Access right, int rowCount) {
+        if (left.isScan() || right.isScan()) {
+            return scan(rowCount);
+        }
+        long cost = Math.min(rowCount, left.cost + right.cost);
+        return new Access(left.description + " | " + right.description, cost, () -> {
+            BitSet rows = left.rows.get();
+            rows.or(right.rows.get());
+            return rows;
+        }, left.rowRange && right.rowRange);
+    }
+
+    private static Access scan(int rowCount) {
+        return new Access("scan", rowCount, null, false);
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.exist.service;
+
+import com.exist.model.Table;
+import com.exist.service.impl.FileServiceImpl;
+import com.exist.service.impl.TableServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Fails when a hot path allocates more than its budget per operation, so allocation improvements
+ * are not lost again unnoticed. Only the calling thread is measured, so the content is kept below
+ * the size at which parsing splits into parallel chunks. Budgets leave about 25% over what the
+ * operations allocate today on a table of {@value #ROWS} rows of {@value #COLUMNS} cells.
+ */
+@DisplayName("Allocation Budget Tests")
+class AllocationBudgetTest {
+
+    private static final int ROWS = 1000;
+    private static final int COLUMNS = 10;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 50;
+    // Below the parsers' parallel threshold, so every measured path runs on the calling thread
+    private static final int SEQUENTIAL_LIMIT = 256 * 1024;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final FileService fileService = new FileServiceImpl();
+    private PrintStream console;
+    private String content;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled());
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Random random = new Random(7);
+        StringBuilder builder = new StringBuilder();
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                builder.append(column == 0 ? "" : " ").append('(').append(field(random)).append(',')
+                        .append(field(random)).append(')');
+            }
+            builder.append(row == ROWS - 1 ? "" : "\n");
+        }
+        content = builder.toString();
+        assertTrue(content.length() < SEQUENTIAL_LIMIT, "Content must parse on the calling thread");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (console != null) {
+            System.setOut(console);
+        }
+    }
+
+    @Test
+    @DisplayName("parseFileToTable from a string stays within 500 KB")
+    void parseFileToTable_string() {
+        assertWithinBudget(500_000, () -> fileService.parseFileToTable(content));
+    }
+
+    @Test
+    @DisplayName("parseFileToTable from bytes stays within 250 KB")
+    void parseFileToTable_bytes() {
+        byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+        assertWithinBudget(250_000, () -> fileService.parseFileToTable(bytes));
+    }
+
+    @Test
+    @DisplayName("searchValue stays within 8 KB")
+    void searchValue() {
+        TableServiceImpl tableService = loadedService(new TableServiceImpl());
+        assertWithinBudget(8_000, () -> tableService.searchValue("ab"));
+    }
+
+    @Test
+    @DisplayName("editCell stays within 1.1 KB")
+    void editCell() {
+        TableServiceImpl tableService = loadedService(new TableServiceImpl() {
+            @Override
+            public void printTable(int maxRows) {
+                // The edit alone is measured, not the print that follows it
+            }
+        });
+        int[] next = {0};
+        assertWithinBudget(1_100, () -> tableService.editCell(next[0]++ % ROWS, 3, "k", "v", "both"));
+    }
+
+    @Test
+    @DisplayName("tableToString stays within 250 KB")
+    void tableToString() {
+        Table table = fileService.parseFileToTable(content);
+        assertWithinBudget(250_000, () -> fileService.tableToString(table));
+    }
+
+    private static void assertWithinBudget(long budgetBytes, Runnable operation) {
+        long allocated = allocatedPerOperation(operation);
+        assertTrue(allocated <= budgetBytes,
+                "Allocated " + allocated + " bytes per operation, budget is " + budgetBytes);
+    }
+
+    private TableServiceImpl loadedService(TableServiceImpl tableService) {
+        Table table = tableService.getTable();
+        Table parsed = fileService.parseFileToTable(content);
+        for (int i = 0; i < parsed.size(); i++) {
+            table.add(parsed.get(i));
+        }
+        return tableService;
+    }
+
+    private static long allocatedPerOperation(Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        return (allocatedBytes() - before) / ITERATIONS;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String field(Random random) {
+        char[] chars = new char[3];
+        for (int i = 0; i < chars.length; i++) {
+            char c;
+            do {
+                c = (char) (33 + random.nextInt(94));
+            } while (c == ',' || c == '(' || c == ')');
+            chars[i] = c;
+        }
+        return new String(chars);
+    }
+
+}
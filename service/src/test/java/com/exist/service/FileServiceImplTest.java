@@ -10,11 +10,16 @@ import com.exist.service.impl.FileServiceImpl;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 
 import com.exist.model.Table;
 
+import java.io.BufferedReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 @DisplayName("FileServiceImpl Tests")
 class FileServiceImplTest {
@@ -123,6 +128,32 @@ class FileServiceImplTest {
         }
     }
 
+    @Nested
+    @DisplayName("openFileReader() Tests")
+    class OpenFileReaderTests {
+
+        @Test
+        @DisplayName("should read the file line by line")
+        void openFileReader_withContent_readsLines() throws Exception {
+            Path tempFile = Files.createTempFile("reader", ".txt");
+            Files.writeString(tempFile, "(a,b)\n(c,d)");
+            try (BufferedReader reader = fileService.openFileReader(tempFile.toString())) {
+                assertEquals("(a,b)", reader.readLine());
+                assertEquals("(c,d)", reader.readLine());
+                assertNull(reader.readLine());
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        @Test
+        @DisplayName("should throw for a missing file")
+        void openFileReader_missingFile_throwsException() {
+            IOException ex = assertThrows(IOException.class, () -> fileService.openFileReader("missing.txt"));
+            assertTrue(ex.getMessage().contains("not found"));
+        }
+    }
+
     @Nested
     @DisplayName("parseFileToTable() Tests")
     class ParseFileToTableTests {
@@ -160,6 +191,133 @@ class FileServiceImplTest {
                     () -> assertEquals("(p,q)", t.get(1).get(1))
             );
         }
+
+        @Test
+        @DisplayName("should handle CRLF line endings, blank lines and commas inside values")
+        void parseFileToTable_mixedLines_parsesCorrectly() {
+            Table t = fileService.parseFileToTable("(0,C,0f?) ()qa,pWA)\r\n\r\nno cells here\n(x,y)");
+            assertAll("Mixed line parsing",
+                    () -> assertEquals(2, t.size()),
+                    () -> assertEquals(Arrays.asList("(0,C,0f?)", "()qa,pWA)"), t.get(0)),
+                    () -> assertEquals(Arrays.asList("(x,y)"), t.get(1))
+            );
+        }
+
+        @Test
+        @DisplayName("should parse a single line into its cells")
+        void parseLineToRow_line_returnsCells() {
+            assertEquals(Arrays.asList("(a,b)", "(c,d)"), fileService.parseLineToRow("(a,b) junk (c,d)"));
+            assertTrue(fileService.parseLineToRow("no cells").isEmpty());
+        }
+
+        @Test
+        @DisplayName("should keep row order when a large input is parsed in chunks")
+        void parseFileToTable_largeContent_keepsRowOrder() {
+            StringBuilder content = new StringBuilder();
+            int rows = 50_000;
+            for (int i = 0; i < rows; i++) {
+                content.append("(k").append(i).append(",v").append(i).append(") (a,b)\n");
+            }
+
+            Table t = fileService.parseFileToTable(content.toString());
+
+            assertEquals(rows, t.size());
+            for (int i = 0; i < rows; i++) {
+                assertEquals("(k" + i + ",v" + i + ")", t.get(i).get(0));
+                assertEquals(2, t.get(i).size());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Byte parsing and loadTable() Tests")
+    class LoadTableTests {
+
+        @Test
+        @DisplayName("should parse ASCII bytes the same way as the String parser")
+        void parseFileToTable_asciiBytes_matchesStringParse() {
+            StringBuilder content = new StringBuilder("(0,C,0f?) ()qa,pWA)\r\n\r\nno cells here\n(x,y)\n");
+            for (int i = 0; i < 40_000; i++) {
+                content.append("(k").append(i % 1000).append(",v").append(i % 7).append(") (abc,def) x (a,\n");
+            }
+            String text = content.toString();
+
+            Table fromBytes = fileService.parseFileToTable(text.getBytes(StandardCharsets.US_ASCII));
+            Table fromString = fileService.parseFileToTable(text);
+
+            assertEquals(fromString.size(), fromBytes.size());
+            assertEquals(fileService.tableToString(fromString), fileService.tableToString(fromBytes));
+        }
+
+        @Test
+        @DisplayName("should fall back to UTF-8 decoding for non-ASCII bytes")
+        void parseFileToTable_utf8Bytes_decodes() {
+            Table t = fileService.parseFileToTable("(\u043a\u043b\u044e\u0447,\u0437\u043d\u0430\u0447\u0435\u043d\u0438\u0435) (a,b)".getBytes(StandardCharsets.UTF_8));
+            assertEquals(Arrays.asList("(\u043a\u043b\u044e\u0447,\u0437\u043d\u0430\u0447\u0435\u043d\u0438\u0435)", "(a,b)"), t.get(0));
+        }
+
+        @Test
+        @DisplayName("should patch an edited row in place on the first save after loading")
+        void loadTable_thenSave_patchesInPlace() throws Exception {
+            Path file = Files.createTempFile("loadtable_patch", ".txt");
+            try {
+                Files.writeString(file, "(aaa,bbb) (ccc,ddd)\nheader without cells\n(e,f)\n");
+                Table t = fileService.loadTable(file.toString());
+                assertEquals(2, t.size());
+                assertFalse(t.isDirty(0));
+                assertFalse(t.isDirty(1));
+
+                t.set(1, 0, "(g,h)");
+                fileService.saveFile(t, file.toString());
+
+                assertEquals("(aaa,bbb) (ccc,ddd)\nheader without cells\n(g,h)\n", Files.readString(file));
+                assertNull(t.getEncodedRow(0));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should stream a file larger than the heap budget into a budgeted table")
+        void loadTable_overHeapBudget_spillsRows() throws Exception {
+            Path file = Files.createTempFile("loadtable_budget", ".txt");
+            try {
+                StringBuilder content = new StringBuilder();
+                for (int i = 0; i < 5000; i++) {
+                    content.append("(k").append(i).append(",v) (abc,def)\n");
+                }
+                Files.writeString(file, content);
+
+                fileService.setHeapBudget(16 * 1024);
+                Table t = fileService.loadTable(file.toString());
+
+                assertEquals(5000, t.size());
+                assertTrue(t.getResidentBytes() <= 20 * 1024);
+                assertEquals("(k4321,v)", t.get(4321).get(0));
+
+                t.set(10, 1, "(x,y)");
+                fileService.saveFile(t, file.toString());
+                assertEquals(fileService.tableToString(t), Files.readString(file));
+                t.clear();
+            } finally {
+                fileService.setHeapBudget(0);
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should load a non-ASCII file without a saved layout")
+        void loadTable_utf8File_loadsWithoutLayout() throws Exception {
+            Path file = Files.createTempFile("loadtable_utf8", ".txt");
+            try {
+                Files.writeString(file, "(\u00e9,b)\n", StandardCharsets.UTF_8);
+                Table t = fileService.loadTable(file.toString());
+                assertEquals("(\u00e9,b)", t.get(0).get(0));
+                assertNull(t.getLayout());
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
     }
 
     @Nested
@@ -257,5 +415,403 @@ class FileServiceImplTest {
                 Files.deleteIfExists(overwriteFile);
             }
         }
+
+        @Test
+        @DisplayName("should write a table of many chunks in row order and cache every row")
+        void saveFile_manyChunks_writesRowsInOrder() throws Exception {
+            Table t = new Table(Table.CellStorage.PACKED);
+            for (int i = 0; i < 5_000; i++) {
+                t.add(Arrays.asList("(k" + i + ",v)", "(abc,def)", i % 7 == 0 ? "(\u00e9t\u00e9,x)" : "(x,y)"));
+            }
+            t.setEncodedRow(42, "(cached,row)".getBytes());
+            Path file = Files.createTempFile("savefile_chunks", ".txt");
+            try {
+                fileService.saveFile(t, file.toString());
+
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                assertEquals(5_000, lines.size());
+                assertEquals("(k0,v) (abc,def) (\u00e9t\u00e9,x)", lines.get(0));
+                assertEquals("(cached,row)", lines.get(42));
+                assertEquals("(k4999,v) (abc,def) (x,y)", lines.get(4_999));
+                for (int i = 0; i < t.size(); i++) {
+                    assertFalse(t.isDirty(i));
+                    assertNotNull(t.getEncodedRow(i));
+                }
+
+                // The layout recorded by the full write lets the next save patch the row in place
+                long length = Files.size(file);
+                t.set(4_000, 1, "(new,val)");
+                fileService.saveFile(t, file.toString());
+                assertEquals(length, Files.size(file));
+                assertEquals("(k4000,v) (new,val) (x,y)", Files.readAllLines(file, StandardCharsets.UTF_8).get(4_000));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should write a table of many chunks in row order within its heap budget")
+        void saveFile_manyChunksWithBudget_staysWithinBudget() throws Exception {
+            Table t = new Table(Table.CellStorage.PACKED, 16 * 1024);
+            for (int i = 0; i < 5_000; i++) {
+                t.add(Arrays.asList("(k" + i + ",v)", "(abc,def)"));
+            }
+            Path file = Files.createTempFile("savefile_budget", ".txt");
+            try {
+                fileService.saveFile(t, file.toString());
+
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                assertEquals(5_000, lines.size());
+                for (int i = 0; i < lines.size(); i++) {
+                    assertEquals("(k" + i + ",v) (abc,def)", lines.get(i));
+                    assertFalse(t.isDirty(i));
+                }
+                assertTrue(t.getResidentBytes() > 0);
+                assertTrue(t.getResidentBytes() <= 16 * 1024 + 512);
+            } finally {
+                t.clear();
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should reuse the cached encoding of clean rows and re-encode dirty rows")
+        void saveFile_cleanAndDirtyRows_reusesCachedEncoding() throws Exception {
+            Table t = new Table();
+            t.add(Arrays.asList("(a,b)", "(c,d)"));
+            t.add(Arrays.asList("(1,2)", "(3,4)"));
+            Path file = Files.createTempFile("savefile_cache", ".txt");
+            Path copy = Files.createTempFile("savefile_cache_copy", ".txt");
+            try {
+                fileService.saveFile(t, file.toString());
+                assertFalse(t.isDirty(0));
+                assertFalse(t.isDirty(1));
+
+                // A clean row is written from its cached bytes, not re-rendered
+                t.setEncodedRow(0, "(cached,row)".getBytes());
+                t.set(1, 0, "(9,9)");
+                fileService.saveFile(t, copy.toString());
+
+                assertEquals("(cached,row)\n(9,9) (3,4)", Files.readString(copy));
+                assertFalse(t.isDirty(1));
+            } finally {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(copy);
+            }
+        }
+
+        @Test
+        @DisplayName("should rewrite the file when its lines moved without changing its size or time")
+        void saveFile_linesMovedWithSameSizeAndTime_rewritesFile() throws Exception {
+            Table t = new Table();
+            t.add(Arrays.asList("(a,b)"));
+            t.add(Arrays.asList("(cc,d)"));
+            Path file = Files.createTempFile("savefile_moved", ".txt");
+            try {
+                fileService.saveFile(t, file.toString());
+                FileTime written = Files.getLastModifiedTime(file);
+                Files.writeString(file, "(aa,b)\n(c,d)");
+                Files.setLastModifiedTime(file, written);
+
+                t.set(1, 0, "(x,d)");
+                fileService.saveFile(t, file.toString());
+
+                assertEquals("(a,b)\n(x,d)", Files.readString(file));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should keep the CRLF line endings of patched and shifted rows")
+        void saveFile_crlfFile_keepsLineEndings() throws Exception {
+            Path file = Files.createTempFile("savefile_crlf", ".txt");
+            try {
+                Files.writeString(file, "(a,b) (c,d)\r\n(1,2) (3,4)\r\n(5,6)\r\n");
+                Table t = fileService.loadTable(file.toString());
+                long length = Files.size(file);
+
+                t.set(0, 0, "(z,)");
+                fileService.saveFile(t, file.toString());
+                assertEquals(length, Files.size(file));
+                assertEquals("(z,) (c,d) \r\n(1,2) (3,4)\r\n(5,6)\r\n", Files.readString(file));
+
+                t.set(1, 0, "(longer,key)");
+                fileService.saveFile(t, file.toString());
+                String content = Files.readString(file);
+                assertTrue(content.startsWith("(z,) (c,d) \r\n(longer,key) (3,4)"), content);
+                assertEquals(3, content.split("\r\n").length, content);
+                assertEquals(fileService.tableToString(t),
+                        fileService.tableToString(fileService.parseFileToTable(content)));
+
+                t.set(2, 0, "(7,8)");
+                fileService.saveFile(t, file.toString());
+                assertTrue(Files.readString(file).endsWith("\r\n(7,8)"));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should patch a shrinking row in place without changing the file length")
+        void saveFile_shrinkingRow_patchesInPlace() throws Exception {
+            Table t = new Table();
+            t.add(Arrays.asList("(a,b)", "(c,d)"));
+            t.add(Arrays.asList("(1,2)", "(3,4)"));
+            Path file = Files.createTempFile("savefile_patch", ".txt");
+            try {
+                fileService.saveFile(t, file.toString());
+                long length = Files.size(file);
+
+                t.set(0, 0, "(z,)");
+                fileService.saveFile(t, file.toString());
+
+                assertEquals(length, Files.size(file));
+                assertEquals("(z,) (c,d) \n(1,2) (3,4)", Files.readString(file));
+                assertEquals(fileService.tableToString(t),
+                        fileService.tableToString(fileService.parseFileToTable(Files.readString(file))));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should shift the following rows when a row outgrows its slot")
+        void saveFile_growingRow_rewritesTail() throws Exception {
+            Table t = new Table();
+            t.add(Arrays.asList("(a,b)"));
+            t.add(Arrays.asList("(c,d)"));
+            t.add(Arrays.asList("(e,f)"));
+            Path file = Files.createTempFile("savefile_grow", ".txt");
+            try {
+                fileService.saveFile(t, file.toString());
+
+                t.set(1, 0, "(longer,cell)");
+                fileService.saveFile(t, file.toString());
+                Table reloaded = fileService.parseFileToTable(Files.readString(file));
+                assertEquals(fileService.tableToString(t), fileService.tableToString(reloaded));
+
+                // The grown row received slack, so growing it a little more stays in place
+                long length = Files.size(file);
+                t.set(1, 0, "(longer,cells)");
+                fileService.saveFile(t, file.toString());
+                assertEquals(length, Files.size(file));
+                reloaded = fileService.parseFileToTable(Files.readString(file));
+                assertEquals(fileService.tableToString(t), fileService.tableToString(reloaded));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should append new rows after the last saved row")
+        void saveFile_addedRow_appendsRow() throws Exception {
+            Table t = new Table();
+            t.add(new ArrayList<>(Arrays.asList("(a,b)")));
+            Path file = Files.createTempFile("savefile_append", ".txt");
+            try {
+                fileService.saveFile(t, file.toString());
+                t.add(Arrays.asList("(c,d)", "(e,f)"));
+                fileService.saveFile(t, file.toString());
+
+                assertEquals("(a,b)\n(c,d) (e,f)", Files.readString(file));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should rewrite the whole file when it was changed by someone else")
+        void saveFile_externallyModified_rewritesFile() throws Exception {
+            Table t = new Table();
+            t.add(Arrays.asList("(a,b)", "(c,d)"));
+            Path file = Files.createTempFile("savefile_external", ".txt");
+            try {
+                fileService.saveFile(t, file.toString());
+                Files.writeString(file, "(x,y)\n(other,content)");
+
+                t.set(0, 0, "(z,)");
+                fileService.saveFile(t, file.toString());
+
+                assertEquals("(z,) (c,d)", Files.readString(file));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
     }
-}
\ No newline at end of file
+    @Nested
+    @DisplayName("generateFile")
+    class GenerateFileTests {
+
+        @Test
+        @DisplayName("should stream random rows in the saved table format across several chunks")
+        void generateFile_writesRandomTable() throws Exception {
+            Path file = Files.createTempFile("generated", ".txt");
+            try {
+                Files.writeString(file, "x".repeat(10_000_000));
+                fileService.generateFile(file.toString(), 20_000, 30, 3);
+
+                int lineBytes = 30 * 10 - 1;
+                assertEquals(20_000L * (lineBytes + 1) - 1, Files.size(file));
+                List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+                assertEquals(20_000, lines.size());
+                for (String line : lines) {
+                    assertTrue(line.matches("\\([^,()]{3},[^,()]{3}\\)( \\([^,()]{3},[^,()]{3}\\)){29}"), line);
+                }
+
+                Table t = fileService.loadTable(file.toString());
+                assertEquals(20_000, t.size());
+                assertEquals(30, t.get(19_999).size());
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should reject empty rows")
+        void generateFile_rejectsZeroColumns() throws Exception {
+            Path file = Files.createTempFile("generated", ".txt");
+            try {
+                assertThrows(IllegalArgumentException.class, () -> fileService.generateFile(file.toString(), 10, 0, 3));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("export Tests")
+    class ExportTests {
+
+        @Test
+        @DisplayName("should write one quoted CSV record per cell")
+        void exportCsv_quotesFieldsWhenNeeded() throws Exception {
+            Table t = new Table();
+            t.add(Arrays.asList("(a,b)", "(k\"q,v,w)"));
+            t.add(Arrays.asList("(x,)"));
+            Path file = Files.createTempFile("export", ".csv");
+            try {
+                fileService.exportCsv(t, file.toString());
+                assertEquals("row,col,key,value\r\n0,0,a,b\r\n0,1,\"k\"\"q\",\"v,w\"\r\n1,0,x,\r\n",
+                        Files.readString(file));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should write one escaped JSON object per row")
+        void exportJsonLines_escapesStrings() throws Exception {
+            Table t = new Table();
+            t.add(Arrays.asList("(a\\b,\"c\")", "(d,e)"));
+            Path file = Files.createTempFile("export", ".jsonl");
+            try {
+                fileService.exportJsonLines(t, file.toString());
+                assertEquals("{\"row\":0,\"cells\":[{\"key\":\"a\\\\b\",\"value\":\"\\\"c\\\"\"},"
+                        + "{\"key\":\"d\",\"value\":\"e\"}]}\n", Files.readString(file));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should keep row order across parallel chunks and truncate an older, longer file")
+        void exportCsv_largeTable_keepsRowOrder() throws Exception {
+            Table t = new Table(Table.CellStorage.PACKED);
+            int rows = 20_000;
+            for (int i = 0; i < rows; i++) {
+                t.add(Arrays.asList("(k" + i + ",v)"));
+            }
+            Path file = Files.createTempFile("export_large", ".csv");
+            try {
+                Files.writeString(file, "x".repeat(2_000_000));
+                fileService.exportCsv(t, file.toString());
+
+                List<String> lines = Files.readAllLines(file);
+                assertEquals(rows + 1, lines.size());
+                for (int i = 0; i < rows; i++) {
+                    assertEquals(i + ",0,k" + i + ",v", lines.get(i + 1));
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("import Tests")
+    class ImportTests {
+
+        @Test
+        @DisplayName("should read back a CSV export")
+        void importDelimited_exportedCsv_roundTrips() throws Exception {
+            Table t = new Table();
+            t.add(Arrays.asList("(a,b)", "(k\"q,v,w)", "(x,)"));
+            t.add(Arrays.asList("(c,d)"));
+            Path file = Files.createTempFile("import", ".csv");
+            try {
+                fileService.exportCsv(t, file.toString());
+                Table imported = fileService.importDelimited(file.toString(), ',');
+                assertEquals(fileService.tableToString(t), fileService.tableToString(imported));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should handle TSV, quoted tabs, CRLF and columns out of order")
+        void importDelimited_tsv_ordersColumns() throws Exception {
+            Path file = Files.createTempFile("import", ".tsv");
+            try {
+                Files.writeString(file, "0\t1\tb\t2\r\n0\t0\t\"a\tx\"\t1\r\n\r\n3\t0\tc\t\"\"\"q\"\n");
+                Table imported = fileService.importDelimited(file.toString(), '\t');
+                assertEquals(2, imported.size());
+                assertEquals(Arrays.asList("(a\tx,1)", "(b,2)"), imported.get(0));
+                assertEquals(Arrays.asList("(c,\"q)"), imported.get(1));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should report the line of a malformed record")
+        void importDelimited_badRecords_throw() throws Exception {
+            Path file = Files.createTempFile("import_bad", ".csv");
+            try {
+                Files.writeString(file, "row,col,key,value\n1,0,a,b\n0,0,c,d\n");
+                IOException unordered = assertThrows(IOException.class,
+                        () -> fileService.importDelimited(file.toString(), ','));
+                assertTrue(unordered.getMessage().startsWith("Line 3"));
+
+                Files.writeString(file, "0,0,a\n");
+                IOException fields = assertThrows(IOException.class,
+                        () -> fileService.importDelimited(file.toString(), ','));
+                assertTrue(fields.getMessage().contains("expected 4 fields"));
+
+                Files.writeString(file, "0,0,a,x)\n");
+                assertThrows(IOException.class, () -> fileService.importDelimited(file.toString(), ','));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Test
+        @DisplayName("should convert straight into a table file")
+        void convertDelimited_writesTableFile() throws Exception {
+            Path source = Files.createTempFile("convert", ".csv");
+            Path target = Files.createTempFile("convert", ".txt");
+            try {
+                Files.writeString(source, "0,0,a,b\n0,1,c,d\n5,0,e,\"f,g\"\n");
+                assertEquals(2, fileService.convertDelimited(source.toString(), target.toString(), ','));
+                assertEquals("(a,b) (c,d)\n(e,f,g)", Files.readString(target));
+
+                assertThrows(IOException.class,
+                        () -> fileService.convertDelimited(source.toString(), source.toString(), ','));
+            } finally {
+                Files.deleteIfExists(source);
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+}
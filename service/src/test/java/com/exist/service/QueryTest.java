@@ -0,0 +1,184 @@
+package com.exist.service;
+
+import com.exist.model.RowView;
+import com.exist.model.Table;
+import com.exist.service.query.CellPosition;
+import com.exist.service.query.Condition;
+import com.exist.service.query.QueryIndex;
+import com.exist.service.query.QueryParser;
+import com.exist.service.query.QueryPlan;
+import com.exist.service.query.QueryPlanner;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Query Tests")
+class QueryTest {
+
+    @Test
+    @DisplayName("should parse precedence, quotes and ranges")
+    void parse_buildsConditionTree() {
+        Condition condition = QueryParser.parse(
+                "KEY startswith ab and not value = \"x \\\"y\\\"\" or row 3..5 and col >= 2");
+
+        assertEquals("((key startswith \"ab\" and not value = \"x \\\"y\\\"\") or (row 3..5 and col 2.."
+                + (Integer.MAX_VALUE - 1) + "))", condition.toString());
+    }
+
+    @Test
+    @DisplayName("should parse lexicographic ranges, including the shorthand for a second bound")
+    void parse_textRanges() {
+        assertEquals("key in [\"A0\", \"B\")", QueryParser.parse("key >= A0 and < B").toString());
+        assertEquals("(value in (\"x\", *) and row 0..0)", QueryParser.parse("value > x and row 0").toString());
+        assertEquals("key in [\"ab\", \"ac\")", Condition.TextRange.prefix(Condition.Field.KEY, "ab").toString());
+        assertEquals("b", Condition.TextRange.prefix(Condition.Field.KEY, "a\uffff").upper);
+        assertNull(Condition.TextRange.prefix(Condition.Field.KEY, "\uffff").upper);
+        assertTrue(QueryParser.parse("key >= b and < a").toString().startsWith("key in [\"b\", \"a\")"));
+    }
+
+    @Test
+    @DisplayName("should report where an invalid query goes wrong")
+    void parse_invalidQuery_throws() {
+        assertEquals("Expected =, <, <=, >, >=, startswith or contains but found 'is' at position 4.",
+                assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("key is x")).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("(key = a"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("row x"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("value contains \"open"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse(" "));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("key = a b"));
+    }
+
+    @Test
+    @DisplayName("should pick the index with the smallest estimate and scan without one")
+    void plan_choosesCheapestAccess() {
+        QueryPlanner planner = new QueryPlanner(List.of(index("wide", 500), index("narrow", 5)));
+
+        assertTrue(planner.plan(QueryParser.parse("key = ab"), 1000).describe().startsWith("access: narrow("));
+        assertTrue(planner.plan(QueryParser.parse("not key = ab"), 1000).describe().startsWith("access: scan"));
+        assertTrue(planner.plan(QueryParser.parse("key = ab or col = 1"), 1000).describe().startsWith("access: scan"));
+        assertTrue(planner.plan(QueryParser.parse("col = 1 and row < 10"), 1000).describe().startsWith("access: rows 0..9"));
+        assertTrue(new QueryPlanner(List.of()).plan(QueryParser.parse("key = ab"), 1000).describe()
+                .startsWith("access: scan"));
+    }
+
+    @Test
+    @DisplayName("should match the same cells with every plan, in parallel chunks on large tables")
+    void execute_matchesBruteForce() {
+        Random random = new Random(3);
+        Table table = new Table(Table.CellStorage.PACKED);
+        for (int i = 0; i < 10_000; i++) {
+            List<String> row = new ArrayList<>();
+            for (int j = 0; j < 4; j++) {
+                row.add("(" + word(random) + "," + word(random) + ")");
+            }
+            table.add(row);
+        }
+        table.add(Arrays.asList("(long key,value with spaces)", "(\u00e9a,b)"));
+
+        List<String> queries = List.of("key startswith a", "value contains ab", "key = abc", "key >= b and < c",
+                "value > ab and value <= c", "key <= \"\" or value = a",
+                "key startswith b and row 100..2000", "value contains c or key = ba", "not key contains a and col < 2",
+                "value contains \"with spaces\"", "key = \u00e9a", "row > 9000 and (col = 3 or value startswith c)");
+        QueryIndex everyRow = new QueryIndex() {
+            @Override
+            public String name() {
+                return "all";
+            }
+
+            @Override
+            public long estimateRows(Condition condition) {
+                return 0;
+            }
+
+            @Override
+            public BitSet candidateRows(Condition condition) {
+                BitSet rows = new BitSet();
+                rows.set(0, table.size());
+                return rows;
+            }
+        };
+
+        for (String query : queries) {
+            Condition condition = QueryParser.parse(query);
+            long[] expected = bruteForce(table, condition);
+            assertArrayEquals(expected, new QueryPlanner(List.of()).plan(condition, table.size()).execute(table), query);
+            QueryPlan indexed = new QueryPlanner(List.of(everyRow)).plan(condition, table.size());
+            assertArrayEquals(expected, indexed.execute(table), query);
+        }
+    }
+
+    private static long[] bruteForce(Table table, Condition condition) {
+        List<Long> positions = new ArrayList<>();
+        for (int row = 0; row < table.size(); row++) {
+            RowView view = table.view(row, null);
+            for (int column = 0; column < view.size(); column++) {
+                String key = view.key(column);
+                String value = view.value(column);
+                if (matches(condition, key, value, row, column)) {
+                    positions.add(CellPosition.of(row, column));
+                }
+            }
+        }
+        return positions.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static boolean matches(Condition condition, String key, String value, int row, int column) {
+        if (condition instanceof Condition.Match match) {
+            String field = match.field == Condition.Field.KEY ? key : value;
+            return switch (match.operator) {
+                case EQUALS -> field.equals(match.text);
+                case STARTS_WITH -> field.startsWith(match.text);
+                case CONTAINS -> field.contains(match.text);
+            };
+        }
+        if (condition instanceof Condition.TextRange range) {
+            return range.contains(range.field == Condition.Field.KEY ? key : value);
+        }
+        if (condition instanceof Condition.Range range) {
+            int index = range.axis == Condition.Axis.ROW ? row : column;
+            return index >= range.from && index < range.to;
+        }
+        if (condition instanceof Condition.And and) {
+            return matches(and.left, key, value, row, column) && matches(and.right, key, value, row, column);
+        }
+        if (condition instanceof Condition.Or or) {
+            return matches(or.left, key, value, row, column) || matches(or.right, key, value, row, column);
+        }
+        return !matches(((Condition.Not) condition).operand, key, value, row, column);
+    }
+
+    private static String word(Random random) {
+        char[] chars = new char[1 + random.nextInt(3)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(chars);
+    }
+
+    private static QueryIndex index(String name, long estimate) {
+        return new QueryIndex() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public long estimateRows(Condition condition) {
+                return estimate;
+            }
+
+            @Override
+            public BitSet candidateRows(Condition condition) {
+                return new BitSet();
+            }
+        };
+    }
+
+}
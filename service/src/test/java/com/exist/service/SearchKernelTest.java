@@ -0,0 +1,43 @@
+package com.exist.service;
+
+import com.exist.service.impl.SearchKernel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Search Kernel Tests")
+class SearchKernelTest {
+
+    @Test
+    @DisplayName("should find the same positions with the scalar and the vector kernel")
+    void indexOf_vectorMatchesScalar() {
+        SearchKernel scalar = SearchKernel.scalar();
+        SearchKernel vector = SearchKernel.vector();
+        Random random = new Random(5);
+
+        for (int round = 0; round < 500; round++) {
+            byte[] text = new byte[random.nextInt(300)];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = (byte) ('a' + random.nextInt(20));
+            }
+            int from = text.length == 0 ? 0 : random.nextInt(text.length);
+            int to = from + random.nextInt(text.length - from + 1);
+            byte value = (byte) ('a' + random.nextInt(22));
+
+            assertEquals(scalar.indexOf(text, from, to, value), vector.indexOf(text, from, to, value));
+        }
+    }
+
+    @Test
+    @DisplayName("should return -1 for an empty or inverted range")
+    void indexOf_emptyRange_returnsMinusOne() {
+        byte[] text = "aaaa".getBytes();
+        assertEquals(-1, SearchKernel.scalar().indexOf(text, 2, 2, (byte) 'a'));
+        assertEquals(-1, SearchKernel.vector().indexOf(text, 3, 1, (byte) 'a'));
+        assertEquals(1, SearchKernel.best().indexOf(text, 1, 4, (byte) 'a'));
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.exist.service;
+
+import com.exist.service.event.TableEvent;
+import com.exist.service.event.TableEventListener;
+import com.exist.service.event.TableEventRing;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Table Event Ring Tests")
+class TableEventRingTest {
+
+    @Test
+    @DisplayName("should reject a capacity that is not a power of two")
+    void constructor_rejectsCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new TableEventRing(0));
+        assertThrows(IllegalArgumentException.class, () -> new TableEventRing(100));
+    }
+
+    @Test
+    @DisplayName("should deliver every event in order to each subscriber that keeps up")
+    void publish_deliversInOrder() throws Exception {
+        TableEventRing ring = new TableEventRing(16);
+        int count = 10_000;
+        List<List<Long>> sequences = List.of(new ArrayList<>(), new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        List<TableEventRing.Subscription> subscriptions = new ArrayList<>();
+        for (List<Long> seen : sequences) {
+            subscriptions.add(ring.subscribe(new TableEventListener() {
+                @Override
+                public void onEvent(TableEvent event) {
+                    seen.add(event.sequence());
+                    if (event.sequence() == count - 1) {
+                        done.countDown();
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < count; i++) {
+            ring.publish(new TableEvent.TableReset(i));
+            // Stay within the ring so nothing is lost
+            if (i % 8 == 7) {
+                Thread.sleep(0, 1000);
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int s = 0; s < sequences.size(); s++) {
+            List<Long> seen = sequences.get(s);
+            long lost = subscriptions.get(s).lostEvents();
+            assertEquals(count, seen.size() + lost);
+            for (int i = 1; i < seen.size(); i++) {
+                assertTrue(seen.get(i) > seen.get(i - 1));
+            }
+            subscriptions.get(s).close();
+        }
+    }
+
+    @Test
+    @DisplayName("should not let a stalled subscriber block the writer, and report the events it lost")
+    void publish_overrunsStalledSubscriber() throws Exception {
+        TableEventRing ring = new TableEventRing(8);
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicLong delivered = new AtomicLong();
+        AtomicLong reportedLost = new AtomicLong();
+
+        TableEventRing.Subscription subscription = ring.subscribe(new TableEventListener() {
+            @Override
+            public void onEvent(TableEvent event) {
+                delivered.incrementAndGet();
+                if (event.sequence() == 0) {
+                    stalled.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (event.sequence() == 99) {
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public void onEventsLost(long count) {
+                reportedLost.addAndGet(count);
+            }
+        });
+
+        ring.publish(new TableEvent.TableReset(0));
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+        // The subscriber is stuck in its listener; publishing must still go through
+        for (int i = 1; i < 100; i++) {
+            ring.publish(new TableEvent.TableReset(i));
+        }
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        subscription.close();
+        assertTrue(reportedLost.get() >= 100 - 1 - 8);
+        assertEquals(reportedLost.get(), subscription.lostEvents());
+        assertEquals(100, delivered.get() + reportedLost.get());
+    }
+}
@@ -1,7 +1,15 @@
 package com.exist.service;
 
 import com.exist.model.Table;
+import com.exist.service.event.TableEvent;
+import com.exist.service.event.TableEventRing;
+import com.exist.service.impl.FileServiceImpl;
+import com.exist.service.impl.SearchKernel;
+import com.exist.service.query.CellPosition;
+import com.exist.service.query.QueryParser;
+import com.exist.service.query.QueryPlanner;
 import com.exist.service.impl.TableServiceImpl;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -12,11 +20,30 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.Mockito.*;
 
 @DisplayName("Table Service Implementation Tests")
@@ -47,13 +74,10 @@ class TableServiceImplTest {
         @Test
         @DisplayName("should correctly parse content from a mocked file service")
         void loadTableFromFile() throws Exception {
-            String fileContent = "(abc,xyz) (foo,bar)\n(abc,term) (xyz,abc)";
-            when(mockFileService.loadFileContent("dummy.txt")).thenReturn(fileContent);
-
             Table expectedTable = new Table();
             expectedTable.add(Arrays.asList("(abc,xyz)", "(foo,bar)"));
             expectedTable.add(Arrays.asList("(abc,term)", "(xyz,abc)"));
-            when(mockFileService.parseFileToTable(fileContent)).thenReturn(expectedTable);
+            when(mockFileService.loadTable("dummy.txt")).thenReturn(expectedTable);
 
             tableService.loadTableFromFile("dummy.txt");
             Table t = tableService.getTable();
@@ -70,6 +94,408 @@ class TableServiceImplTest {
         }
     }
 
+    @Nested
+    @DisplayName("when loading progressively")
+    class LoadProgressivelyTests {
+
+        private Path file;
+
+        @BeforeEach
+        void writeFile() throws Exception {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 10_000; i++) {
+                content.append("(k").append(i).append(",v) (a,b)\n");
+            }
+            file = Files.createTempFile("progressive", ".txt");
+            Files.writeString(file, content);
+        }
+
+        @AfterEach
+        void deleteFile() throws Exception {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + ".idx"));
+        }
+
+        @Test
+        @DisplayName("should have the first rows available as soon as it returns")
+        void loadTableProgressively_returnsWithFirstRows() throws Exception {
+            TableServiceImpl service = new TableServiceImpl();
+            service.loadTableProgressively(file.toString(), 10);
+
+            assertTrue(service.awaitRows(10) >= 10);
+            assertEquals(2, service.getColumnCount(5));
+            assertEquals("(k9999,v)", service.getTable().get(9_999).get(0));
+            assertEquals(10_000, service.getTable().size());
+        }
+
+        @Test
+        @DisplayName("should wait only for the row being edited")
+        void loadTableProgressively_editBeyondFirstPage_waitsForRow() throws Exception {
+            TableServiceImpl service = new TableServiceImpl();
+            service.loadTableProgressively(file.toString(), 10);
+
+            PrintStream standardOut = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                service.editCell(5_000, 0, "edited", "", "key");
+            } finally {
+                System.setOut(standardOut);
+            }
+
+            assertTrue(service.awaitRows(0) < 10_000);
+            assertEquals("(edited,v)", service.getTable().get(5_000).get(0));
+        }
+
+        @Test
+        @DisplayName("should patch an edited row in place once the whole file is loaded")
+        void loadTableProgressively_thenEdit_patchesRowInPlace() throws Exception {
+            TableServiceImpl service = new TableServiceImpl();
+            service.loadTableProgressively(file.toString(), 10);
+            long length = Files.size(file);
+
+            PrintStream standardOut = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                service.editCell(7_000, 0, "e", "", "key");
+            } finally {
+                System.setOut(standardOut);
+            }
+            Table table = service.getTable();
+            assertNotNull(table.getLayout());
+            assertTrue(table.isDirty(7_000));
+            assertFalse(table.isDirty(6_999));
+            new FileServiceImpl().saveFile(table, file.toString());
+
+            // A rewritten file would be shorter; a patched row keeps its slot, padded with spaces
+            assertEquals(length, Files.size(file));
+            List<String> lines = Files.readAllLines(file);
+            assertEquals("(e,v) (a,b)", lines.get(7_000).trim());
+            assertEquals("(k7001,v) (a,b)", lines.get(7_001));
+        }
+
+        @Test
+        @DisplayName("should save an edit made while loading without waiting, once the last rows are loaded")
+        void saveTable_whileLoading_savesOnceLoaded() throws Exception {
+            TableServiceImpl service = new TableServiceImpl();
+            service.loadTableProgressively(file.toString(), 10);
+
+            PrintStream standardOut = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                service.editCell(0, 0, "first", "", "key");
+                service.saveTable(file.toString());
+            } finally {
+                System.setOut(standardOut);
+            }
+
+            assertTrue(service.awaitRows(0) < 10_000);
+            assertEquals("(k0,v) (a,b)", Files.readAllLines(file).get(0));
+
+            service.awaitRows(Integer.MAX_VALUE);
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(10_000, lines.size());
+            assertEquals("(first,v) (a,b)", lines.get(0).trim());
+            assertEquals("(k9999,v) (a,b)", lines.get(9_999).trim());
+            assertFalse(service.hasUnsavedChanges());
+        }
+
+        @Test
+        @DisplayName("should read the same rows as a whole load, decoding lines from the first non-ASCII one")
+        void loadTableProgressively_mixedContent_readsSameRowsAsWholeLoad() throws Exception {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 5_000; i++) {
+                content.append("(k").append(i).append(",v) (a,b)").append(i % 3 == 0 ? "\r\n" : "\n");
+                if (i % 1_000 == 0) {
+                    content.append("no cells\n\n");
+                }
+            }
+            content.append("(long,").append("x".repeat(100_000)).append(")\n");
+            content.append("(caf\u00e9,cr\u00e8me) (a,b)\n");
+            for (int i = 0; i < 5_000; i++) {
+                content.append("(m").append(i).append(",\u00fc)\n");
+            }
+            content.append("(last,row)");
+            Files.writeString(file, content);
+
+            TableServiceImpl service = new TableServiceImpl();
+            service.loadTableProgressively(file.toString(), 10);
+            service.awaitRows(Integer.MAX_VALUE);
+            Table expected = new FileServiceImpl().loadTable(file.toString());
+
+            Table table = service.getTable();
+            assertEquals(expected.size(), table.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), table.get(i), "row " + i);
+            }
+            // Slots recorded before the first non-ASCII line do not cover the file
+            assertFalse(table.getLayout().matches(file.toAbsolutePath().toString(), Files.size(file),
+                    Files.getLastModifiedTime(file).toMillis()));
+        }
+
+        @Test
+        @DisplayName("should print only the requested number of rows")
+        void printTable_withLimit_printsFirstRows() throws Exception {
+            TableServiceImpl service = new TableServiceImpl();
+            service.loadTableProgressively(file.toString(), 2);
+
+            PrintStream standardOut = System.out;
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            try {
+                service.printTable(2);
+            } finally {
+                System.setOut(standardOut);
+            }
+
+            String[] lines = outputStreamCaptor.toString().replace("\r\n", "\n").trim().split("\n");
+            assertEquals("--- Table Contents ---", lines[0]);
+            assertEquals("(k0,v) (a,b)", lines[1]);
+            assertEquals("(k1,v) (a,b)", lines[2]);
+            assertEquals("... showing the first 2 rows", lines[3]);
+        }
+    }
+
+    @Nested
+    @DisplayName("with a heap budget")
+    class HeapBudgetTests {
+
+        @Test
+        @DisplayName("should load progressively and search a table larger than the budget")
+        void loadTableProgressively_withBudget_loadsAllRows() throws Exception {
+            Path file = Files.createTempFile("budget", ".txt");
+            try {
+                StringBuilder content = new StringBuilder();
+                for (int i = 0; i < 100_000; i++) {
+                    content.append("(k").append(i).append(",v) (abc,def)\n");
+                }
+                Files.writeString(file, content);
+
+                TableService service = new TableServiceImpl();
+                service.setHeapBudget(256 * 1024);
+                service.loadTableProgressively(file.toString(), 10);
+
+                assertEquals(100_000, service.awaitRows(Integer.MAX_VALUE));
+                Table t = service.getTable();
+                assertTrue(t.getResidentBytes() <= 300 * 1024);
+                assertTrue(service.searchValue("k99999").contains("at key of [99999,0]"));
+                t.clear();
+            } finally {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(Path.of(file + ".idx"));
+            }
+        }
+
+        @Test
+        @DisplayName("should delete the page file of a table once it is replaced or closed")
+        void loadTableFromFile_withBudget_deletesPageFilesOfReplacedTables() throws Exception {
+            Path file = Files.createTempFile("budget", ".txt");
+            Set<Path> before = pageFiles();
+            try {
+                StringBuilder content = new StringBuilder();
+                for (int i = 0; i < 20_000; i++) {
+                    content.append("(k").append(i).append(",v) (abc,def)\n");
+                }
+                Files.writeString(file, content);
+
+                TableServiceImpl service = new TableServiceImpl();
+                service.setHeapBudget(64 * 1024);
+                service.loadTableFromFile(file.toString());
+                Set<Path> spilled = pageFiles();
+                spilled.removeAll(before);
+                assertFalse(spilled.isEmpty());
+
+                service.loadTableFromFile(file.toString());
+                assertTrue(Collections.disjoint(spilled, pageFiles()));
+                Set<Path> reloaded = pageFiles();
+                reloaded.removeAll(before);
+                assertFalse(reloaded.isEmpty());
+
+                service.close();
+                assertTrue(Collections.disjoint(reloaded, pageFiles()));
+            } finally {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(Path.of(file + ".idx"));
+            }
+        }
+
+        /**
+         * Returns the page files this process holds open. They are unlinked as soon as they are opened, so
+         * they only show up among the open file descriptors.
+         */
+        private Set<Path> pageFiles() throws IOException {
+            Path descriptors = Path.of("/proc/self/fd");
+            assumeTrue(Files.isDirectory(descriptors), "Open files cannot be listed here");
+            Set<Path> open = new HashSet<>();
+            try (Stream<Path> files = Files.list(descriptors)) {
+                for (Path descriptor : (Iterable<Path>) files::iterator) {
+                    try {
+                        Path target = Files.readSymbolicLink(descriptor);
+                        if (target.getFileName().toString().startsWith("table-") && target.toString().contains(".pages")) {
+                            open.add(target);
+                        }
+                    } catch (IOException e) {
+                        // Closed while listing
+                    }
+                }
+            }
+            return open;
+        }
+    }
+
+    @Nested
+    @DisplayName("when watching the file")
+    class WatchTests {
+
+        private Path file;
+        private TableServiceImpl service;
+
+        @BeforeEach
+        void loadFile() throws Exception {
+            file = Files.createTempFile("watched", ".txt");
+            Files.writeString(file, "(a,b) (c,d)\n(e,f)\n(g,h)");
+            service = new TableServiceImpl();
+            service.loadTableFromFile(file.toString());
+            service.startWatching(file.toString());
+        }
+
+        @AfterEach
+        void stopWatching() throws Exception {
+            service.stopWatching();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + ".idx"));
+        }
+
+        @Test
+        @DisplayName("should swap in only the rows changed by another writer")
+        void startWatching_externalEdit_replacesChangedRows() throws Exception {
+            List<String> untouchedRow = service.getTable().get(0);
+
+            PrintStream standardOut = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                Files.writeString(file, "(a,b) (c,d)\n(x,y) (z,w)\n(g,h)\n(i,j)");
+                awaitRow(service, 1, Arrays.asList("(x,y)", "(z,w)"));
+            } finally {
+                System.setOut(standardOut);
+            }
+
+            Table table = service.getTable();
+            assertAll("Verify reloaded rows",
+                    () -> assertEquals(4, table.size()),
+                    () -> assertSame(untouchedRow, table.get(0)),
+                    () -> assertEquals(Arrays.asList("(g,h)"), table.get(2)),
+                    () -> assertEquals(Arrays.asList("(i,j)"), table.get(3))
+            );
+        }
+
+        @Test
+        @DisplayName("should keep the rows shifted down by a line inserted at the top")
+        void startWatching_lineInsertedAtTop_keepsShiftedRows() throws Exception {
+            List<List<String>> oldRows = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                oldRows.add(service.getTable().get(i));
+            }
+
+            PrintStream standardOut = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                Files.writeString(file, "(new,row)\n(a,b) (c,d)\n(e,f)\n(g,h)");
+                awaitRow(service, 0, Arrays.asList("(new,row)"));
+            } finally {
+                System.setOut(standardOut);
+            }
+
+            Table table = service.getTable();
+            assertEquals(4, table.size());
+            for (int i = 0; i < 3; i++) {
+                assertSame(oldRows.get(i), table.get(i + 1));
+            }
+        }
+
+        @Test
+        @DisplayName("should keep a row added here and not saved yet when another writer changes the file")
+        void startWatching_externalEditAfterAddRow_keepsAddedRow() throws Exception {
+            PrintStream standardOut = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                service.addRow(2);
+                List<String> added = service.getTable().get(3);
+
+                Files.writeString(file, "(a,b) (c,d)\n(x,y)\n(g,h)");
+                awaitRow(service, 1, Arrays.asList("(x,y)"));
+
+                Table table = service.getTable();
+                assertEquals(4, table.size());
+                assertEquals(added, table.get(3));
+                assertTrue(table.isDirty(3));
+                assertFalse(table.isDirty(1));
+            } finally {
+                System.setOut(standardOut);
+            }
+        }
+
+        @Test
+        @DisplayName("should keep a row changed both here and by another writer and report the conflict")
+        void startWatching_conflictingEdit_keepsLocalRow() throws Exception {
+            PrintStream standardOut = System.out;
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            try {
+                service.editCell(1, 0, "mine", "", "key");
+
+                Files.writeString(file, "(a,b) (c,d)\n(theirs,f)\n(x,y)");
+                awaitRow(service, 2, Arrays.asList("(x,y)"));
+            } finally {
+                System.setOut(standardOut);
+            }
+
+            Table table = service.getTable();
+            assertEquals(Arrays.asList("(mine,f)"), table.get(1));
+            assertTrue(table.isDirty(1));
+            assertTrue(outputStreamCaptor.toString().contains("Kept unsaved changes to row(s) [1]"));
+        }
+
+        @Test
+        @DisplayName("should not report its own saves back as changes")
+        void saveTable_whileWatching_isNotReloaded() throws Exception {
+            PrintStream standardOut = System.out;
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            try {
+                service.editCell(0, 0, "saved", "", "key");
+                service.saveTable(file.toString());
+                Thread.sleep(500);
+                service.awaitRows(0);
+            } finally {
+                System.setOut(standardOut);
+            }
+
+            assertFalse(outputStreamCaptor.toString().contains("Reloaded"));
+            assertFalse(service.hasUnsavedChanges());
+            assertEquals("(saved,b) (c,d)", Files.readAllLines(file).get(0).trim());
+        }
+
+        @Test
+        @DisplayName("should stop applying changes once watching stops")
+        void stopWatching_externalEdit_keepsTable() throws Exception {
+            service.stopWatching();
+            assertFalse(service.isWatching());
+
+            Files.writeString(file, "(x,y)");
+            Thread.sleep(500);
+
+            assertEquals(3, service.getTable().size());
+        }
+
+        private void awaitRow(TableService service, int rowIndex, List<String> expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!expected.equals(service.getTable().get(rowIndex)) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(expected, service.getTable().get(rowIndex));
+        }
+    }
+
     @Nested
     @DisplayName("when searching a value")
     class SearchValueTests {
@@ -100,6 +526,377 @@ class TableServiceImplTest {
             String result = tableService.searchValue("none");
             assertTrue(result.contains("No occurrences found"));
         }
+
+        @Test
+        @DisplayName("should give the same results with and without the Bloom filters")
+        void searchValue_withFilters_matchesFullScan() {
+            tableService.resetTable(300, 6);
+            Table t = tableService.getTable();
+            List<String> terms = Arrays.asList(t.get(7).get(2).substring(1, 3), t.get(250).get(5).substring(5, 8),
+                    t.get(120).get(0).substring(2, 4), "zz", "a", "", "(,)");
+
+            for (String term : terms) {
+                tableService.setSearchFilterEnabled(true);
+                String filtered = tableService.searchValue(term);
+                tableService.setSearchFilterEnabled(false);
+                assertEquals(tableService.searchValue(term), filtered, "term " + term);
+            }
+        }
+
+        @Test
+        @DisplayName("should count the same with the scalar kernel, the vector kernel and cell by cell")
+        void searchValue_withKernels_matchesCellByCell() {
+            TableServiceImpl service = new TableServiceImpl();
+            Table t = service.getTable();
+            t.add(Arrays.asList("(aaaa,aaa)", "(a,b,c)", "(xa,a)", "(,)"));
+            t.add(Arrays.asList("(\u00e9aa,aa)", "(aa,\u00e9)"));
+            t.add(Arrays.asList("(abc,def)", "(b,c) (d", "(aa,aa)"));
+            for (int i = 0; i < 200; i++) {
+                t.add(Arrays.asList("(k" + i + ",a" + (i % 13) + ")", "(aab,aba)", "(long key " + i + ",value, with commas)"));
+            }
+
+            for (String term : Arrays.asList("a", "aa", "aaa", "b,c", "c) (d", "a,b", "k1", "with", "\u00e9", "zz")) {
+                service.setSearchKernel(null);
+                String expected = service.searchValue(term);
+                service.setSearchKernel(SearchKernel.scalar());
+                assertEquals(expected, service.searchValue(term), "scalar " + term);
+                service.setSearchKernel(SearchKernel.vector());
+                assertEquals(expected, service.searchValue(term), "vector " + term);
+            }
+        }
+
+        @Test
+        @DisplayName("should report many terms in one pass as each would be searched alone")
+        void searchValues_matchesSearchValuePerTerm() {
+            TableServiceImpl service = new TableServiceImpl();
+            Table t = service.getTable();
+            t.add(Arrays.asList("(aaaa,aaa)", "(a,b,c)", "(xa,a)", "(,)"));
+            t.add(Arrays.asList("(\u00e9aa,aa)", "(aa,\u00e9)", "(he,she)", "(hers,his)"));
+            t.add(Arrays.asList("(abc,def)", "(b,c) (d", "(aa,aa)", "(ushers,shehe)"));
+            for (int i = 0; i < 200; i++) {
+                t.add(Arrays.asList("(k" + i + ",a" + (i % 13) + ")", "(aab,aba)", "(long key " + i + ",value, with commas)"));
+            }
+
+            List<String> terms = Arrays.asList("a", "aa", "aaa", "b,c", "c) (d", "a,b", "k1", "k19", "with", "\u00e9",
+                    "zz", "he", "she", "his", "hers", "e", "", "(,)", "aa");
+            StringBuilder expected = new StringBuilder();
+            for (String term : new LinkedHashSet<>(terms)) {
+                expected.append("=== ").append(term).append(" ===\n").append(service.searchValue(term));
+            }
+            assertEquals(expected.toString(), service.searchValues(terms));
+        }
+
+        @Test
+        @DisplayName("should report every term of a large set against a generated table")
+        void searchValues_manyTerms_matchesSearchValue() {
+            tableService.resetTable(400, 5);
+            Table t = tableService.getTable();
+            List<String> terms = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                String cell = t.get(i).get(i % 5);
+                int from = 1 + i % 3;
+                terms.add(cell.substring(from, from + 1 + i % 3));
+            }
+
+            StringBuilder expected = new StringBuilder();
+            for (String term : new LinkedHashSet<>(terms)) {
+                expected.append("=== ").append(term).append(" ===\n").append(tableService.searchValue(term));
+            }
+            assertEquals(expected.toString(), tableService.searchValues(terms));
+        }
+
+        @Test
+        @DisplayName("should find cells changed after the filters were built")
+        void searchValue_afterChanges_findsNewCells() {
+            assertTrue(tableService.searchValue("qqq").contains("No occurrences found"));
+
+            tableService.editCell(0, 1, "qqq", null, "key");
+            tableService.addRow(2);
+            tableService.getTable().set(1, 0, "(k,www)");
+
+            assertTrue(tableService.searchValue("qqq").contains("<qqq> at key of [0,1]"));
+            assertTrue(tableService.searchValue("www").contains("<www> at value of [1,0]"));
+            assertTrue(tableService.searchValue("term").contains("[0,2]"));
+        }
+    }
+
+    @Nested
+    @DisplayName("when estimating occurrences from a sample")
+    class EstimateTests {
+
+        private static final Pattern ESTIMATE = Pattern.compile("~(\\d+) \\[(\\d+)\\.\\.(\\d+)\\] <([^>]*)> at (keys|values)");
+
+        private TableServiceImpl service;
+
+        @BeforeEach
+        void setUp() {
+            service = new TableServiceImpl();
+            service.setSampleSeed(17);
+            Table t = service.getTable();
+            // "hit" in the keys of every 10th row, and twice in the values of the last 2000 rows only
+            for (int i = 0; i < 20000; i++) {
+                t.add(Arrays.asList("(" + (i % 10 == 0 ? "hit" : "k") + i + ",v)", i >= 18000 ? "(x,hithit)" : "(y,z)"));
+            }
+        }
+
+        private long[] bounds(String estimate, String field) {
+            Matcher matcher = ESTIMATE.matcher(estimate);
+            while (matcher.find()) {
+                if (matcher.group(5).equals(field)) {
+                    return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+                            Long.parseLong(matcher.group(3))};
+                }
+            }
+            throw new AssertionError("No " + field + " estimate in " + estimate);
+        }
+
+        @Test
+        @DisplayName("should bracket the true counts with its confidence intervals")
+        void estimateSearch_intervalsContainTrueCounts() {
+            for (boolean stratified : new boolean[]{false, true}) {
+                String result = service.estimateSearch("hit", 2000, stratified);
+                long[] keys = bounds(result, "keys");
+                long[] values = bounds(result, "values");
+
+                assertTrue(keys[1] <= 2000 && 2000 <= keys[2], result);
+                assertTrue(values[1] <= 4000 && 4000 <= values[2], result);
+                assertTrue(result.contains("estimated from 2000 of 20000 rows"), result);
+                assertEquals(stratified, result.contains("stratified over"), result);
+            }
+        }
+
+        @Test
+        @DisplayName("should give the exact counts of a search once refined to every row")
+        void refineEstimate_toAllRows_isExact() {
+            service.estimateSearch("hit", 100, true);
+            String refined = service.refineEstimate(5000);
+            assertTrue(refined.contains("estimated from 5100 of 20000 rows"), refined);
+
+            assertEquals("2000 <hit> at keys and 4000 <hit> at values (exact, all 20000 rows scanned)\n",
+                    service.refineEstimate(Integer.MAX_VALUE));
+        }
+
+        @Test
+        @DisplayName("should narrow the interval as more rows are sampled")
+        void refineEstimate_narrowsInterval() {
+            long[] first = bounds(service.estimateSearch("hit", 500, false), "keys");
+            long[] refined = bounds(service.refineEstimate(5000), "keys");
+
+            assertTrue(refined[2] - refined[1] < first[2] - first[1]);
+        }
+
+        @Test
+        @DisplayName("should bound a term it has not seen by the rule of three")
+        void estimateSearch_whenNotSeen_boundsByRuleOfThree() {
+            long[] keys = bounds(service.estimateSearch("zzz", 1000, false), "keys");
+            assertArrayEquals(new long[]{0, 0, 60}, keys);
+        }
+
+        @Test
+        @DisplayName("should use the Bloom filters once a search has built them")
+        void estimateSearch_withFilters_countsTheSame() {
+            String unfiltered = service.estimateSearch("hit", 20000, false);
+            service.searchValue("hit");
+            assertEquals(unfiltered, service.estimateSearch("hit", 20000, false));
+        }
+
+        @Test
+        @DisplayName("should refuse to refine an estimate of a table that changed")
+        void refineEstimate_afterChange_asksForNewEstimate() {
+            assertEquals("No estimate to refine.\n", service.refineEstimate(10));
+
+            service.estimateSearch("hit", 100, false);
+            service.editCell(0, 0, "k", null, "key");
+            assertTrue(service.refineEstimate(10).contains("table changed"));
+        }
+
+        @Test
+        @DisplayName("should reject a sample size that is not positive")
+        void estimateSearch_whenSampleNotPositive_shouldThrow() {
+            assertThrows(IllegalArgumentException.class, () -> service.estimateSearch("hit", 0, false));
+        }
+    }
+
+    @Nested
+    @DisplayName("when finding cells by key")
+    class FindByKeyTests {
+        @Test
+        @DisplayName("should return every cell with exactly that key in row order")
+        void findByKey_shouldReturnPositions() {
+            assertArrayEquals(new long[]{CellPosition.of(0, 0), CellPosition.of(1, 0)}, tableService.findByKey("abc"));
+            assertArrayEquals(new long[0], tableService.findByKey("ab"));
+        }
+
+        @Test
+        @DisplayName("should follow edits, added rows, sorts and resets")
+        void findByKey_shouldStayCurrent() {
+            assertEquals(2, tableService.findByKey("abc").length);
+
+            tableService.editCell(1, 0, "moved", "", "key");
+            assertArrayEquals(new long[]{CellPosition.of(0, 0)}, tableService.findByKey("abc"));
+            assertArrayEquals(new long[]{CellPosition.of(1, 0)}, tableService.findByKey("moved"));
+
+            tableService.editCell(1, 1, "", "changed", "value");
+            assertArrayEquals(new long[]{CellPosition.of(1, 1)}, tableService.findByKey("xyz"));
+
+            tableService.sortRow(0, "desc");
+            assertArrayEquals(new long[]{CellPosition.of(0, 2)}, tableService.findByKey("abc"));
+            assertArrayEquals(new long[]{CellPosition.of(0, 0)}, tableService.findByKey("term"));
+
+            tableService.addRow(3);
+            String addedKey = tableService.getTable().view(2, null).key(1);
+            assertTrue(Arrays.stream(tableService.findByKey(addedKey)).anyMatch(p -> p == CellPosition.of(2, 1)));
+
+            tableService.resetTable(50, 4);
+            assertArrayEquals(new long[0], tableService.findByKey("abc"));
+            assertIndexMatchesTable();
+        }
+
+        @Test
+        @DisplayName("should rebuild after changes made directly to the table")
+        void findByKey_afterUnreportedChange_shouldRebuild() {
+            assertEquals(2, tableService.findByKey("abc").length);
+
+            tableService.getTable().set(0, 1, "(abc,new)");
+
+            assertArrayEquals(new long[]{CellPosition.of(0, 0), CellPosition.of(0, 1), CellPosition.of(1, 0)},
+                    tableService.findByKey("abc"));
+        }
+
+        @Test
+        @DisplayName("should survive many keys and repeated edits")
+        void findByKey_manyEdits_shouldMatchTable() {
+            // Every edit prints the table
+            PrintStream standardOut = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                tableService.resetTable(300, 5);
+                tableService.findByKey("x");
+                for (int i = 0; i < 200; i++) {
+                    tableService.editCell(i % 300, i % 5, "k" + (i % 7), "", "key");
+                    if (i % 50 == 0) {
+                        tableService.sortRow(i % 300, "asc");
+                    }
+                }
+            } finally {
+                System.setOut(standardOut);
+            }
+            assertIndexMatchesTable();
+        }
+
+        private void assertIndexMatchesTable() {
+            Table t = tableService.getTable();
+            for (int row = 0; row < t.size(); row++) {
+                for (int column = 0; column < t.get(row).size(); column++) {
+                    String key = t.view(row, null).key(column);
+                    long[] positions = tableService.findByKey(key);
+                    long expected = CellPosition.of(row, column);
+                    assertTrue(Arrays.stream(positions).anyMatch(p -> p == expected), key);
+                    for (long position : positions) {
+                        assertEquals(key, t.view(CellPosition.row(position), null).key(CellPosition.column(position)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("when querying cells")
+    class QueryTests {
+        @Test
+        @DisplayName("should list every matching cell with its position")
+        void query_shouldListMatchingCells() {
+            assertEquals("[0,0] (abc,xyz)\n[1,0] (abc,term)\n2 matching cell(s)\n",
+                    tableService.query("key = abc"));
+            assertEquals("[0,2] (term,term)\n[1,0] (abc,term)\n2 matching cell(s)\n",
+                    tableService.query("value startswith te"));
+            assertEquals("[1,1] (xyz,abc)\n1 matching cell(s)\n",
+                    tableService.query("(key contains y or value = bar) and row 1"));
+        }
+
+        @Test
+        @DisplayName("should report when no cell matches")
+        void query_whenNothingMatches_shouldSayNoCells() {
+            assertEquals("No cells match the query\n", tableService.query("key = nothing"));
+        }
+
+        @Test
+        @DisplayName("should use the bigram index only while it is enabled")
+        void explainQuery_shouldShowAccessPath() {
+            assertTrue(tableService.explainQuery("key contains thing").startsWith("access: bigram("));
+            tableService.setSearchFilterEnabled(false);
+            assertTrue(tableService.explainQuery("key contains thing").startsWith("access: scan"));
+        }
+
+        @Test
+        @DisplayName("should answer exact key conditions from the hash index")
+        void explainQuery_exactKey_shouldUseHashIndex() {
+            assertTrue(tableService.explainQuery("key = something and value contains el").startsWith("access: hash("));
+            assertEquals("[1,2] (something,else)\n1 matching cell(s)\n",
+                    tableService.query("key = something and value contains el"));
+        }
+
+        @Test
+        @DisplayName("should answer prefix and range conditions from the sorted indexes")
+        void explainQuery_rangesAndPrefixes_shouldUseSortedIndexes() {
+            assertTrue(tableService.explainQuery("key >= s and < t").startsWith("access: sorted-key("));
+            assertTrue(tableService.explainQuery("value startswith el").startsWith("access: sorted-value("));
+            assertEquals("[1,2] (something,else)\n1 matching cell(s)\n", tableService.query("key >= s and < t"));
+            assertEquals("[0,0] (abc,xyz)\n[1,0] (abc,term)\n2 matching cell(s)\n",
+                    tableService.query("key < foo and value > abb"));
+        }
+
+        @Test
+        @DisplayName("should keep the sorted indexes current through edits, sorts and added rows")
+        void query_afterManyChanges_shouldMatchScan() {
+            TableServiceImpl service = new TableServiceImpl();
+            List<String> queries = List.of("key >= A and < N", "value startswith a", "key > ~", "value <= \"#\"",
+                    "key >= M and key < N and value >= a");
+
+            // Every change prints the table
+            PrintStream standardOut = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                service.resetTable(100, 5);
+                queries.forEach(service::query);
+                for (int i = 0; i < 1500; i++) {
+                    int row = (i * 7) % service.getTable().size();
+                    String mode = i % 3 == 0 ? "key" : i % 3 == 1 ? "value" : "both";
+                    service.editCell(row, i % 5, "k" + (i % 50), "v" + (i % 40), mode);
+                    if (i % 100 == 0) {
+                        service.sortRow(row, i % 200 == 0 ? "asc" : "desc");
+                        service.addRow(5);
+                    }
+                }
+            } finally {
+                System.setOut(standardOut);
+            }
+
+            for (String query : queries) {
+                assertFalse(service.explainQuery(query).startsWith("access: scan"), query);
+                assertEquals(scan(service.getTable(), query), service.query(query), query);
+            }
+        }
+
+        private String scan(Table table, String query) {
+            long[] positions = new QueryPlanner(List.of()).plan(QueryParser.parse(query), table.size()).execute(table);
+            if (positions.length == 0) {
+                return "No cells match the query\n";
+            }
+            StringBuilder expected = new StringBuilder();
+            for (long position : positions) {
+                expected.append("[").append(CellPosition.row(position)).append(",").append(CellPosition.column(position))
+                        .append("] ").append(table.get(CellPosition.row(position)).get(CellPosition.column(position)))
+                        .append("\n");
+            }
+            return expected.append(positions.length).append(" matching cell(s)\n").toString();
+        }
+
+        @Test
+        @DisplayName("should reject invalid queries")
+        void query_whenInvalid_shouldThrow() {
+            assertThrows(IllegalArgumentException.class, () -> tableService.query("key ~ abc"));
+        }
     }
 
     @Nested
@@ -234,6 +1031,316 @@ class TableServiceImplTest {
         }
     }
 
+    @Nested
+    @DisplayName("when generating a table to disk")
+    class GenerateTableTests {
+
+        @Test
+        @DisplayName("should write the file and load it back progressively")
+        void generateTable_writesAndReopensFile() throws Exception {
+            Path file = Files.createTempFile("generated", ".txt");
+            try {
+                tableService.generateTable(file.toString(), 10_000, 4, 10);
+
+                assertTrue(tableService.awaitRows(10) >= 10);
+                assertEquals(4, tableService.getColumnCount(9_999));
+                assertEquals(10_000, tableService.getTable().size());
+                for (String cell : tableService.getTable().get(9_999)) {
+                    assertTrue(CELL_PATTERN.matcher(cell).matches());
+                }
+                assertEquals(tableService.getTable().get(0), List.of(Files.readAllLines(file).get(0).split(" ")));
+            } finally {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(Path.of(file + ".idx"));
+            }
+        }
+
+        @Test
+        @DisplayName("should page a large generated table to disk when no heap budget is set")
+        void generateTable_largeFile_loadsUnderHeapBudget() throws Exception {
+            Path file = Files.createTempFile("generated", ".txt");
+            PrintStream standardOut = System.out;
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            try {
+                tableService.generateTable(file.toString(), 700_000, 10, 10);
+
+                assertEquals(700_000, tableService.awaitRows(Integer.MAX_VALUE));
+                Table table = tableService.getTable();
+                assertEquals(64L * 1024 * 1024, table.getHeapBudget());
+                assertTrue(table.getResidentBytes() <= 72L * 1024 * 1024);
+                assertTrue(outputStreamCaptor.toString().contains("paged to disk"));
+                table.clear();
+            } finally {
+                System.setOut(standardOut);
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(Path.of(file + ".idx"));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("when persisting indexes next to the table file")
+    class SidecarTests {
+
+        private final FileService fileService = new FileServiceImpl();
+        private Path file;
+        private Path sidecar;
+
+        @BeforeEach
+        void setUp() throws Exception {
+            file = Files.createTempFile("indexed", ".txt");
+            sidecar = Path.of(file + ".idx");
+            fileService.saveFile(rows(500, "k"), file.toString());
+        }
+
+        @AfterEach
+        void tearDown() throws Exception {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(sidecar);
+        }
+
+        private Table rows(int count, String keyPrefix) {
+            Table table = new Table(Table.CellStorage.PACKED);
+            for (int i = 0; i < count; i++) {
+                table.add(Arrays.asList("(" + keyPrefix + i + ",v" + i % 7 + ")", "(x,y" + i + ")"));
+            }
+            return table;
+        }
+
+        private TableServiceImpl load() throws Exception {
+            TableServiceImpl service = new TableServiceImpl();
+            service.loadTableFromFile(file.toString());
+            return service;
+        }
+
+        private void awaitIndexes(TableServiceImpl service) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!service.areIndexesCurrent()) {
+                assertTrue(System.nanoTime() < deadline, "Indexes were not read from the sidecar");
+                Thread.sleep(10);
+            }
+        }
+
+        private void assertSameAnswers(TableServiceImpl service) {
+            TableServiceImpl scan = new TableServiceImpl();
+            scan.setSearchFilterEnabled(false);
+            for (int i = 0; i < service.getTable().size(); i++) {
+                scan.getTable().add(service.getTable().get(i));
+            }
+            for (String key : Arrays.asList("k0", "k499", "m3", "x", "k5000")) {
+                assertArrayEquals(scan.findByKey(key), service.findByKey(key), key);
+            }
+            for (String query : Arrays.asList("key startswith k4", "value = v3", "value startswith y4 and row 10..200")) {
+                assertEquals(scan.query(query), service.query(query), query);
+            }
+            for (String term : Arrays.asList("k1", "v6", "y49", "zz")) {
+                assertEquals(scan.searchValue(term), service.searchValue(term), term);
+            }
+        }
+
+        private void useIndexes(TableServiceImpl service) {
+            service.searchValue("k1");
+            service.findByKey("k1");
+            service.query("key startswith k4");
+            service.query("value startswith y4");
+        }
+
+        private void awaitSidecarWrite(TableServiceImpl service, BooleanSupplier written) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            useIndexes(service);
+            while (!written.getAsBoolean()) {
+                assertTrue(System.nanoTime() < deadline, "Sidecar was not written");
+                Thread.sleep(10);
+                useIndexes(service);
+            }
+        }
+
+        @Test
+        @DisplayName("should save a missing sidecar once indexes are built and read it on the next load")
+        void loadTableFromFile_readsSidecarOfEarlierLoad() throws Exception {
+            TableServiceImpl first = load();
+            Thread.sleep(100);
+            assertFalse(first.areIndexesCurrent());
+            assertFalse(Files.exists(sidecar));
+            awaitSidecarWrite(first, () -> Files.exists(sidecar));
+
+            TableServiceImpl second = load();
+            awaitIndexes(second);
+            assertSameAnswers(second);
+        }
+
+        @Test
+        @DisplayName("should rewrite a sidecar written for other contents of the file")
+        void loadTableFromFile_whenSidecarStale_rewritesIt() throws Exception {
+            awaitSidecarWrite(load(), () -> Files.exists(sidecar));
+            byte[] stale = Files.readAllBytes(sidecar);
+
+            fileService.saveFile(rows(500, "m"), file.toString());
+            TableServiceImpl service = load();
+            awaitSidecarWrite(service, () -> {
+                try {
+                    return !Arrays.equals(stale, Files.readAllBytes(sidecar));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            assertEquals(1, service.findByKey("m3").length);
+            assertEquals(0, service.findByKey("k3").length);
+            assertSameAnswers(service);
+        }
+
+        @Test
+        @DisplayName("should not use the sidecar for a table changed since it was loaded")
+        void loadTableFromFile_whenChangedBeforeSidecarIsReady_keepsChanges() throws Exception {
+            TableServiceImpl service = load();
+            service.editCell(3, 0, "new", null, "key");
+            Thread.sleep(100);
+            useIndexes(service);
+
+            assertFalse(Files.exists(sidecar));
+            assertEquals(1, service.findByKey("new").length);
+            assertEquals(0, service.findByKey("k3").length);
+            assertSameAnswers(service);
+        }
+
+        @Test
+        @DisplayName("should not read the sidecar of a file loaded before into the table loaded after it")
+        void loadTableFromFile_whenReplacedBeforeSidecarIsReady_ignoresIt() throws Exception {
+            awaitSidecarWrite(load(), () -> Files.exists(sidecar));
+            Path other = Files.createTempFile("indexed", ".txt");
+            try {
+                fileService.saveFile(rows(500, "m"), other.toString());
+                TableServiceImpl service = new TableServiceImpl();
+                service.loadTableFromFile(file.toString());
+                service.loadTableFromFile(other.toString());
+                Thread.sleep(100);
+
+                assertEquals(1, service.findByKey("m3").length);
+                assertEquals(0, service.findByKey("k3").length);
+                assertSameAnswers(service);
+            } finally {
+                Files.deleteIfExists(other);
+                Files.deleteIfExists(Path.of(other + ".idx"));
+            }
+        }
+
+        @Test
+        @DisplayName("should not wait for the sidecar to be written when searching")
+        void searchValue_doesNotWaitForSidecarWrite() throws Exception {
+            // Opening a pipe to write blocks until it is opened to read, so the write stalls until then
+            Path temporary = Path.of(sidecar + ".tmp");
+            assumeTrue(new ProcessBuilder("mkfifo", temporary.toString()).start().waitFor() == 0);
+            byte[][] written = new byte[1][];
+            Thread reader = new Thread(() -> {
+                try {
+                    written[0] = Files.readAllBytes(temporary);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            reader.setDaemon(true);
+            try {
+                TableServiceImpl service = load();
+                assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                    for (int i = 0; i < 50; i++) {
+                        useIndexes(service);
+                        Thread.sleep(10);
+                    }
+                });
+            } finally {
+                reader.start();
+                reader.join(TimeUnit.SECONDS.toMillis(10));
+                Files.deleteIfExists(temporary);
+            }
+
+            assertNotNull(written[0], "Sidecar was not written");
+            assertEquals(0x54494458, ByteBuffer.wrap(written[0]).getInt());
+        }
+
+        @Test
+        @DisplayName("should save the indexes a table has built for the next load")
+        void saveIndexes_writesSidecarForNextLoad() throws Exception {
+            TableServiceImpl service = new TableServiceImpl();
+            Table table = rows(300, "s");
+            for (int i = 0; i < table.size(); i++) {
+                service.getTable().add(table.get(i));
+            }
+            service.searchValue("s1");
+            service.query("key startswith s2 or value = v1");
+            service.findByKey("s3");
+            fileService.saveFile(service.getTable(), file.toString());
+            service.saveIndexes(file.toString());
+
+            awaitSidecarWrite(service, () -> Files.exists(sidecar));
+            TableServiceImpl reloaded = load();
+            awaitIndexes(reloaded);
+            assertSameAnswers(reloaded);
+        }
+    }
+
+    @Nested
+    @DisplayName("when subscribed to table events")
+    class EventTests {
+
+        private final BlockingQueue<TableEvent> received = new LinkedBlockingQueue<>();
+
+        private TableEvent next() throws InterruptedException {
+            TableEvent event = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "No event delivered");
+            return event;
+        }
+
+        @Test
+        @DisplayName("should publish every mutation in order with the cells it changed")
+        void subscribe_receivesMutations() throws Exception {
+            try (TableEventRing.Subscription subscription = tableService.subscribe(received::add)) {
+                tableService.editCell(0, 1, "k", "v", "both");
+                tableService.addRow(2);
+                tableService.sortRow(1, "desc");
+                tableService.resetTable(3, 4);
+
+                TableEvent.CellEdited edited = (TableEvent.CellEdited) next();
+                assertAll("Verify the edit event",
+                        () -> assertEquals(0, edited.sequence()),
+                        () -> assertEquals(0, edited.row),
+                        () -> assertEquals(1, edited.column),
+                        () -> assertEquals("foo", edited.oldKey),
+                        () -> assertEquals("bar", edited.oldValue),
+                        () -> assertEquals("k", edited.newKey),
+                        () -> assertEquals("v", edited.newValue)
+                );
+
+                TableEvent.RowAppended appended = (TableEvent.RowAppended) next();
+                assertEquals(1, appended.sequence());
+                assertEquals(2, appended.row);
+                assertEquals(2, appended.cells.size());
+
+                TableEvent.RowSorted sorted = (TableEvent.RowSorted) next();
+                assertEquals(List.of("(xyz,abc)", "(something,else)", "(abc,term)"), sorted.cells);
+                assertEquals("desc", sorted.order);
+
+                TableEvent.TableReset reset = (TableEvent.TableReset) next();
+                assertEquals(3, reset.sequence());
+                assertEquals(3, reset.rowCount);
+                assertEquals(0, subscription.lostEvents());
+            }
+        }
+
+        @Test
+        @DisplayName("should stop delivering once the subscription is closed")
+        void close_stopsDelivery() throws Exception {
+            TableEventRing.Subscription subscription = tableService.subscribe(received::add);
+            tableService.editCell(0, 0, "k", "v", "key");
+            next();
+            subscription.close();
+
+            tableService.editCell(0, 0, "k", "v", "value");
+            assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
     @Nested
     @DisplayName("when printing the table")
     class PrintTableTests {
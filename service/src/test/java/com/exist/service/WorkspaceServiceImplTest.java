@@ -0,0 +1,238 @@
+package com.exist.service;
+
+import com.exist.service.impl.WorkspaceServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@DisplayName("Workspace Service Implementation Tests")
+class WorkspaceServiceImplTest {
+
+    private WorkspaceService workspace;
+    private Path first;
+    private Path second;
+    private PrintStream standardOut;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workspace = new WorkspaceServiceImpl();
+        first = Files.createTempFile("workspace-first", ".txt");
+        second = Files.createTempFile("workspace-second", ".txt");
+        Files.writeString(first, "(shared key,shared value) (abc,def)\n(one,two) (red,blue)");
+        Files.writeString(second, "(xyz,abc) (shared key,shared value)\n(three,four)");
+        standardOut = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        System.setOut(standardOut);
+        for (Path file : List.of(first, second)) {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + ".idx"));
+        }
+    }
+
+    /**
+     * Returns the page files this process holds open. They are unlinked as soon as they are opened, so
+     * they only show up among the open file descriptors.
+     */
+    private static Set<Path> pageFiles() throws IOException {
+        Path descriptors = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(descriptors), "Open files cannot be listed here");
+        Set<Path> open = new HashSet<>();
+        try (Stream<Path> files = Files.list(descriptors)) {
+            for (Path descriptor : (Iterable<Path>) files::iterator) {
+                try {
+                    Path target = Files.readSymbolicLink(descriptor);
+                    if (target.getFileName().toString().startsWith("table-") && target.toString().contains(".pages")) {
+                        open.add(target);
+                    }
+                } catch (IOException e) {
+                    // Closed while listing
+                }
+            }
+        }
+        return open;
+    }
+
+    @Nested
+    @DisplayName("when opening tables")
+    class OpenTests {
+
+        @Test
+        @DisplayName("should switch to a table that is already open without loading it again")
+        void open_switchesBetweenTables() throws Exception {
+            TableService firstService = workspace.open(first.toString(), 10);
+            TableService secondService = workspace.open(second.toString(), 10);
+
+            assertSame(secondService, workspace.current());
+            assertEquals(List.of(second.toString(), first.toString()), workspace.getFileNames());
+
+            assertSame(firstService, workspace.open(first.toString(), 10));
+            assertEquals(first.toString(), workspace.currentFileName());
+            assertEquals(List.of(first.toString(), second.toString()), workspace.getFileNames());
+        }
+
+        @Test
+        @DisplayName("should share equal string cells between tables")
+        void open_sharesStringCells() throws Exception {
+            TableService firstService = workspace.open(first.toString(), 10);
+            TableService secondService = workspace.open(second.toString(), 10);
+
+            String firstCell = firstService.getTable().get(0).get(0);
+            String secondCell = secondService.getTable().get(0).get(1);
+            assertEquals("(shared key,shared value)", firstCell);
+            assertSame(firstCell, secondCell);
+        }
+
+        @Test
+        @DisplayName("should fail without a current table")
+        void current_withoutTables_throws() {
+            assertThrows(IllegalStateException.class, () -> workspace.current());
+        }
+    }
+
+    @Nested
+    @DisplayName("under a memory cap")
+    class MemoryCapTests {
+
+        @Test
+        @DisplayName("should save and evict the least recently used table, and read it back when switched to")
+        void open_overCap_evictsLeastRecentlyUsed() throws Exception {
+            workspace.setMemoryCap(1);
+            workspace.open(first.toString(), 10).editCell(1, 0, "edited", "", "key");
+            workspace.open(second.toString(), 10);
+
+            assertFalse(workspace.isResident(first.toString()));
+            assertTrue(workspace.isResident(second.toString()));
+            assertEquals(List.of(second.toString(), first.toString()), workspace.getFileNames());
+            assertTrue(Files.readString(first).contains("(edited,two)"));
+
+            TableService reopened = workspace.open(first.toString(), 10);
+            assertEquals("(edited,two)", reopened.getTable().get(1).get(0));
+            assertFalse(workspace.isResident(second.toString()));
+        }
+
+        @Test
+        @DisplayName("should delete the page file of an evicted table")
+        void open_overCap_deletesPageFileOfEvictedTable() throws Exception {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 20_000; i++) {
+                content.append("(k").append(i).append(",v) (abc,def)\n");
+            }
+            Files.writeString(first, content);
+            Set<Path> before = pageFiles();
+            workspace.setHeapBudget(64 * 1024);
+            workspace.setMemoryCap(1);
+
+            workspace.open(first.toString(), 10).awaitRows(Integer.MAX_VALUE);
+            Set<Path> spilled = pageFiles();
+            spilled.removeAll(before);
+            assertFalse(spilled.isEmpty());
+
+            workspace.open(second.toString(), 10);
+            assertFalse(workspace.isResident(first.toString()));
+            assertTrue(Collections.disjoint(spilled, pageFiles()));
+        }
+
+        @Test
+        @DisplayName("should evict a table without unsaved changes without writing its file")
+        void open_overCap_doesNotRewriteCleanTable() throws Exception {
+            FileTime written = FileTime.fromMillis(1_000_000_000_000L);
+            Files.setLastModifiedTime(first, written);
+            workspace.setMemoryCap(1);
+            workspace.open(first.toString(), 10).awaitRows(Integer.MAX_VALUE);
+            workspace.open(second.toString(), 10);
+
+            assertFalse(workspace.isResident(first.toString()));
+            assertEquals(written, Files.getLastModifiedTime(first));
+        }
+
+        @Test
+        @DisplayName("should evict a table still loading without waiting for the rest of it")
+        void open_overCap_dropsTableStillLoading() throws Exception {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 100_000; i++) {
+                content.append("(k").append(i).append(",v) (abc,def)\n");
+            }
+            Files.writeString(first, content);
+            FileTime written = FileTime.fromMillis(1_000_000_000_000L);
+            Files.setLastModifiedTime(first, written);
+            workspace.setMemoryCap(1);
+
+            TableService loading = workspace.open(first.toString(), 10);
+            workspace.open(second.toString(), 10);
+
+            assertFalse(workspace.isResident(first.toString()));
+            assertTrue(loading.awaitRows(0) < 100_000);
+            assertEquals(written, Files.getLastModifiedTime(first));
+            assertEquals("(k99999,v)", workspace.open(first.toString(), 10).getTable().get(99_999).get(0));
+        }
+
+        @Test
+        @DisplayName("should keep every table while under the cap")
+        void open_underCap_keepsTables() throws Exception {
+            workspace.setMemoryCap(1L << 20);
+            workspace.open(first.toString(), 10);
+            workspace.open(second.toString(), 10);
+
+            assertTrue(workspace.isResident(first.toString()));
+            assertTrue(workspace.isResident(second.toString()));
+        }
+    }
+
+    @Nested
+    @DisplayName("when searching all tables")
+    class SearchAllTests {
+
+        @Test
+        @DisplayName("should search tables in memory and on disk")
+        void searchAll_coversEvictedTables() throws Exception {
+            workspace.setMemoryCap(1);
+            workspace.open(first.toString(), 10);
+            workspace.open(second.toString(), 10);
+
+            String result = workspace.searchAll("abc");
+
+            assertEquals("=== " + second + " ===\n1 <abc> at value of [0,0]\n"
+                    + "=== " + first + " ===\n1 <abc> at key of [0,1]\n", result);
+        }
+    }
+
+    @Nested
+    @DisplayName("when closing a table")
+    class CloseTests {
+
+        @Test
+        @DisplayName("should save it and make the most recently used table current")
+        void close_current_switchesToMostRecent() throws Exception {
+            workspace.open(first.toString(), 10);
+            workspace.open(second.toString(), 10).editCell(1, 0, "five", "six", "both");
+
+            workspace.close(second.toString());
+
+            assertEquals(first.toString(), workspace.currentFileName());
+            assertEquals(List.of(first.toString()), workspace.getFileNames());
+            // Patched in place, so the row is padded to the length of the row it replaced
+            assertEquals("(xyz,abc) (shared key,shared value)\n(five,six)", Files.readString(second).stripTrailing());
+        }
+    }
+}
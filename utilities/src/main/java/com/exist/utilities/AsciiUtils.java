@@ -1,5 +1,7 @@
 package com.exist.utilities;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 public final class AsciiUtils {
 
     private static final int ASCII_MIN = 33;      
@@ -7,17 +9,32 @@ public final class AsciiUtils {
 
     private AsciiUtils() {}
 
-	public static String generateRandomAscii(int length) {
-        String result = "";
+    public static String generateRandomAscii(int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] result = new char[length];
         for (int i = 0; i < length; i++) {
-            char randomChar;
-            do {
-                int randomAscii = (int) (Math.random() * ASCII_RANGE) + ASCII_MIN;
-                randomChar = (char) randomAscii;
-            } while (randomChar == ',' || randomChar == ')' || randomChar == '(');
-            result += randomChar;
+            result[i] = randomChar(random);
+        }
+        return new String(result);
+    }
+
+    /**
+     * Writes {@code length} random characters, drawn like {@link #generateRandomAscii(int)}, as ASCII
+     * bytes starting at {@code offset}.
+     */
+    public static void fillRandomAscii(byte[] target, int offset, int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = offset; i < offset + length; i++) {
+            target[i] = (byte) randomChar(random);
         }
-        return result;
+    }
+
+    private static char randomChar(ThreadLocalRandom random) {
+        char randomChar;
+        do {
+            randomChar = (char) (random.nextInt(ASCII_RANGE) + ASCII_MIN);
+        } while (randomChar == ',' || randomChar == ')' || randomChar == '(');
+        return randomChar;
     }
 
 }
\ No newline at end of file
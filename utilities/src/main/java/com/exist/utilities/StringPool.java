@@ -0,0 +1,62 @@
+package com.exist.utilities;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe pool of canonical strings, like {@link String#intern()} but private to its users and
+ * holding the strings weakly: an entry goes away once nothing else refers to its string. The pool is
+ * split into stripes that are locked separately, so rows parsed in parallel rarely wait for each other.
+ */
+public final class StringPool implements UnaryOperator<String> {
+
+    private static final int STRIPE_BITS = 4;
+
+    private final Map<String, WeakReference<String>>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public StringPool() {
+        stripes = new Map[1 << STRIPE_BITS];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new WeakHashMap<>();
+        }
+    }
+
+    /**
+     * Returns the pooled string equal to {@code text}, adding {@code text} itself when there is none.
+     */
+    public String intern(String text) {
+        Map<String, WeakReference<String>> stripe = stripes[text.hashCode() * 0x9e3779b9 >>> (32 - STRIPE_BITS)];
+        synchronized (stripe) {
+            WeakReference<String> reference = stripe.get(text);
+            String pooled = reference == null ? null : reference.get();
+            if (pooled == null) {
+                stripe.put(text, new WeakReference<>(text));
+                return text;
+            }
+            return pooled;
+        }
+    }
+
+    @Override
+    public String apply(String text) {
+        return intern(text);
+    }
+
+    /**
+     * Returns the number of strings in the pool, including ones that are no longer referenced but not
+     * yet cleared by the garbage collector.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, WeakReference<String>> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+}
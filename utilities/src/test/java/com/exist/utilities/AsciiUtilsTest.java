@@ -1,7 +1,11 @@
 package com.exist.utilities;
 
 import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class AsciiUtilsTest {
     @Test
@@ -18,4 +22,37 @@ class AsciiUtilsTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFillRandomAscii() {
+        byte[] bytes = new byte[12];
+        AsciiUtils.fillRandomAscii(bytes, 1, 10);
+        assertEquals(0, bytes[0]);
+        assertEquals(0, bytes[11]);
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(bytes[i] >= 33 && bytes[i] < 127);
+            assertNotEquals(',', bytes[i]);
+            assertNotEquals('(', bytes[i]);
+            assertNotEquals(')', bytes[i]);
+        }
+    }
+
+    @Test
+    void testGenerateRandomAsciiAllocationBudget() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < 10_000; i++) {
+            AsciiUtils.generateRandomAscii(100);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1000; i++) {
+            AsciiUtils.generateRandomAscii(100);
+        }
+        long perCall = (threads.getThreadAllocatedBytes(thread) - before) / 1000;
+
+        // One char[] and the string's bytes, plus headers
+        assertTrue(perCall <= 400, "Allocated " + perCall + " bytes per call");
+    }
+}
@@ -0,0 +1,34 @@
+package com.exist.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringPoolTest {
+
+    @Test
+    void testInternReturnsFirstInstance() {
+        StringPool pool = new StringPool();
+        String first = new String("(abc,def)");
+        String second = new String("(abc,def)");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertSame(first, pool.apply(new String("(abc,def)")));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void testInternKeepsDifferentStringsApart() {
+        StringPool pool = new StringPool();
+        // Held here so the weakly pooled strings stay reachable
+        String[] cells = new String[1000];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = pool.intern("cell" + i);
+            assertEquals("cell" + i, cells[i]);
+        }
+        assertEquals(cells.length, pool.size());
+        assertSame(cells[1], pool.intern(new String("cell1")));
+        assertNotSame(cells[1], cells[2]);
+    }
+}